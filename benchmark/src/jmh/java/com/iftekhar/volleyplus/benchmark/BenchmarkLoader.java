@@ -0,0 +1,103 @@
+package com.iftekhar.volleyplus.benchmark;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.iftekhar.volleyplus.CacheKey;
+import com.iftekhar.volleyplus.DataContainer;
+import com.iftekhar.volleyplus.Loader;
+import com.iftekhar.volleyplus.MemoryCache;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * A minimal {@link Loader} for strings. It runs in concurrent mode with a direct executor, so responses
+ * are delivered synchronously on the benchmark thread.
+ */
+final class BenchmarkLoader extends Loader<String> {
+
+    /**
+     * Runs delivery on the calling thread.
+     */
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    /**
+     * A request that is answered by the benchmark instead of a network dispatcher.
+     */
+    static final class BenchmarkRequest extends Request<String> {
+        /**
+         * The listener of the loader.
+         */
+        private final Response.Listener<String> mListener;
+
+        BenchmarkRequest(String url, Response.Listener<String> listener, Response.ErrorListener errorListener) {
+            super(Method.GET, url, errorListener);
+            mListener = listener;
+        }
+
+        /**
+         * Delivers a response the way volley's delivery would.
+         *
+         * @param response The response data.
+         */
+        void respond(String response) {
+            deliverResponse(response);
+        }
+
+        @Override
+        protected Response<String> parseNetworkResponse(NetworkResponse response) {
+            throw new UnsupportedOperationException("Benchmark requests are never parsed.");
+        }
+
+        @Override
+        protected void deliverResponse(String response) {
+            mListener.onResponse(response);
+        }
+    }
+
+    BenchmarkLoader(RequestQueue requestQueue, MemoryCache<String> memoryCache) {
+        super(requestQueue, memoryCache, DIRECT_EXECUTOR);
+    }
+
+    @Override
+    protected CacheKey getCacheKey(String url) {
+        return CacheKey.forRequest(Request.Method.GET, url, null);
+    }
+
+    @Override
+    protected Request<String> makeRequest(String url, Response.Listener<String> listener, Response.ErrorListener errorListener) {
+        return new BenchmarkRequest(url, listener, errorListener);
+    }
+
+    @Override
+    public Builder<String> newRequest() {
+        return new Builder<String>() {
+            @Override
+            public void load(String url, OnLoadListener<String> onLoadListener) {
+                BenchmarkLoader.this.load(url, onLoadListener);
+            }
+
+            @Override
+            public List<DataContainer<String>> loadAll(Collection<String> urls, BulkListener<String> bulkListener) {
+                return BenchmarkLoader.this.loadAll(urls, bulkListener);
+            }
+
+            @Override
+            public List<DataContainer<String>> prefetch(Collection<String> urls) {
+                return BenchmarkLoader.this.prefetch(urls);
+            }
+        };
+    }
+}
@@ -0,0 +1,72 @@
+package com.iftekhar.volleyplus.benchmark;
+
+import com.android.volley.Network;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.toolbox.NoCache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * A {@link RequestQueue} that is never started. Added requests are only remembered, so a benchmark can
+ * answer them itself and then finish them the way volley's dispatchers would.
+ */
+final class BenchmarkRequestQueue extends RequestQueue {
+
+    /**
+     * Listeners volley would call when a request finishes.
+     */
+    private final List<RequestFinishedListener<Object>> mFinishedListeners = new ArrayList<>();
+
+    /**
+     * The request added last.
+     */
+    private Request<?> mLastRequest;
+
+    BenchmarkRequestQueue() {
+        super(new NoCache(), new Network() {
+            @Override
+            public NetworkResponse performRequest(Request<?> request) {
+                throw new UnsupportedOperationException("The benchmark queue has no network.");
+            }
+        });
+    }
+
+    @Override
+    public <T> Request<T> add(Request<T> request) {
+        mLastRequest = request;
+        return request;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> void addRequestFinishedListener(RequestFinishedListener<T> listener) {
+        mFinishedListeners.add((RequestFinishedListener<Object>) listener);
+    }
+
+    /**
+     * Returns the request added last.
+     */
+    Request<?> getLastRequest() {
+        return mLastRequest;
+    }
+
+    /**
+     * Notifies the finished listeners of a request, as volley does once a request was delivered or
+     * discarded after cancellation.
+     *
+     * @param request The finished request.
+     */
+    @SuppressWarnings("unchecked")
+    void finish(Request<?> request) {
+        for (RequestFinishedListener<Object> listener : mFinishedListeners) {
+            listener.onRequestFinished((Request<Object>) request);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.iftekhar.volleyplus.benchmark;
+
+import android.support.v4.util.LruCache;
+
+import com.iftekhar.volleyplus.SegmentedLruCache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * Measures a shared memory cache hammered by 1 to 8 threads, as volley's cache and network dispatchers
+ * and the main thread do, comparing the single-lock {@link LruCache} with the {@link SegmentedLruCache}
+ * that replaced it. Each operation is a get of a random key, followed by a put on a miss and on one in
+ * ten hits. The working set is larger than the cache, so puts also evict.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheContentionBenchmark {
+
+    /**
+     * Number of distinct keys.
+     */
+    private static final int KEY_COUNT = 4096;
+
+    /**
+     * Size of each value in bytes.
+     */
+    private static final int VALUE_SIZE = 1024;
+
+    /**
+     * The cache holds about three quarters of the working set.
+     */
+    private static final int MAX_SIZE = KEY_COUNT * VALUE_SIZE * 3 / 4;
+
+    /**
+     * The operations measured, on either implementation.
+     */
+    private interface Store {
+        byte[] get(String key);
+
+        void put(String key, byte[] value);
+    }
+
+    @Param({"LruCache", "SegmentedLruCache"})
+    public String implementation;
+
+    private Store mStore;
+
+    private String[] mKeys;
+
+    private byte[] mValue;
+
+    /**
+     * The key sequence of one thread.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private final Random mRandom = new Random();
+
+        int next() {
+            return mRandom.nextInt(KEY_COUNT);
+        }
+
+        boolean put() {
+            return mRandom.nextInt(10) == 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        mKeys = new String[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            mKeys[i] = "https://example.com/api/items?page=" + i;
+        }
+        mValue = new byte[VALUE_SIZE];
+        if ("LruCache".equals(implementation)) {
+            final LruCache<String, byte[]> cache = new LruCache<String, byte[]>(MAX_SIZE) {
+                @Override
+                protected int sizeOf(String key, byte[] value) {
+                    return value.length;
+                }
+            };
+            mStore = new Store() {
+                @Override
+                public byte[] get(String key) {
+                    return cache.get(key);
+                }
+
+                @Override
+                public void put(String key, byte[] value) {
+                    cache.put(key, value);
+                }
+            };
+        } else {
+            final SegmentedLruCache<String, byte[]> cache = new SegmentedLruCache<String, byte[]>(MAX_SIZE) {
+                @Override
+                protected int sizeOf(String key, byte[] value) {
+                    return value.length;
+                }
+            };
+            mStore = new Store() {
+                @Override
+                public byte[] get(String key) {
+                    return cache.get(key);
+                }
+
+                @Override
+                public void put(String key, byte[] value) {
+                    cache.put(key, value);
+                }
+            };
+        }
+        for (String key : mKeys) {
+            mStore.put(key, mValue);
+        }
+    }
+
+    private byte[] operate(Cursor cursor) {
+        String key = mKeys[cursor.next()];
+        byte[] value = mStore.get(key);
+        if (value == null || cursor.put()) {
+            mStore.put(key, mValue);
+        }
+        return value;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public byte[] threads1(Cursor cursor) {
+        return operate(cursor);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public byte[] threads2(Cursor cursor) {
+        return operate(cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] threads4(Cursor cursor) {
+        return operate(cursor);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public byte[] threads8(Cursor cursor) {
+        return operate(cursor);
+    }
+}
@@ -0,0 +1,98 @@
+package com.iftekhar.volleyplus.benchmark;
+
+import com.android.volley.Request;
+import com.iftekhar.volleyplus.CacheKey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * Measures building {@link CacheKey}s for bitmap and JSON requests and looking them up in a map, next
+ * to the string keys the loaders built before, as a baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheKeyBenchmark {
+
+    private static final String URL = "https://static.example.com/p/catalog/product-4821-1-zoom.jpg";
+
+    private static final int WIDTH = 360;
+
+    private static final int HEIGHT = 480;
+
+    private static final int SCALE_TYPE = 3;
+
+    private byte[] mBody;
+
+    private HashMap<CacheKey, Object> mKeyMap;
+
+    private HashMap<String, Object> mStringMap;
+
+    @Setup
+    public void setUp() {
+        mBody = new byte[256];
+        for (int i = 0; i < mBody.length; i++) {
+            mBody[i] = (byte) ('a' + i % 26);
+        }
+        mKeyMap = new HashMap<>();
+        mStringMap = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            mKeyMap.put(CacheKey.forDecode(URL + i, WIDTH, HEIGHT, SCALE_TYPE), this);
+            mStringMap.put(stringKey(URL + i), this);
+        }
+        mKeyMap.put(CacheKey.forDecode(URL, WIDTH, HEIGHT, SCALE_TYPE), this);
+        mStringMap.put(stringKey(URL), this);
+    }
+
+    /**
+     * Builds a bitmap key the way BitmapLoader did before it used CacheKey.
+     */
+    private static String stringKey(String url) {
+        return new StringBuilder(url.length() + 12).append("#W").append(WIDTH).append("#H").append(HEIGHT)
+                .append("#S").append(SCALE_TYPE).append(url).toString();
+    }
+
+    @Benchmark
+    public CacheKey decodeKey() {
+        return CacheKey.forDecode(URL, WIDTH, HEIGHT, SCALE_TYPE);
+    }
+
+    @Benchmark
+    public CacheKey requestKeyWithBody() {
+        return CacheKey.forRequest(Request.Method.POST, URL, mBody);
+    }
+
+    @Benchmark
+    public String stringKeyBaseline() {
+        return stringKey(URL);
+    }
+
+    @Benchmark
+    public Object decodeKeyLookup() {
+        return mKeyMap.get(CacheKey.forDecode(URL, WIDTH, HEIGHT, SCALE_TYPE));
+    }
+
+    @Benchmark
+    public Object stringKeyLookupBaseline() {
+        return mStringMap.get(stringKey(URL));
+    }
+}
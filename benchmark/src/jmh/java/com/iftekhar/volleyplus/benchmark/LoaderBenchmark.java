@@ -0,0 +1,133 @@
+package com.iftekhar.volleyplus.benchmark;
+
+import com.android.volley.Request;
+import com.android.volley.VolleyError;
+import com.iftekhar.volleyplus.CacheKey;
+import com.iftekhar.volleyplus.DataContainer;
+import com.iftekhar.volleyplus.Loader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * Measures the hot paths of {@link Loader}: a load served from the memory cache, a full miss from
+ * load to delivery, N callers coalesced onto one request, and a load that is canceled before its
+ * response arrives. Run with the gc profiler to see the allocations per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoaderBenchmark {
+
+    private static final String HIT_URL = "https://example.com/api/items?page=1";
+
+    private static final String MISS_URL = "https://example.com/api/items?page=2";
+
+    private static final String RESPONSE = "{\"items\":[]}";
+
+    /**
+     * A listener that only remembers the container of the last cache miss.
+     */
+    private static final class Listener implements Loader.OnLoadListener<String> {
+        DataContainer<String> mContainer;
+
+        @Override
+        public void onCacheMiss(DataContainer<String> container) {
+            mContainer = container;
+        }
+
+        @Override
+        public void onSuccess(DataContainer<String> container, boolean isFromCache) {
+        }
+
+        @Override
+        public void onErrorResponse(VolleyError error) {
+        }
+    }
+
+    private BenchmarkRequestQueue mQueue;
+
+    private MapMemoryCache<String> mCache;
+
+    private BenchmarkLoader mLoader;
+
+    private Listener mListener;
+
+    private CacheKey mMissKey;
+
+    /**
+     * Number of callers loading the same URL in {@link #coalesce(Subscribers)}.
+     */
+    @State(Scope.Thread)
+    public static class Subscribers {
+        @Param({"1", "10", "100"})
+        public int count;
+    }
+
+    @Setup
+    public void setUp() {
+        mQueue = new BenchmarkRequestQueue();
+        mCache = new MapMemoryCache<>();
+        mLoader = new BenchmarkLoader(mQueue, mCache);
+        mListener = new Listener();
+        mCache.put(CacheKey.forRequest(Request.Method.GET, HIT_URL, null), RESPONSE);
+        mMissKey = CacheKey.forRequest(Request.Method.GET, MISS_URL, null);
+    }
+
+    /**
+     * Answers the request added last and finishes it, then evicts the response so the next
+     * operation misses again.
+     */
+    private void respondAndEvict() {
+        BenchmarkLoader.BenchmarkRequest request = (BenchmarkLoader.BenchmarkRequest) mQueue.getLastRequest();
+        request.respond(RESPONSE);
+        mQueue.finish(request);
+        mCache.remove(mMissKey);
+    }
+
+    @Benchmark
+    public DataContainer<String> loadCacheHit() {
+        mLoader.load(HIT_URL, mListener);
+        return mListener.mContainer;
+    }
+
+    @Benchmark
+    public void loadCacheMiss() {
+        mLoader.load(MISS_URL, mListener);
+        respondAndEvict();
+    }
+
+    @Benchmark
+    public void coalesce(Subscribers subscribers) {
+        for (int i = 0; i < subscribers.count; i++) {
+            mLoader.load(MISS_URL, mListener);
+        }
+        respondAndEvict();
+    }
+
+    @Benchmark
+    public void loadAndCancel() {
+        mLoader.load(MISS_URL, mListener);
+        mLoader.cancel(mListener.mContainer);
+        // volley finishes a canceled request once a dispatcher discards it.
+        mQueue.finish(mQueue.getLastRequest());
+    }
+}
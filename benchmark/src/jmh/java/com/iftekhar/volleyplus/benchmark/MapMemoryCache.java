@@ -0,0 +1,41 @@
+package com.iftekhar.volleyplus.benchmark;
+
+import com.iftekhar.volleyplus.CacheKey;
+import com.iftekhar.volleyplus.MemoryCache;
+
+import java.util.HashMap;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * An unbounded {@link MemoryCache} over a HashMap, so that loader benchmarks measure the loader rather
+ * than a cache's eviction policy.
+ */
+final class MapMemoryCache<T> implements MemoryCache<T> {
+
+    /**
+     * The cached data.
+     */
+    private final HashMap<CacheKey, T> mMap = new HashMap<>();
+
+    @Override
+    public T get(CacheKey cacheKey) {
+        return mMap.get(cacheKey);
+    }
+
+    @Override
+    public void put(CacheKey cacheKey, T t) {
+        mMap.put(cacheKey, t);
+    }
+
+    @Override
+    public void remove(CacheKey cacheKey) {
+        mMap.remove(cacheKey);
+    }
+
+    @Override
+    public void resize(int size) {
+    }
+}
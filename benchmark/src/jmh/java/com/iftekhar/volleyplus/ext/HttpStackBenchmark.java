@@ -0,0 +1,226 @@
+package com.iftekhar.volleyplus.ext;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.toolbox.HttpStack;
+import com.android.volley.toolbox.HurlStack;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * Measures loading a grid of thumbnails from a single host with 8 network threads, comparing a plain
+ * {@link HurlStack} with a {@link PooledHurlStack}. The host is a keep-alive HTTP/1.1 server on the
+ * loopback interface that pauses on every new connection, standing in for the TCP and TLS handshakes
+ * with a remote CDN. The number of connections opened per request is printed after each run.
+ * <p>
+ * Every implementation runs in its own fork, since both configure the connection pool of the JVM
+ * through system properties.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpStackBenchmark {
+
+    /**
+     * Time the server takes to accept a new connection, in milliseconds.
+     */
+    private static final int HANDSHAKE_MS = 10;
+
+    /**
+     * Size of a thumbnail in bytes.
+     */
+    private static final int THUMBNAIL_SIZE = 16 * 1024;
+
+    /**
+     * Number of network threads.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * HurlStack with keep-alive turned off opens a connection per request, as a baseline.
+     */
+    @Param({"HurlStackWithoutKeepAlive", "HurlStack", "PooledHurlStack"})
+    public String implementation;
+
+    private LocalServer mServer;
+
+    private HttpStack mStack;
+
+    private Request<?> mRequest;
+
+    private final AtomicInteger mRequests = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mServer = new LocalServer(THUMBNAIL_SIZE);
+        if ("PooledHurlStack".equals(implementation)) {
+            mStack = new PooledHurlStack();
+        } else {
+            System.setProperty("http.keepAlive", String.valueOf("HurlStack".equals(implementation)));
+            mStack = new HurlStack();
+        }
+        mRequest = new Request<Void>(Request.Method.GET, mServer.getUrl(), null) {
+            @Override
+            protected Response<Void> parseNetworkResponse(NetworkResponse response) {
+                throw new UnsupportedOperationException("Benchmark requests are never parsed.");
+            }
+
+            @Override
+            protected void deliverResponse(Void response) {
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.println(String.format("%s: %d requests over %d connections",
+                implementation, mRequests.get(), mServer.getConnectionCount()));
+        mServer.close();
+    }
+
+    /**
+     * Loads one thumbnail and reads its body, as BasicNetwork does.
+     */
+    @Benchmark
+    @Threads(THREADS)
+    public int load() throws Exception {
+        HttpResponse response = mStack.performRequest(mRequest, Collections.<String, String>emptyMap());
+        HttpEntity entity = response.getEntity();
+        int total = 0;
+        try {
+            InputStream in = entity.getContent();
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                total += count;
+            }
+        } finally {
+            entity.consumeContent();
+        }
+        mRequests.incrementAndGet();
+        return total;
+    }
+
+    /**
+     * A minimal HTTP/1.1 server that answers every request with the same body and keeps connections
+     * open unless asked to close them.
+     */
+    private static final class LocalServer {
+        private final ServerSocket mServerSocket;
+        private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+        private final AtomicInteger mConnections = new AtomicInteger();
+        private final byte[] mResponse;
+
+        LocalServer(int bodySize) throws IOException {
+            mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+            byte[] header = ("HTTP/1.1 200 OK\r\nContent-Type: image/jpeg\r\nContent-Length: " + bodySize
+                    + "\r\n\r\n").getBytes("US-ASCII");
+            // header and body in one write, so delayed acks don't stall the client.
+            mResponse = Arrays.copyOf(header, header.length + bodySize);
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    acceptLoop();
+                }
+            });
+        }
+
+        String getUrl() {
+            return "http://127.0.0.1:" + mServerSocket.getLocalPort() + "/thumbnail.jpg";
+        }
+
+        int getConnectionCount() {
+            return mConnections.get();
+        }
+
+        private void acceptLoop() {
+            while (!mServerSocket.isClosed()) {
+                try {
+                    final Socket socket = mServerSocket.accept();
+                    mConnections.incrementAndGet();
+                    mExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            serve(socket);
+                        }
+                    });
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(Socket socket) {
+            try {
+                Thread.sleep(HANDSHAKE_MS);
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+                OutputStream out = socket.getOutputStream();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    boolean close = false;
+                    // skip the headers of the request, it never has a body.
+                    for (; line != null && !line.isEmpty(); line = reader.readLine()) {
+                        close |= line.equalsIgnoreCase("Connection: close");
+                    }
+                    out.write(mResponse);
+                    out.flush();
+                    if (close) {
+                        break;
+                    }
+                }
+            } catch (IOException | InterruptedException e) {
+                // the client went away.
+            } finally {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        void close() throws IOException {
+            mServerSocket.close();
+            mExecutor.shutdownNow();
+        }
+    }
+}
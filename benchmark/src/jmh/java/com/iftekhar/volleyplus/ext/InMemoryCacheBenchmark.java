@@ -0,0 +1,71 @@
+package com.iftekhar.volleyplus.ext;
+
+import com.android.volley.Cache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * Measures sizing a volley cache entry with typical response headers, which {@link InMemoryCache}
+ * does on every put and eviction, and a put that replaces an existing entry.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InMemoryCacheBenchmark {
+
+    private static final String KEY = "https://example.com/api/items?page=1";
+
+    private InMemoryCache mCache;
+
+    private Cache.Entry mEntry;
+
+    @Setup
+    public void setUp() {
+        mCache = new InMemoryCache(16 * 1024 * 1024);
+        mCache.initialize();
+        mEntry = new Cache.Entry();
+        mEntry.data = new byte[8 * 1024];
+        mEntry.etag = "\"5f3c2a9b-1e4d\"";
+        mEntry.serverDate = System.currentTimeMillis();
+        mEntry.ttl = mEntry.serverDate + 60000;
+        mEntry.softTtl = mEntry.ttl;
+        mEntry.responseHeaders = new HashMap<>();
+        mEntry.responseHeaders.put("Content-Type", "application/json; charset=utf-8");
+        mEntry.responseHeaders.put("Cache-Control", "public, max-age=60");
+        mEntry.responseHeaders.put("Date", "Fri, 16 Oct 2015 10:00:00 GMT");
+        mEntry.responseHeaders.put("ETag", mEntry.etag);
+        mEntry.responseHeaders.put("Server", "nginx");
+        mEntry.responseHeaders.put("Vary", "Accept-Encoding");
+        mEntry.responseHeaders.put("Content-Length", String.valueOf(mEntry.data.length));
+        mEntry.responseHeaders.put("Connection", "keep-alive");
+    }
+
+    @Benchmark
+    public int getEntrySizeInBytes() {
+        return mCache.getEntrySizeInBytes(mEntry);
+    }
+
+    @Benchmark
+    public void putReplacing() {
+        mCache.put(KEY, mEntry);
+    }
+}
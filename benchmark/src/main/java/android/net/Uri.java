@@ -0,0 +1,31 @@
+package android.net;
+
+/**
+ * Stand-in for the platform Uri on a plain JVM, covering what volley's Request needs to derive its
+ * traffic stats tag.
+ */
+public final class Uri {
+
+    private final String mHost;
+
+    private Uri(String host) {
+        mHost = host;
+    }
+
+    public static Uri parse(String uriString) {
+        int start = uriString.indexOf("://");
+        if (start < 0) {
+            return new Uri(null);
+        }
+        start += 3;
+        int end = start;
+        while (end < uriString.length() && "/:?#".indexOf(uriString.charAt(end)) < 0) {
+            end++;
+        }
+        return new Uri(uriString.substring(start, end));
+    }
+
+    public String getHost() {
+        return mHost;
+    }
+}
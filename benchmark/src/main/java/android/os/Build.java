@@ -0,0 +1,21 @@
+package android.os;
+
+/**
+ * Stand-in for the platform Build on a plain JVM. Reports the library's minimum SDK version, so
+ * version-gated code takes its oldest path.
+ */
+public class Build {
+
+    public static class VERSION {
+        public static final int SDK_INT = VERSION_CODES.GINGERBREAD;
+    }
+
+    public static class VERSION_CODES {
+        public static final int GINGERBREAD = 9;
+        public static final int HONEYCOMB = 11;
+        public static final int ICE_CREAM_SANDWICH = 14;
+        public static final int JELLY_BEAN = 16;
+        public static final int KITKAT = 19;
+        public static final int LOLLIPOP = 21;
+    }
+}
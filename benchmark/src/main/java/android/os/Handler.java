@@ -0,0 +1,25 @@
+package android.os;
+
+/**
+ * Stand-in for the platform Handler on a plain JVM. Posted callbacks are never run; the benchmarks
+ * use loaders in concurrent mode, which deliver on an executor instead of the main thread.
+ */
+public class Handler {
+
+    public Handler() {
+    }
+
+    public Handler(Looper looper) {
+    }
+
+    public final boolean post(Runnable r) {
+        return true;
+    }
+
+    public final boolean postDelayed(Runnable r, long delayMillis) {
+        return true;
+    }
+
+    public final void removeCallbacks(Runnable r) {
+    }
+}
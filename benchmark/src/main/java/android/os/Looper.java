@@ -0,0 +1,26 @@
+package android.os;
+
+/**
+ * Stand-in for the platform Looper on a plain JVM. Every thread is treated as the main thread.
+ */
+public final class Looper {
+
+    private static final Looper sMainLooper = new Looper();
+
+    private static final MessageQueue sMainQueue = new MessageQueue();
+
+    private Looper() {
+    }
+
+    public static Looper getMainLooper() {
+        return sMainLooper;
+    }
+
+    public static Looper myLooper() {
+        return sMainLooper;
+    }
+
+    public static MessageQueue myQueue() {
+        return sMainQueue;
+    }
+}
@@ -0,0 +1,21 @@
+package android.os;
+
+/**
+ * Stand-in for the platform MessageQueue on a plain JVM. The queue never goes idle, so idle handlers
+ * are never run.
+ */
+public final class MessageQueue {
+
+    MessageQueue() {
+    }
+
+    public interface IdleHandler {
+        boolean queueIdle();
+    }
+
+    public void addIdleHandler(IdleHandler handler) {
+    }
+
+    public void removeIdleHandler(IdleHandler handler) {
+    }
+}
@@ -0,0 +1,15 @@
+package android.os;
+
+/**
+ * Stand-in for the platform Process on a plain JVM, where thread priorities are left alone.
+ */
+public final class Process {
+
+    public static final int THREAD_PRIORITY_BACKGROUND = 10;
+
+    private Process() {
+    }
+
+    public static void setThreadPriority(int priority) {
+    }
+}
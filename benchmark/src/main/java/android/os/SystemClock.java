@@ -0,0 +1,18 @@
+package android.os;
+
+/**
+ * Stand-in for the platform SystemClock on a plain JVM, backed by {@link System#nanoTime()}.
+ */
+public final class SystemClock {
+
+    private SystemClock() {
+    }
+
+    public static long uptimeMillis() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    public static long elapsedRealtime() {
+        return System.nanoTime() / 1000000L;
+    }
+}
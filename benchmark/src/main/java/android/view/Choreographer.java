@@ -0,0 +1,26 @@
+package android.view;
+
+/**
+ * Stand-in for the platform Choreographer on a plain JVM. Frame callbacks are never run.
+ */
+public final class Choreographer {
+
+    private static final Choreographer sInstance = new Choreographer();
+
+    public interface FrameCallback {
+        void doFrame(long frameTimeNanos);
+    }
+
+    private Choreographer() {
+    }
+
+    public static Choreographer getInstance() {
+        return sInstance;
+    }
+
+    public void postFrameCallback(FrameCallback callback) {
+    }
+
+    public void removeFrameCallback(FrameCallback callback) {
+    }
+}
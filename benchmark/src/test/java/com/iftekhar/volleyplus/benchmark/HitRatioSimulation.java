@@ -0,0 +1,131 @@
+package com.iftekhar.volleyplus.benchmark;
+
+import com.iftekhar.volleyplus.FrequencySketch;
+import com.iftekhar.volleyplus.SegmentedLruCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * Replays a trace of image loads from a scroll-heavy grid against a bitmap cache, once with plain LRU
+ * and once with TinyLFU admission, and prints the hit ratio of each. It fails if admission does not
+ * raise the hit ratio. {@link HitRatioSimulationTest} runs the same trace as part of the tests.
+ * <p>
+ * Every screen shows a few header and avatar images drawn from a small, skewed set that is reused all
+ * the time, and a page of thumbnails from a long grid. The user mostly flings forward, which brings a
+ * page of thumbnails that are never seen again, and now and then scrolls back a few pages. Under LRU
+ * the one-time thumbnails flush out the reused images; admission keeps them cached.
+ * </p>
+ * <pre>
+ * ./gradlew :benchmark:hitRatio
+ * </pre>
+ */
+public final class HitRatioSimulation {
+
+    /**
+     * Number of cached images.
+     */
+    static final int CACHE_SIZE = 60;
+
+    /**
+     * Number of distinct header and avatar images.
+     */
+    private static final int REUSED_IMAGES = 50;
+
+    /**
+     * Number of header and avatar images on every screen.
+     */
+    private static final int REUSED_PER_SCREEN = 6;
+
+    /**
+     * Number of thumbnails in the grid.
+     */
+    private static final int THUMBNAILS = 5000;
+
+    /**
+     * Number of thumbnails on a screen.
+     */
+    private static final int THUMBNAILS_PER_SCREEN = 20;
+
+    /**
+     * Number of screens scrolled through.
+     */
+    private static final int SCREENS = 20000;
+
+    /**
+     * Chance of scrolling back instead of flinging forward.
+     */
+    private static final double SCROLL_BACK_CHANCE = 0.15;
+
+    /**
+     * Seed of the trace, so every run replays the same loads.
+     */
+    static final long SEED = 42;
+
+    private HitRatioSimulation() {
+    }
+
+    public static void main(String[] args) {
+        List<String> trace = makeTrace(new Random(SEED));
+        double lru = replay(trace, false);
+        double tinyLfu = replay(trace, true);
+        System.out.println(String.format("loads=%d cacheSize=%d", trace.size(), CACHE_SIZE));
+        System.out.println(String.format("LRU      hit ratio %.1f%%", lru * 100));
+        System.out.println(String.format("TinyLFU  hit ratio %.1f%%", tinyLfu * 100));
+        if (tinyLfu <= lru) {
+            throw new AssertionError("TinyLFU admission did not beat plain LRU");
+        }
+    }
+
+    /**
+     * Generates the URLs loaded while scrolling through the grid.
+     */
+    static List<String> makeTrace(Random random) {
+        List<String> trace = new ArrayList<>();
+        int page = 0;
+        for (int screen = 0; screen < SCREENS; screen++) {
+            for (int i = 0; i < REUSED_PER_SCREEN; i++) {
+                // skewed towards the first images, like the avatars of the most active users.
+                int image = (int) (REUSED_IMAGES * Math.pow(random.nextDouble(), 2));
+                trace.add("https://example.com/avatars/" + image + ".png");
+            }
+            int first = page * THUMBNAILS_PER_SCREEN;
+            for (int i = 0; i < THUMBNAILS_PER_SCREEN; i++) {
+                trace.add("https://example.com/thumbnails/" + ((first + i) % THUMBNAILS) + ".jpg");
+            }
+            if (random.nextDouble() < SCROLL_BACK_CHANCE) {
+                page = Math.max(0, page - 1 - random.nextInt(3));
+            } else {
+                page++;
+            }
+        }
+        return trace;
+    }
+
+    /**
+     * Loads every URL of the trace through a cache the way a loader does: a get, and a put on a miss.
+     *
+     * @return the hit ratio.
+     */
+    static double replay(List<String> trace, boolean admission) {
+        SegmentedLruCache<String, Object> cache = new SegmentedLruCache<>(CACHE_SIZE);
+        if (admission) {
+            cache.setAdmissionSketch(new FrequencySketch(CACHE_SIZE));
+        }
+        Object bitmap = new Object();
+        int hits = 0;
+        for (String url : trace) {
+            if (cache.get(url) != null) {
+                hits++;
+            } else {
+                cache.put(url, bitmap);
+            }
+        }
+        return (double) hits / trace.size();
+    }
+}
@@ -24,14 +24,14 @@ import android.view.ViewTreeObserver;
 import com.android.volley.Request;
 import com.android.volley.VolleyError;
 import com.iftekhar.volleyplus.DataContainer;
-import com.iftekhar.volleyplus.Loader;
+import com.iftekhar.volleyplus.LruMemoryCache;
 import com.iftekhar.volleyplus.VolleyPlus;
 import com.iftekhar.volleyplus.toolbox.BitmapLoader;
-import com.iftekhar.volleyplus.toolbox.JsonObjectLoader;
+import com.iftekhar.volleyplus.toolbox.RecyclerViewPrefetcher;
+import com.iftekhar.volleyplus.toolbox.StreamingJsonLoader;
 import com.iftekhar.volleyplusdemo.adapter.ClothListAdapter;
 import com.iftekhar.volleyplusdemo.model.Cloth;
 
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -56,15 +56,28 @@ public class ClothListFragment extends Fragment implements SwipeRefreshLayout.On
 
     public static final String TAG = "ClothListFragment";
 
+    /**
+     * The loader streaming cloth items out of the JSON, shared by all instances of this fragment. It is
+     * not pooled in VolleyPlus, whose pool is keyed by data class: its data are plain lists, which any
+     * other loader of lists would collide with.
+     */
+    private static StreamingJsonLoader<Cloth> sClothLoader;
+
+    /**
+     * The number of complete cloth lists kept in memory.
+     */
+    private static final int MAX_CACHED_LISTS = 4;
+
     private boolean mClearCacheBeforeLoading = false;
     private boolean mIsLoading = false;
     private ClothListAdapter mAdapter;
-    private JsonObjectLoader mJSONLoader;
+    private StreamingJsonLoader<Cloth> mClothLoader;
     private BitmapLoader mBitmapLoader;
-    private DataContainer<JSONObject> mContainer;
+    private DataContainer<List<Cloth>> mContainer;
     private SwipeRefreshLayout mRefreshLayout;
     private Snackbar mSnack;
     private RecyclerView mListView;
+    private RecyclerViewPrefetcher mPrefetcher;
     private List<Cloth> mCloths;
 
     public static ClothListFragment findOrGetInstance(FragmentManager fm) {
@@ -79,6 +92,68 @@ public class ClothListFragment extends Fragment implements SwipeRefreshLayout.On
         // Required empty public ctor
     }
 
+    /**
+     * Gets the loader for cloth items, creating it on first use. Items are streamed out of the
+     * "metadata.results" array of the JSON and the few complete lists are kept in a small memory cache,
+     * revalidated whenever the HTTP cache says they are stale.
+     *
+     * @param volleyPlus The VolleyPlus instance to share the RequestQueue of.
+     */
+    private static synchronized StreamingJsonLoader<Cloth> getClothLoader(VolleyPlus volleyPlus) {
+        if (sClothLoader == null) {
+            sClothLoader = new StreamingJsonLoader<>(volleyPlus.getRequestQueue(),
+                    new LruMemoryCache<List<Cloth>>(MAX_CACHED_LISTS), new StreamingJsonLoader.ItemParser<Cloth>() {
+                @Override
+                public List<Cloth> parseItems(JSONObject element) throws JSONException {
+                    return Cloth.createFrom(element);
+                }
+            }, "metadata", "results");
+            // show cached items instantly, but pick up changes to the catalogue in the background.
+            sClothLoader.setStaleWhileRevalidate(true);
+        }
+        return sClothLoader;
+    }
+
+    /**
+     * Shows cloths from a position on, replacing the cloths shown there. Only the rows whose cloth
+     * changed are rebound, so reloading a list that barely changed doesn't redraw the whole grid.
+     *
+     * @param start  The position of the first cloth.
+     * @param cloths The cloths to show.
+     */
+    private void showCloths(int start, List<Cloth> cloths) {
+        int replaced = Math.max(0, Math.min(cloths.size(), mCloths.size() - start));
+        for (int i = 0; i < replaced; i++) {
+            Cloth cloth = cloths.get(i);
+            if (!cloth.equals(mCloths.set(start + i, cloth)) && mAdapter != null) {
+                mAdapter.notifyItemChanged(start + i);
+            }
+        }
+        if (replaced < cloths.size()) {
+            int inserted = mCloths.size();
+            mCloths.addAll(cloths.subList(replaced, cloths.size()));
+            if (mAdapter != null) {
+                mAdapter.notifyItemRangeInserted(inserted, cloths.size() - replaced);
+            }
+        }
+    }
+
+    /**
+     * Removes the cloths shown beyond a number of them.
+     *
+     * @param count The number of cloths to keep.
+     */
+    private void trimCloths(int count) {
+        int removed = mCloths.size() - count;
+        if (removed <= 0) {
+            return;
+        }
+        mCloths.subList(count, mCloths.size()).clear();
+        if (mAdapter != null) {
+            mAdapter.notifyItemRangeRemoved(count, removed);
+        }
+    }
+
     /**
      * Setup Grid layout manager for RecyclerView. The span count for grid layout is calculated
      * after RecyclerView is laid out so that we know the measured width of it.
@@ -107,15 +182,20 @@ public class ClothListFragment extends Fragment implements SwipeRefreshLayout.On
     }
 
     /**
-     * Does the loading and parsing of cloth items. Our adapter is notified from here.
+     * Does the loading of cloth items. Items are shown in chunks while the JSON is still being read,
+     * and replaced by the complete list once it is loaded. Our adapter is notified from here.
      *
-     * @param loader The loader to load JSONObject. We're using JSONObjectLoader in this fragment.
+     * @param loader The loader to stream cloth items with.
      */
-    private void loadCloths(Loader<JSONObject> loader) {
-        JsonObjectLoader jsonObjectLoader = (JsonObjectLoader) loader;
-        jsonObjectLoader.newRequest().requestMethod(Request.Method.GET).load(JSON_URL, new Loader.OnLoadListener<JSONObject>() {
+    private void loadCloths(StreamingJsonLoader<Cloth> loader) {
+        loader.newRequest().requestMethod(Request.Method.GET).load(JSON_URL, new StreamingJsonLoader.OnItemsListener<Cloth>() {
+            /**
+             * number of items this load has shown so far; the ones after them are still from before it.
+             */
+            private int mShown;
+
             @Override
-            public void onCacheMiss(DataContainer<JSONObject> container) {
+            public void onCacheMiss(DataContainer<List<Cloth>> container) {
                 // We have a cache miss. The loading will get in flight soon.
                 // Hold on to the container reference so that we can use it to cancel requests if required.
                 mContainer = container;
@@ -126,7 +206,14 @@ public class ClothListFragment extends Fragment implements SwipeRefreshLayout.On
             }
 
             @Override
-            public void onSuccess(DataContainer<JSONObject> container, boolean isFromCache) {
+            public void onProgress(DataContainer<List<Cloth>> container, List<Cloth> cloths) {
+                // a chunk of items was read, show it right away in place of the old ones.
+                showCloths(mShown, cloths);
+                mShown += cloths.size();
+            }
+
+            @Override
+            public void onSuccess(DataContainer<List<Cloth>> container, boolean isFromCache) {
                 mIsLoading = false;
                 if (isFromCache) {
                     if (mSnack != null) {
@@ -138,19 +225,13 @@ public class ClothListFragment extends Fragment implements SwipeRefreshLayout.On
                         mSnack.setText("Data loaded from network").show();
                     }
                 }
-                mCloths.clear();
-                try {
-                    JSONArray results = container.get().getJSONObject("metadata").getJSONArray("results");
-                    for (int i = 0; i < results.length(); i++) {
-                        final JSONObject object = results.getJSONObject(i);
-                        final List<Cloth> cloths = Cloth.createFrom(object);
-                        mCloths.addAll(cloths);
-                    }
-                } catch (JSONException e) {
-                    e.printStackTrace();
-                }
-                if (mAdapter != null) {
-                    mAdapter.notifyDataSetChanged();
+                // also called again when a revalidation brings a changed list; only update what changed.
+                List<Cloth> cloths = container.get();
+                showCloths(0, cloths);
+                trimCloths(cloths.size());
+                mShown = cloths.size();
+                if (mPrefetcher != null) {
+                    mPrefetcher.reset();
                 }
                 if (mRefreshLayout != null) {
                     mRefreshLayout.setRefreshing(false);
@@ -216,10 +297,10 @@ public class ClothListFragment extends Fragment implements SwipeRefreshLayout.On
         makeActionOverflowMenuShown();
         VolleyPlus volleyPlus = VolleyPlus.getInstance(getContext());
         mBitmapLoader = (BitmapLoader) volleyPlus.getLoaderForClass(Bitmap.class);
-        mJSONLoader = (JsonObjectLoader) volleyPlus.getLoaderForClass(JSONObject.class);
+        mClothLoader = getClothLoader(volleyPlus);
         mCloths = new ArrayList<>();
         mAdapter = new ClothListAdapter(getContext(), R.layout.grid_list_item_cloth, mCloths);
-        loadCloths(mJSONLoader);
+        loadCloths(mClothLoader);
     }
 
     @Nullable
@@ -239,6 +320,9 @@ public class ClothListFragment extends Fragment implements SwipeRefreshLayout.On
             }
         });
         mListView.addOnScrollListener(new RecyclerScrollListener(mRefreshLayout));
+        // warm the cache with the thumbnails of the rows about to scroll into view.
+        mPrefetcher = new RecyclerViewPrefetcher(mBitmapLoader, mAdapter);
+        mListView.addOnScrollListener(mPrefetcher);
         mSnack = Snackbar.make(root.findViewById(R.id.coordinator), "", Snackbar.LENGTH_LONG);
         return root;
     }
@@ -250,9 +334,9 @@ public class ClothListFragment extends Fragment implements SwipeRefreshLayout.On
     public void onRefresh() {
         // if selected from thee options menu to clear the cache before loading.
         if (mClearCacheBeforeLoading && mContainer != null) {
-            mJSONLoader.clear(mContainer);
+            mClothLoader.clear(mContainer);
         }
-        loadCloths(mJSONLoader);
+        loadCloths(mClothLoader);
     }
 
     /**
@@ -7,8 +7,11 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewTreeObserver;
+import android.widget.ImageView;
 import android.widget.TextView;
 
+import com.iftekhar.volleyplus.toolbox.BitmapLoader;
+import com.iftekhar.volleyplus.toolbox.RecyclerViewPrefetcher;
 import com.iftekhar.volleyplus.toolbox.WebImageView;
 import com.iftekhar.volleyplusdemo.R;
 import com.iftekhar.volleyplusdemo.model.Cloth;
@@ -18,7 +21,8 @@ import java.util.List;
 /**
  * Created by Iftekhar on 8/23/2015.
  */
-public class ClothListAdapter extends RecyclerView.Adapter<ClothListAdapter.ViewHolder> {
+public class ClothListAdapter extends RecyclerView.Adapter<ClothListAdapter.ViewHolder>
+        implements RecyclerViewPrefetcher.PrefetchProvider {
 
     private int mLayoutRes;
     private Context mContext;
@@ -88,6 +92,18 @@ public class ClothListAdapter extends RecyclerView.Adapter<ClothListAdapter.View
         return mCloths.size();
     }
 
+    @Override
+    public String getPrefetchUrl(int position) {
+        return position < mCloths.size() ? mCloths.get(position).imageUrl : null;
+    }
+
+    @Override
+    public void onPrepareRequest(int position, BitmapLoader.RequestBuilder builder) {
+        // match the request loadThumbnail() makes, so that the prefetched bitmap is found on bind.
+        Cloth cloth = mCloths.get(position);
+        builder.size(cloth.imageWidth, cloth.imageHeight).scaleType(ImageView.ScaleType.FIT_CENTER);
+    }
+
     /**
      * Holds view items created by RecyclerView.
      */
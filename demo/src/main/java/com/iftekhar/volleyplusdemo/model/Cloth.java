@@ -59,4 +59,33 @@ public class Cloth {
         }
         return cloths;
     }
+
+    /**
+     * Two cloths are equal if they would be shown the same, so unchanged items can be left alone when
+     * the list is reloaded.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Cloth)) {
+            return false;
+        }
+        Cloth other = (Cloth) o;
+        return Float.compare(price, other.price) == 0 && imageWidth == other.imageWidth
+                && imageHeight == other.imageHeight && equal(id, other.id) && equal(name, other.name)
+                && equal(brandName, other.brandName) && equal(imageUrl, other.imageUrl);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = id != null ? id.hashCode() : 0;
+        hash = 31 * hash + (imageUrl != null ? imageUrl.hashCode() : 0);
+        return hash;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a != null ? a.equals(b) : b == null;
+    }
 }
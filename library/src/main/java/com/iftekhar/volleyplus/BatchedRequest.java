@@ -3,7 +3,9 @@ package com.iftekhar.volleyplus;
 import com.android.volley.Request;
 import com.android.volley.VolleyError;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 
 /**
  * @author Iftekhar Ahmed
@@ -11,7 +13,7 @@ import java.util.LinkedList;
 
 /**
  * Wrapper class to map a {@link Request} to the set of active {@link DataContainer} objects that are
- * interested in its results.
+ * interested in its results. It is safe to add and remove containers from multiple threads.
  * @param <T> The type of data to be requested
  */
 public class BatchedRequest<T> {
@@ -31,10 +33,49 @@ public class BatchedRequest<T> {
     protected VolleyError mError;
 
     /**
-     * List of all of the active DataContainers that are interested in the request
+     * List of all of the active DataContainers that are interested in the request. Guarded by this object.
      */
     protected final LinkedList<DataContainer<T>> mContainers = new LinkedList<>();
 
+    /**
+     * True once the request was canceled or its containers were drained for delivery. No containers
+     * can be added afterwards.
+     */
+    private boolean mClosed;
+
+    /**
+     * True if the request was started by a prefetch. It is then not canceled when its last container
+     * leaves, so the data still reaches the cache.
+     */
+    private final boolean mPrefetch;
+
+    /**
+     * The effective priority the request was last ordered by in the loader's pending queue. Guarded by
+     * that queue.
+     */
+    protected Request.Priority mQueuedPriority;
+
+    /**
+     * The order in which the request was submitted to the loader, to keep requests of equal priority
+     * first-in first-out. Guarded by the loader's pending queue.
+     */
+    protected int mSequence;
+
+    /**
+     * True once the loader handed the request to the RequestQueue. Guarded by the loader's pending queue.
+     */
+    protected boolean mAdmitted;
+
+    /**
+     * True if the request revalidates data its containers already got from the memory cache.
+     */
+    protected boolean mRevalidation;
+
+    /**
+     * Time to live of the response in the memory cache, in milliseconds, or {@link ExpiringMemoryCache#NO_EXPIRY}.
+     */
+    protected long mTimeToLiveMs = ExpiringMemoryCache.NO_EXPIRY;
+
     /**
      * Constructs a new BatchedRequest object
      *
@@ -43,9 +84,20 @@ public class BatchedRequest<T> {
      */
     public BatchedRequest(Request<T> request, DataContainer<T> container) {
         mRequest = request;
+        mPrefetch = false;
         mContainers.add(container);
     }
 
+    /**
+     * Constructs a new BatchedRequest object for a prefetch, with no one listening yet.
+     *
+     * @param request The request being tracked
+     */
+    public BatchedRequest(Request<T> request) {
+        mRequest = request;
+        mPrefetch = true;
+    }
+
     /**
      * Set the error for this response
      */
@@ -60,24 +112,82 @@ public class BatchedRequest<T> {
         return mError;
     }
 
+    /**
+     * Returns the effective priority of the request, which is the highest priority among its live
+     * containers, or {@link Loader#PREFETCH_PRIORITY} for a prefetch no one is listening to.
+     */
+    public synchronized Request.Priority getPriority() {
+        Request.Priority priority = mPrefetch ? Loader.PREFETCH_PRIORITY : Request.Priority.LOW;
+        for (DataContainer<T> container : mContainers) {
+            if (!container.mCanceled && container.mPriority.ordinal() > priority.ordinal()) {
+                priority = container.mPriority;
+            }
+        }
+        return priority;
+    }
+
     /**
      * Adds another DataContainer to the list of those interested in the results of
      * the request.
+     *
+     * @param container The container to add to the list
+     * @return True if added, false if the request was already canceled or delivered.
      */
-    public void addContainer(DataContainer<T> container) {
+    public synchronized boolean addContainer(DataContainer<T> container) {
+        if (mClosed) {
+            return false;
+        }
         mContainers.add(container);
+        return true;
+    }
+
+    /**
+     * Returns a copy of the containers currently interested in the request.
+     */
+    public synchronized List<DataContainer<T>> getContainers() {
+        return new ArrayList<>(mContainers);
+    }
+
+    /**
+     * Removes and returns all containers for delivery. No containers can be added afterwards.
+     *
+     * @return the containers that were interested in the request.
+     */
+    public synchronized List<DataContainer<T>> drainContainers() {
+        mClosed = true;
+        List<DataContainer<T>> containers = new ArrayList<>(mContainers);
+        mContainers.clear();
+        return containers;
+    }
+
+    /**
+     * Cancels a prefetch that no one is listening to. A prefetch that was joined by a load keeps going
+     * for it.
+     *
+     * @return True if the request was canceled, false otherwise.
+     */
+    public synchronized boolean cancelPrefetchIfUnused() {
+        if (!mPrefetch || mClosed || !mContainers.isEmpty()) {
+            return false;
+        }
+        mClosed = true;
+        mRequest.cancel();
+        return true;
     }
 
     /**
      * Detaches the DataContainer from the request and cancels the request if no one is
-     * left listening.
+     * left listening. Prefetches are only canceled through {@link #cancelPrefetchIfUnused()}.
      *
      * @param container The container to remove from the list
      * @return True if the request was canceled, false otherwise.
      */
-    public boolean removeContainerAndCancelIfNecessary(DataContainer<T> container) {
-        mContainers.remove(container);
-        if (mContainers.size() == 0) {
+    public synchronized boolean removeContainerAndCancelIfNecessary(DataContainer<T> container) {
+        if (!mContainers.remove(container)) {
+            return false;
+        }
+        if (mContainers.size() == 0 && !mPrefetch) {
+            mClosed = true;
             mRequest.cancel();
             return true;
         }
@@ -0,0 +1,190 @@
+package com.iftekhar.volleyplus;
+
+import com.android.volley.VolleyError;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * Collects the outcome of a {@link Loader#loadAll(java.util.Collection, Loader.BulkListener)} and hands
+ * it to its listener once every URL that missed the cache was loaded, failed or canceled. Each of those
+ * URLs is loaded through an {@link Item}, which the loader coalesces and batches like any other load.
+ * It is safe to finish items from multiple threads.
+ *
+ * @param <T> The type of data
+ */
+class BulkLoad<T> {
+
+    /**
+     * The listener to hand the outcome to.
+     */
+    private final Loader.BulkListener<T> mListener;
+
+    /**
+     * Data by URL, in the order the URLs were given. URLs still loading map to null. Guarded by this object.
+     */
+    private final LinkedHashMap<String, T> mData = new LinkedHashMap<>();
+
+    /**
+     * Errors of the URLs that failed to load, by URL. Guarded by this object.
+     */
+    private final LinkedHashMap<String, VolleyError> mErrors = new LinkedHashMap<>();
+
+    /**
+     * Number of items not finished yet, plus one until all URLs were added. Guarded by this object.
+     */
+    private int mRemaining = 1;
+
+    /**
+     * Number of items, i.e. URLs that missed the memory cache. Guarded by this object.
+     */
+    private int mMisses;
+
+    /**
+     * Number of items canceled. Guarded by this object.
+     */
+    private int mCanceled;
+
+    /**
+     * Constructs a BulkLoad.
+     *
+     * @param listener The listener to hand the outcome to.
+     */
+    BulkLoad(Loader.BulkListener<T> listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Returns true if the URL is already part of this load.
+     */
+    synchronized boolean contains(String url) {
+        return mData.containsKey(url);
+    }
+
+    /**
+     * Adds data served from the memory cache.
+     */
+    synchronized void addHit(String url, T data) {
+        mData.put(url, data);
+    }
+
+    /**
+     * Adds a URL that missed the memory cache.
+     *
+     * @return the listener to load it with.
+     */
+    synchronized Item<T> addMiss(String url) {
+        mData.put(url, null);
+        mRemaining++;
+        mMisses++;
+        return new Item<>(this, url);
+    }
+
+    /**
+     * Marks all URLs as added, and hands the outcome to the listener if no item is left to finish.
+     */
+    void onAllAdded() {
+        synchronized (this) {
+            if (--mRemaining > 0) {
+                return;
+            }
+        }
+        deliver();
+    }
+
+    /**
+     * Records the outcome of an item, and hands the outcome of the load to the listener if it was the
+     * last one to finish.
+     */
+    private void finish(Item<T> item, T data, VolleyError error, boolean canceled) {
+        synchronized (this) {
+            if (item.mFinished) {
+                return;
+            }
+            item.mFinished = true;
+            if (canceled) {
+                mCanceled++;
+            } else if (error != null) {
+                mErrors.put(item.mUrl, error);
+            } else {
+                mData.put(item.mUrl, data);
+            }
+            if (--mRemaining > 0) {
+                return;
+            }
+        }
+        deliver();
+    }
+
+    /**
+     * Hands the outcome to the listener, unless every URL that missed the memory cache was canceled.
+     * Called once, after the last item finished.
+     */
+    private void deliver() {
+        synchronized (this) {
+            if (mMisses > 0 && mCanceled == mMisses) {
+                return;
+            }
+            // URLs that failed or were canceled have no data.
+            for (Iterator<T> iterator = mData.values().iterator(); iterator.hasNext(); ) {
+                if (iterator.next() == null) {
+                    iterator.remove();
+                }
+            }
+        }
+        mListener.onBulkLoaded(mData, mErrors);
+    }
+
+    /**
+     * Loads a single URL of a bulk load.
+     *
+     * @param <T> The type of data
+     */
+    static final class Item<T> implements Loader.OnLoadListener<T> {
+
+        /**
+         * The load this item belongs to.
+         */
+        private final BulkLoad<T> mBulkLoad;
+
+        /**
+         * The URL of the item.
+         */
+        private final String mUrl;
+
+        /**
+         * True once the item was loaded, failed or canceled. Guarded by the load.
+         */
+        private boolean mFinished;
+
+        Item(BulkLoad<T> bulkLoad, String url) {
+            mBulkLoad = bulkLoad;
+            mUrl = url;
+        }
+
+        @Override
+        public void onCacheMiss(DataContainer<T> container) {
+        }
+
+        @Override
+        public void onSuccess(DataContainer<T> container, boolean isFromCache) {
+            mBulkLoad.finish(this, container.get(), null, false);
+        }
+
+        @Override
+        public void onErrorResponse(VolleyError error) {
+            mBulkLoad.finish(this, null, error, false);
+        }
+
+        /**
+         * Leaves the URL out of the outcome.
+         */
+        void onCanceled() {
+            mBulkLoad.finish(this, null, null, true);
+        }
+    }
+}
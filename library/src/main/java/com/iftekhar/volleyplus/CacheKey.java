@@ -0,0 +1,191 @@
+package com.iftekhar.volleyplus;
+
+import com.android.volley.Request;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * Identifies a piece of loaded data in a {@link Loader}'s in-flight maps and {@link MemoryCache}. It folds
+ * in everything that makes two requests return different data: the URL, the request method, the request
+ * body and any decode parameters. The hash is computed once on construction, and equality compares the
+ * hashes before anything else, so looking a key up costs one allocation and no string building.
+ * <p>
+ * Bodies are compared by content, so requests to the same URL with different bodies never share an entry.
+ * In the string form of a key, which volley caches responses under, a body is encoded by its SHA-1 digest,
+ * and the string is built only once per key.
+ * </p>
+ */
+public final class CacheKey {
+
+    /**
+     * The volley request method.
+     */
+    private final int mMethod;
+
+    /**
+     * The request URL.
+     */
+    private final String mUrl;
+
+    /**
+     * The request body, or null if there is none.
+     */
+    private final byte[] mBody;
+
+    /**
+     * The requested width of decoded data, or zero.
+     */
+    private final int mWidth;
+
+    /**
+     * The requested height of decoded data, or zero.
+     */
+    private final int mHeight;
+
+    /**
+     * Any other decode parameter, e.g. the ordinal of a scale type, or zero.
+     */
+    private final int mVariant;
+
+    /**
+     * The precomputed hash of all of the above.
+     */
+    private final int mHash;
+
+    /**
+     * Digits of the hexadecimal body digest.
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * The string form of the key, or null until built.
+     */
+    private volatile String mString;
+
+    private CacheKey(int method, String url, byte[] body, int width, int height, int variant) {
+        mMethod = method;
+        mUrl = url;
+        mBody = body;
+        mWidth = width;
+        mHeight = height;
+        mVariant = variant;
+        int hash = url.hashCode();
+        hash = 31 * hash + method;
+        hash = 31 * hash + Arrays.hashCode(body);
+        hash = 31 * hash + width;
+        hash = 31 * hash + height;
+        hash = 31 * hash + variant;
+        mHash = hash;
+    }
+
+    /**
+     * Creates a key for a request with the specified method and body.
+     *
+     * @param method One of the constants declared in {@link Request.Method}.
+     * @param url    The request URL.
+     * @param body   The request body as sent, or null.
+     * @return the key.
+     */
+    public static CacheKey forRequest(int method, String url, byte[] body) {
+        return new CacheKey(method, url, body, 0, 0, 0);
+    }
+
+    /**
+     * Creates a key for a GET request whose response is decoded with the specified parameters.
+     *
+     * @param url     The request URL.
+     * @param width   The requested width, or zero.
+     * @param height  The requested height, or zero.
+     * @param variant Any other decode parameter, or zero.
+     * @return the key.
+     */
+    public static CacheKey forDecode(String url, int width, int height, int variant) {
+        return new CacheKey(Request.Method.GET, url, null, width, height, variant);
+    }
+
+    /**
+     * Returns the request URL.
+     */
+    public String getUrl() {
+        return mUrl;
+    }
+
+    /**
+     * Returns the request method.
+     */
+    public int getMethod() {
+        return mMethod;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CacheKey)) {
+            return false;
+        }
+        CacheKey other = (CacheKey) o;
+        return mHash == other.mHash && mMethod == other.mMethod && mWidth == other.mWidth
+                && mHeight == other.mHeight && mVariant == other.mVariant && mUrl.equals(other.mUrl)
+                && Arrays.equals(mBody, other.mBody);
+    }
+
+    @Override
+    public int hashCode() {
+        return mHash;
+    }
+
+    /**
+     * Returns the key as a string. A plain GET key is just its URL, so it matches volley's own cache key
+     * for the same request. The string is built on the first call and reused after.
+     */
+    @Override
+    public String toString() {
+        String string = mString;
+        if (string == null) {
+            string = buildString();
+            mString = string;
+        }
+        return string;
+    }
+
+    /**
+     * Builds the string form of the key.
+     */
+    private String buildString() {
+        if (mMethod == Request.Method.GET && mBody == null && mWidth == 0 && mHeight == 0 && mVariant == 0) {
+            return mUrl;
+        }
+        return new StringBuilder(mUrl.length() + 64).append("#M").append(mMethod)
+                .append("#B").append(mBody != null ? digest(mBody) : "")
+                .append("#W").append(mWidth).append("#H").append(mHeight).append("#V").append(mVariant)
+                .append(mUrl).toString();
+    }
+
+    /**
+     * Returns the SHA-1 digest of a request body in hexadecimal, so that different bodies practically
+     * never map to the same string.
+     */
+    private static String digest(byte[] body) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+        byte[] hash = digest.digest(body);
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+}
@@ -1,5 +1,7 @@
 package com.iftekhar.volleyplus;
 
+import com.android.volley.Request;
+
 /**
  * @author Iftekhar Ahmed
  */
@@ -29,7 +31,22 @@ public class DataContainer<T> {
     /**
      * The cache key that was associated with the request
      */
-    protected final String mCacheKey;
+    protected final CacheKey mCacheKey;
+
+    /**
+     * True once the container was canceled; a pending delivery will skip it.
+     */
+    protected volatile boolean mCanceled;
+
+    /**
+     * The priority this container requests its data with. Set through {@link Loader#setPriority(DataContainer, Request.Priority)}.
+     */
+    protected volatile Request.Priority mPriority = Loader.DEFAULT_PRIORITY;
+
+    /**
+     * {@link System#nanoTime()} at which the load missed the cache, for the loader's latency stats.
+     */
+    protected long mLoadStartNanos;
 
     /**
      * Constructs a DataContainer object.
@@ -39,7 +56,7 @@ public class DataContainer<T> {
      * @param cacheKey     The cache key that identifies the requested URL for this container.
      * @param loadListener The listener to call upon loading.
      */
-    public DataContainer(T data, String requestUrl, String cacheKey, Loader.OnLoadListener<T> loadListener) {
+    public DataContainer(T data, String requestUrl, CacheKey cacheKey, Loader.OnLoadListener<T> loadListener) {
         this.mData = data;
         mCacheKey = cacheKey;
         mRequestUrl = requestUrl;
@@ -59,4 +76,11 @@ public class DataContainer<T> {
     public String getRequestUrl() {
         return mRequestUrl;
     }
+
+    /**
+     * Returns the priority this container requests its data with.
+     */
+    public Request.Priority getPriority() {
+        return mPriority;
+    }
 }
@@ -0,0 +1,23 @@
+package com.iftekhar.volleyplus;
+
+import com.android.volley.Request;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * Implemented by volley {@link Request}s that deliver their result after volley finished them, e.g.
+ * because they decode their response off the dispatcher thread. A {@link Loader} otherwise takes a
+ * revalidation that finishes without delivering changed data to have been answered with 304 Not
+ * Modified, and uses this to keep tracking it until the result arrives.
+ */
+public interface DeferredDelivery {
+    /**
+     * Returns whether the request accepted a response whose result it has yet to deliver to its
+     * listeners.
+     *
+     * @return true if a result is still to be delivered.
+     */
+    boolean isDeliveryPending();
+}
@@ -0,0 +1,214 @@
+package com.iftekhar.volleyplus;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * A {@link MemoryCache} that gives the entries of another MemoryCache a time to live. Each entry is
+ * put with its own time to live, or with the cache's default one. Deadlines are kept in a
+ * {@link TimerWheel}, so putting an entry costs O(1). A get only compares the deadline of its own
+ * entry, and an expired entry is never returned.
+ * <p>
+ * Expired entries are also removed in bulk, so they don't hold on to memory until they are looked up.
+ * While deadlines are pending, a pass over the wheel is posted to the main thread for the time the
+ * wheel can next expire one, so the main thread is not woken up in between.
+ * </p>
+ * <p>
+ * {@link Loader}s put entries with the time to live of their request, see {@link Loader#setTimeToLive(long)}.
+ * The wrapped cache still evicts entries on its own, e.g. by size. This cache is thread-safe if the
+ * wrapped cache is.
+ * </p>
+ *
+ * @param <T> The data type.
+ */
+public class ExpiringMemoryCache<T> implements MemoryCache<T> {
+
+    /**
+     * Time to live that never expires.
+     */
+    public static final long NO_EXPIRY = 0;
+
+    /**
+     * The cache holding the entries.
+     */
+    private final MemoryCache<T> mCache;
+
+    /**
+     * Time to live of entries put without one, in milliseconds, or {@link #NO_EXPIRY}.
+     */
+    private final long mDefaultTimeToLiveMs;
+
+    /**
+     * Deadlines of the entries that expire. Guards its own state, writes to mDeadlines and writes to the
+     * wrapped cache, so that an entry expiring can't take a newer entry for the same key with it.
+     */
+    private final TimerWheel<CacheKey> mWheel = new TimerWheel<>(SystemClock.elapsedRealtime());
+
+    /**
+     * The wheel node of each entry that expires, for lock-free checks on get.
+     */
+    private final ConcurrentHashMap<CacheKey, TimerWheel.Node<CacheKey>> mDeadlines = new ConcurrentHashMap<>();
+
+    /**
+     * Handler to the main thread, which the bulk expiry runs on.
+     */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * The time the next bulk expiry is posted for, in milliseconds of
+     * {@link SystemClock#elapsedRealtime()}, or {@link Long#MAX_VALUE} if none is. Guarded by mWheel.
+     */
+    private long mNextExpiryTime = Long.MAX_VALUE;
+
+    /**
+     * Runs the bulk expiry, which posts the next one.
+     */
+    private final Runnable mExpireRunnable = new Runnable() {
+        @Override
+        public void run() {
+            expire();
+        }
+    };
+
+    /**
+     * Constructs an ExpiringMemoryCache whose entries only expire if they are put with a time to live.
+     *
+     * @param cache The cache to hold the entries.
+     */
+    public ExpiringMemoryCache(MemoryCache<T> cache) {
+        this(cache, NO_EXPIRY);
+    }
+
+    /**
+     * Constructs an ExpiringMemoryCache.
+     *
+     * @param cache                The cache to hold the entries.
+     * @param defaultTimeToLiveMs  Time to live of entries put without one, in milliseconds, or {@link #NO_EXPIRY}.
+     */
+    public ExpiringMemoryCache(MemoryCache<T> cache, long defaultTimeToLiveMs) {
+        mCache = cache;
+        mDefaultTimeToLiveMs = defaultTimeToLiveMs;
+    }
+
+    /**
+     * Returns the cache holding the entries.
+     */
+    public MemoryCache<T> getCache() {
+        return mCache;
+    }
+
+    @Override
+    public T get(CacheKey cacheKey) {
+        TimerWheel.Node<CacheKey> node = mDeadlines.get(cacheKey);
+        if (node != null && node.getDeadline() <= SystemClock.elapsedRealtime()) {
+            synchronized (mWheel) {
+                // check again, the entry may have been put again meanwhile.
+                if (mDeadlines.get(cacheKey) == node && node.getDeadline() <= SystemClock.elapsedRealtime()) {
+                    mWheel.cancel(node);
+                    mDeadlines.remove(cacheKey);
+                    mCache.remove(cacheKey);
+                    return null;
+                }
+            }
+        }
+        return mCache.get(cacheKey);
+    }
+
+    /**
+     * Caches data with the default time to live.
+     *
+     * @param cacheKey The key for data.
+     * @param t        The data object.
+     */
+    @Override
+    public void put(CacheKey cacheKey, T t) {
+        put(cacheKey, t, mDefaultTimeToLiveMs);
+    }
+
+    /**
+     * Caches data that expires after the specified time.
+     *
+     * @param cacheKey      The key for data.
+     * @param t             The data object.
+     * @param timeToLiveMs  The time to live in milliseconds, or {@link #NO_EXPIRY}.
+     */
+    public void put(CacheKey cacheKey, T t, long timeToLiveMs) {
+        synchronized (mWheel) {
+            mCache.put(cacheKey, t);
+            TimerWheel.Node<CacheKey> node = mDeadlines.get(cacheKey);
+            if (timeToLiveMs <= NO_EXPIRY) {
+                if (node != null) {
+                    mWheel.cancel(node);
+                    mDeadlines.remove(cacheKey);
+                }
+                return;
+            }
+            long deadline = SystemClock.elapsedRealtime() + timeToLiveMs;
+            if (node != null) {
+                mWheel.reschedule(node, deadline);
+            } else {
+                mDeadlines.put(cacheKey, mWheel.schedule(cacheKey, deadline));
+            }
+            if (deadline < mNextExpiryTime) {
+                scheduleExpiry(deadline);
+            }
+        }
+    }
+
+    @Override
+    public void remove(CacheKey cacheKey) {
+        synchronized (mWheel) {
+            TimerWheel.Node<CacheKey> node = mDeadlines.remove(cacheKey);
+            if (node != null) {
+                mWheel.cancel(node);
+            }
+            mCache.remove(cacheKey);
+        }
+    }
+
+    @Override
+    public void resize(int size) {
+        mCache.resize(size);
+    }
+
+    /**
+     * Removes all entries whose time to live has passed. Runs on its own on the main thread while
+     * deadlines are pending, but may be called from any thread.
+     */
+    public void expire() {
+        List<TimerWheel.Node<CacheKey>> expired = new ArrayList<>();
+        synchronized (mWheel) {
+            mWheel.advance(SystemClock.elapsedRealtime(), expired);
+            for (TimerWheel.Node<CacheKey> node : expired) {
+                mDeadlines.remove(node.getKey());
+                mCache.remove(node.getKey());
+            }
+            scheduleExpiry(mWheel.nextAdvanceTime());
+        }
+    }
+
+    /**
+     * Posts the bulk expiry for the specified time, replacing the one posted before. Must be called
+     * while holding mWheel.
+     *
+     * @param time The time in milliseconds of {@link SystemClock#elapsedRealtime()}, or
+     *             {@link Long#MAX_VALUE} for none.
+     */
+    private void scheduleExpiry(long time) {
+        mNextExpiryTime = time;
+        mHandler.removeCallbacks(mExpireRunnable);
+        if (time != Long.MAX_VALUE) {
+            // the delay doesn't count deep sleep, so the pass may come late; gets never return expired entries anyway.
+            mHandler.postDelayed(mExpireRunnable, Math.max(0, time - SystemClock.elapsedRealtime()));
+        }
+    }
+}
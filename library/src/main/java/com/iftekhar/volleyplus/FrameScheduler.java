@@ -0,0 +1,96 @@
+package com.iftekhar.volleyplus;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.view.Choreographer;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * Runs a callback on the next display frame of the main thread. On Jelly Bean and later, the callback
+ * is aligned to vsync through {@link Choreographer}; on older platforms it is posted one frame interval
+ * later. Must be used from the main thread only.
+ */
+abstract class FrameScheduler {
+
+    /**
+     * Approximate duration of a frame at 60fps, in milliseconds.
+     */
+    static final long FRAME_INTERVAL_MS = 16;
+
+    /**
+     * The callback to run on the next frame.
+     */
+    protected final Runnable mCallback;
+
+    FrameScheduler(Runnable callback) {
+        mCallback = callback;
+    }
+
+    /**
+     * Creates the frame scheduler suited for the platform.
+     *
+     * @param handler  Handler to the main thread, used before Jelly Bean.
+     * @param callback The callback to run on frames.
+     * @return a new FrameScheduler.
+     */
+    static FrameScheduler create(Handler handler, Runnable callback) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            return new ChoreographerFrameScheduler(callback);
+        }
+        return new HandlerFrameScheduler(handler, callback);
+    }
+
+    /**
+     * Schedules the callback to run on the next frame.
+     */
+    abstract void scheduleNextFrame();
+
+    /**
+     * Posts the callback with a frame callback from the main thread's Choreographer.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class ChoreographerFrameScheduler extends FrameScheduler implements Choreographer.FrameCallback {
+        /**
+         * The main thread's Choreographer, obtained lazily since it is bound to the calling thread.
+         */
+        private Choreographer mChoreographer;
+
+        ChoreographerFrameScheduler(Runnable callback) {
+            super(callback);
+        }
+
+        @Override
+        void scheduleNextFrame() {
+            if (mChoreographer == null) {
+                mChoreographer = Choreographer.getInstance();
+            }
+            mChoreographer.postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mCallback.run();
+        }
+    }
+
+    /**
+     * Posts the callback to a main thread handler one frame interval later.
+     */
+    private static final class HandlerFrameScheduler extends FrameScheduler {
+        private final Handler mHandler;
+
+        HandlerFrameScheduler(Handler handler, Runnable callback) {
+            super(callback);
+            mHandler = handler;
+        }
+
+        @Override
+        void scheduleNextFrame() {
+            mHandler.postDelayed(mCallback, FRAME_INTERVAL_MS);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.iftekhar.volleyplus;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * An approximate count of how often keys were accessed recently, for TinyLFU cache admission. It is a
+ * count-min sketch of 4-bit counters, sixteen to a long: each key increments one counter in each of
+ * four rows and its frequency is the smallest of them, so hash collisions can only overestimate it.
+ * <p>
+ * Once the number of increments reaches ten times the number of expected entries, all counters are
+ * halved. Frequencies thereby reflect recent history, and keys that were popular once fade out. Counters
+ * are updated with compare-and-set, so the sketch is thread-safe without locks.
+ * </p>
+ */
+public final class FrequencySketch {
+
+    /**
+     * Seeds of the four hash functions.
+     */
+    private static final int[] SEEDS = {0x97cb3127, 0xb8d3e4f1, 0xa1f2c3d5, 0x8f1bbcdc};
+
+    /**
+     * Largest value of a counter.
+     */
+    private static final int MAX_COUNT = 15;
+
+    /**
+     * Mask of each counter without its top bit, to halve all counters of a long at once.
+     */
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    /**
+     * Number of increments between two halvings, per expected entry.
+     */
+    private static final int SAMPLE_FACTOR = 10;
+
+    /**
+     * The counters, sixteen per long.
+     */
+    private final AtomicLongArray mTable;
+
+    /**
+     * Mask of the table length, a power of two.
+     */
+    private final int mTableMask;
+
+    /**
+     * Number of increments after which all counters are halved.
+     */
+    private final int mSampleSize;
+
+    /**
+     * Number of increments since the last halving.
+     */
+    private final AtomicInteger mAdditions = new AtomicInteger();
+
+    /**
+     * Constructs a FrequencySketch.
+     *
+     * @param expectedEntries The number of entries the cache is expected to hold.
+     */
+    public FrequencySketch(int expectedEntries) {
+        int length = 1;
+        while (length < Math.max(1, expectedEntries)) {
+            length <<= 1;
+        }
+        mTable = new AtomicLongArray(length);
+        mTableMask = length - 1;
+        mSampleSize = SAMPLE_FACTOR * Math.max(1, expectedEntries);
+    }
+
+    /**
+     * Returns the estimated number of recent accesses of a key, at most 15.
+     *
+     * @param key The key.
+     */
+    public int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < SEEDS.length; row++) {
+            int h = rehash(hash, row);
+            long value = mTable.get(h & mTableMask);
+            frequency = Math.min(frequency, (int) ((value >>> offset(h)) & 0xfL));
+        }
+        return frequency;
+    }
+
+    /**
+     * Records an access of a key.
+     *
+     * @param key The key.
+     */
+    public void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < SEEDS.length; row++) {
+            int h = rehash(hash, row);
+            added |= incrementAt(h & mTableMask, offset(h));
+        }
+        if (added && mAdditions.incrementAndGet() == mSampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Increments a counter unless it is at its maximum.
+     *
+     * @return true if the counter was incremented.
+     */
+    private boolean incrementAt(int index, int offset) {
+        while (true) {
+            long value = mTable.get(index);
+            if (((value >>> offset) & 0xfL) == MAX_COUNT) {
+                return false;
+            }
+            if (mTable.compareAndSet(index, value, value + (1L << offset))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Halves all counters, so that older accesses weigh half as much as newer ones.
+     */
+    private void reset() {
+        for (int i = 0; i <= mTableMask; i++) {
+            while (true) {
+                long value = mTable.get(i);
+                if (mTable.compareAndSet(i, value, (value >>> 1) & RESET_MASK)) {
+                    break;
+                }
+            }
+        }
+        mAdditions.addAndGet(-mSampleSize / 2);
+    }
+
+    /**
+     * Returns the bit offset of the counter a hash selects within its long.
+     */
+    private static int offset(int h) {
+        return ((h >>> 24) & 0xf) << 2;
+    }
+
+    /**
+     * Spreads the bits of a key's hash code.
+     */
+    private static int spread(int h) {
+        h ^= (h >>> 17);
+        h *= 0xed5ad4bb;
+        h ^= (h >>> 11);
+        h *= 0xac4c1b51;
+        h ^= (h >>> 15);
+        return h;
+    }
+
+    /**
+     * Derives the hash of a row from the spread hash of a key.
+     */
+    private static int rehash(int hash, int row) {
+        int h = (hash + SEEDS[row]) * SEEDS[row];
+        return h ^ (h >>> 16);
+    }
+}
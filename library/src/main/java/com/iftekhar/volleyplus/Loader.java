@@ -2,13 +2,29 @@ package com.iftekhar.volleyplus;
 
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 
+import com.android.volley.Cache;
 import com.android.volley.Request;
 import com.android.volley.RequestQueue;
 import com.android.volley.Response;
 import com.android.volley.VolleyError;
+import com.iftekhar.volleyplus.ext.InMemoryCache;
+import com.iftekhar.volleyplus.ext.TwoTierCache;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author Iftekhar Ahmed
@@ -24,30 +40,181 @@ import java.util.HashMap;
  * affecting other requests to the same resource.
  * </p>
  * <p>
+ * Each load carries a priority that can be changed while it is in flight with
+ * {@link #setPriority(DataContainer, Request.Priority)}. Only a limited number of requests are handed to the
+ * RequestQueue at once; the rest wait in the loader, ordered by the highest priority among their callers,
+ * so that raising or lowering a priority still re-orders them.
+ * </p>
+ * <p>
+ * With {@link #setStaleWhileRevalidate(boolean)}, a memory cache hit is still served right away, but if
+ * volley's HTTP cache considers the response stale, it is revalidated in the background with a conditional
+ * request. Listeners hear about it again only if the content changed. Only responses volley's HTTP cache
+ * holds in memory are revalidated, so a load never waits on disk.
+ * </p>
+ * <p>
+ * A screen's worth of data can be loaded with {@link #loadAll(Collection, BulkListener)}, which checks the
+ * cache in one pass and hands cached and loaded data to a single callback.
+ * </p>
+ * <p>
  * It is advised to use a singleton of this class per data type.
  * </p>
- * <b>Important:</b> All requests for loading data must be made from the main/UI thread otherwise, an {@link IllegalAccessError}
- * will be thrown.
+ * <b>Important:</b> By default, all requests for loading data must be made from the main/UI thread otherwise, an
+ * {@link IllegalStateException} will be thrown. A Loader constructed with a delivery {@link Executor} runs in concurrent
+ * mode instead: {@link #load(String, OnLoadListener)}, {@link #cancel(DataContainer)} and {@link #isCached(DataContainer)}
+ * may then be called from any thread, and network responses are delivered on that executor.
  *
  * @param <T> The data type to load
  */
 public abstract class Loader<T> {
 
     /**
-     * Amount of time to wait after first response arrives before delivering all responses.
+     * Priority of prefetch requests, so that they yield to loads of data needed right away.
+     */
+    public static final Request.Priority PREFETCH_PRIORITY = Request.Priority.LOW;
+
+    /**
+     * Priority of loads that don't specify one.
+     */
+    public static final Request.Priority DEFAULT_PRIORITY = Request.Priority.NORMAL;
+
+    /**
+     * Default maximum number of requests handed to the RequestQueue at once. Twice volley's default
+     * number of network dispatchers, so that they never run dry while the rest wait here, where their
+     * order can still change.
+     */
+    public static final int DEFAULT_MAX_ACTIVE_REQUESTS = 8;
+
+    /**
+     * Default minimum time between two revalidations of the same data, in milliseconds.
+     */
+    public static final long DEFAULT_REVALIDATION_INTERVAL_MS = 30000;
+
+    /**
+     * Maximum number of cache keys whose last revalidation time is remembered.
+     */
+    private static final int MAX_REVALIDATION_TIMES = 256;
+
+    /**
+     * Orders pending requests by effective priority, highest first, then by submission.
+     */
+    private static final Comparator<BatchedRequest<?>> PENDING_ORDER = new Comparator<BatchedRequest<?>>() {
+        @Override
+        public int compare(BatchedRequest<?> lhs, BatchedRequest<?> rhs) {
+            int byPriority = rhs.mQueuedPriority.ordinal() - lhs.mQueuedPriority.ordinal();
+            return byPriority != 0 ? byPriority : lhs.mSequence - rhs.mSequence;
+        }
+    };
+
+    /**
+     * Maximum amount of time to hold back the first response of a batch while more responses keep arriving.
      */
     private int mBatchResponseDelayMs = 100;
 
     /**
-     * HashMap of Cache keys -> BatchedRequest used to track in-flight requests so
+     * Uptime at which the first response of the pending batch arrived. Main thread only.
+     */
+    private long mBatchStartTime;
+
+    /**
+     * Number of responses batched since the pending batch was last checked on a frame. Main thread only.
+     */
+    private int mResponsesSinceLastFrame;
+
+    /**
+     * Map of Cache keys -> BatchedRequest used to track in-flight requests so
      * that we can coalesce multiple requests to the same URL into a single network request.
+     * It is lock-striped so that concurrent loads of different keys don't contend.
+     */
+    private final ConcurrentHashMap<CacheKey, BatchedRequest<T>> mInFlightRequests = new ConcurrentHashMap<>();
+
+    /**
+     * Map of the currently pending responses (waiting to be delivered).
      */
-    private final HashMap<String, BatchedRequest<T>> mInFlightRequests = new HashMap<>();
+    private final ConcurrentHashMap<CacheKey, BatchedRequest<T>> mBatchedResponses = new ConcurrentHashMap<>();
 
     /**
-     * HashMap of the currently pending responses (waiting to be delivered).
+     * Requests waiting for a free slot in the RequestQueue, ordered by effective priority. Guards the
+     * queueing state of all BatchedRequests as well as mActiveRequests and mNextSequence.
      */
-    private final HashMap<String, BatchedRequest<T>> mBatchedResponses = new HashMap<>();
+    private final PriorityQueue<BatchedRequest<T>> mPendingRequests = new PriorityQueue<>(16, PENDING_ORDER);
+
+    /**
+     * Requests handed to the RequestQueue that have not finished yet.
+     */
+    private final Set<Request<?>> mActiveRequests = new HashSet<>();
+
+    /**
+     * Sequence number of the next submitted request.
+     */
+    private int mNextSequence;
+
+    /**
+     * Maximum number of requests handed to the RequestQueue at once.
+     */
+    private int mMaxActiveRequests = DEFAULT_MAX_ACTIVE_REQUESTS;
+
+    /**
+     * Map of Cache keys -> BatchedRequest revalidating data that was served from the memory cache. Kept
+     * apart from in-flight requests, so that loads missing the cache never wait on a revalidation that
+     * may end without a response.
+     */
+    private final ConcurrentHashMap<CacheKey, BatchedRequest<T>> mRevalidations = new ConcurrentHashMap<>();
+
+    /**
+     * Wall clock time of the last revalidation of recently revalidated keys, least recently used first.
+     */
+    private final Map<CacheKey, Long> mRevalidationTimes = new LinkedHashMap<CacheKey, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CacheKey, Long> eldest) {
+            return size() > MAX_REVALIDATION_TIMES;
+        }
+    };
+
+    /**
+     * True if memory cache hits are revalidated in the background.
+     */
+    private volatile boolean mStaleWhileRevalidate;
+
+    /**
+     * Minimum time between two revalidations of the same data, in milliseconds.
+     */
+    private volatile long mRevalidationIntervalMs = DEFAULT_REVALIDATION_INTERVAL_MS;
+
+    /**
+     * Time to live of loaded data in an {@link ExpiringMemoryCache}, in milliseconds.
+     */
+    private volatile long mTimeToLiveMs = ExpiringMemoryCache.NO_EXPIRY;
+
+    /**
+     * Counters and histograms of this loader's activity.
+     */
+    private final LoaderStats mStats = new LoaderStats();
+
+    /**
+     * The builder of the load, bulk load or prefetch in progress on the current thread, or null if it was
+     * started without one.
+     */
+    private final ThreadLocal<Builder<T>> mRequestData = new ThreadLocal<>();
+
+    /**
+     * Frees the slot of a finished request (delivered, failed or canceled) and admits the next one. A
+     * revalidation that finishes while still tracked, and has no {@link DeferredDelivery deferred result}
+     * to deliver, was answered with 304 Not Modified.
+     */
+    private final RequestQueue.RequestFinishedListener<Object> mRequestFinishedListener =
+            new RequestQueue.RequestFinishedListener<Object>() {
+        @Override
+        public void onRequestFinished(Request<Object> request) {
+            synchronized (mPendingRequests) {
+                if (mActiveRequests.remove(request)) {
+                    admitPendingRequests();
+                }
+            }
+            if (!mRevalidations.isEmpty()) {
+                onRevalidationFinished(request);
+            }
+        }
+    };
 
     /**
      * Handler to the main thread.
@@ -65,26 +232,102 @@ public abstract class Loader<T> {
     private final MemoryCache<T> mCache;
 
     /**
-     * Runnable for in-flight response delivery.
+     * Executor to deliver network responses on in concurrent mode, or null to deliver them in batches
+     * on the main thread.
+     */
+    private final Executor mDeliveryExecutor;
+
+    /**
+     * True if a batch delivery is already posted or running.
      */
-    private Runnable mRunnable;
+    private final AtomicBoolean mDeliveryScheduled = new AtomicBoolean();
 
     /**
-     * Constructs a new Loader instance.
+     * Runnable for in-flight response delivery. Delivers all responses in mBatchedResponses.
+     */
+    private final Runnable mDeliveryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            // Clear the flag first; a response batched while we deliver schedules another run.
+            mDeliveryScheduled.set(false);
+            int delivered = 0;
+            Iterator<Map.Entry<CacheKey, BatchedRequest<T>>> iterator = mBatchedResponses.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<CacheKey, BatchedRequest<T>> entry = iterator.next();
+                if (mBatchedResponses.remove(entry.getKey(), entry.getValue())) {
+                    deliver(entry.getValue());
+                    delivered++;
+                }
+            }
+            if (delivered > 0) {
+                mStats.recordBatch(delivered);
+            }
+        }
+    };
+
+    /**
+     * Runs on frames while a batch is pending on the main thread. Delivers the batch unless responses
+     * are still arriving and the batch may be held back longer.
+     */
+    private final Runnable mFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            long elapsed = SystemClock.uptimeMillis() - mBatchStartTime;
+            if (mResponsesSinceLastFrame > 0 && elapsed + FrameScheduler.FRAME_INTERVAL_MS <= mBatchResponseDelayMs) {
+                // A burst is still arriving; widen the window by one more frame.
+                mResponsesSinceLastFrame = 0;
+                mFrameScheduler.scheduleNextFrame();
+            } else {
+                mDeliveryRunnable.run();
+            }
+        }
+    };
+
+    /**
+     * Schedules mFrameRunnable on main thread frames.
+     */
+    private final FrameScheduler mFrameScheduler = FrameScheduler.create(mHandler, mFrameRunnable);
+
+    /**
+     * Constructs a new Loader instance that must be invoked from the main thread.
      *
      * @param requestQueue The preferred instance of a volley RequestQueue.
      * @param memoryCache  Any implementation of MemoryCache.
      */
     public Loader(RequestQueue requestQueue, MemoryCache<T> memoryCache) {
+        this(requestQueue, memoryCache, null);
+    }
+
+    /**
+     * Constructs a new Loader instance. If a delivery executor is supplied, the loader runs in concurrent
+     * mode and accepts loads and cancellations from any thread. The memory cache must then be thread-safe.
+     * To avoid main thread hops entirely, the request queue should also deliver its responses off the
+     * main thread.
+     *
+     * @param requestQueue     The preferred instance of a volley RequestQueue.
+     * @param memoryCache      Any implementation of MemoryCache.
+     * @param deliveryExecutor The executor to deliver network responses on, or null to deliver them in
+     *                         batches on the main thread.
+     */
+    public Loader(RequestQueue requestQueue, MemoryCache<T> memoryCache, Executor deliveryExecutor) {
         mRequestQueue = requestQueue;
         mCache = memoryCache;
+        mDeliveryExecutor = deliveryExecutor;
+        mRequestQueue.addRequestFinishedListener(mRequestFinishedListener);
     }
 
     /**
-     * Throws an {@link IllegalStateException} if the loader is not called from the main thread.
+     * Returns true if this loader accepts requests from any thread.
+     */
+    public boolean isConcurrent() {
+        return mDeliveryExecutor != null;
+    }
+
+    /**
+     * Throws an {@link IllegalStateException} if the loader is not concurrent and not called from the main thread.
      */
     private void throwIfNotOnMainThread() {
-        if (Looper.myLooper() != Looper.getMainLooper()) {
+        if (mDeliveryExecutor == null && Looper.myLooper() != Looper.getMainLooper()) {
             throw new IllegalStateException("Loader must be invoked from the main thread.");
         }
     }
@@ -97,7 +340,7 @@ public abstract class Loader<T> {
      * @param cacheKey The cacheKey for the request.
      * @return the request to save in queue during flight.
      */
-    private Request<T> makeDataRequest(String url, final String cacheKey) {
+    private Request<T> makeDataRequest(String url, final CacheKey cacheKey) {
         return makeRequest(url, new Response.Listener<T>() {
             @Override
             public void onResponse(T response) {
@@ -113,41 +356,68 @@ public abstract class Loader<T> {
 
     /**
      * Starts the runnable for batched delivery of responses if it is not already started.
+     * <p>
+     * On the main thread, a batch is delivered on the next frame if no other response joined it in
+     * the meantime. While responses keep arriving, delivery is pushed back frame by frame so a burst
+     * lands in a single layout pass, but never beyond the maximum batch delay.
+     * </p>
      *
      * @param cacheKey The cacheKey of the response being delivered.
      * @param request  The BatchedRequest to be delivered.
      */
-    private void batchResponse(String cacheKey, BatchedRequest<T> request) {
+    private void batchResponse(CacheKey cacheKey, BatchedRequest<T> request) {
         mBatchedResponses.put(cacheKey, request);
-        // If we don't already have a batch delivery runnable in flight, make a new one.
+        // If we don't already have a batch delivery runnable in flight, schedule it.
         // Note that this will be used to deliver responses to all callers in mBatchedResponses.
-        if (mRunnable == null) {
-            mRunnable = new Runnable() {
-                @Override
-                public void run() {
-                    for (BatchedRequest<T> br : mBatchedResponses.values()) {
-                        for (DataContainer<T> container : br.mContainers) {
-                            // If one of the callers in the batched request canceled the request
-                            // after the response was received but before it was delivered,
-                            // skip them.
-                            if (container.mListener == null) {
-                                continue;
-                            }
-                            if (br.getError() == null) {
-                                container.mData = br.mResponseData;
-                                container.mListener.onSuccess(container, false);
-                            } else {
-                                container.mListener.onErrorResponse(br.getError());
-                            }
-                        }
-                    }
-                    mBatchedResponses.clear();
-                    mRunnable = null;
-                }
+        if (mDeliveryScheduled.compareAndSet(false, true)) {
+            if (mDeliveryExecutor != null) {
+                mDeliveryExecutor.execute(mDeliveryRunnable);
+            } else {
+                mBatchStartTime = SystemClock.uptimeMillis();
+                mResponsesSinceLastFrame = 0;
+                mFrameScheduler.scheduleNextFrame();
+            }
+        } else if (mDeliveryExecutor == null) {
+            mResponsesSinceLastFrame++;
+        }
+    }
 
-            };
-            // Post the runnable.
-            mHandler.postDelayed(mRunnable, mBatchResponseDelayMs);
+    /**
+     * Sets the maximum time the first response of a batch may be held back, on the main thread, while
+     * more responses keep arriving. A value below one frame delivers every batch on the next frame.
+     *
+     * @param delayMs The latency cap in milliseconds.
+     */
+    public void setMaxBatchDelay(int delayMs) {
+        mBatchResponseDelayMs = delayMs;
+    }
+
+    /**
+     * Delivers the response or error of a batched request to all of its remaining containers.
+     *
+     * @param request The BatchedRequest to be delivered.
+     */
+    private void deliver(BatchedRequest<T> request) {
+        List<DataContainer<T>> containers = request.drainContainers();
+        mStats.recordSubscribers(containers.size());
+        if (request.getError() != null) {
+            mStats.recordError();
+        }
+        long now = System.nanoTime();
+        for (DataContainer<T> container : containers) {
+            // If one of the callers in the batched request canceled the request
+            // after the response was received but before it was delivered,
+            // skip them.
+            if (container.mCanceled) {
+                continue;
+            }
+            if (request.getError() == null) {
+                container.mData = request.mResponseData;
+                mStats.recordLoadLatency(now - container.mLoadStartNanos);
+                container.mListener.onSuccess(container, false);
+            } else {
+                container.mListener.onErrorResponse(request.getError());
+            }
         }
     }
 
@@ -157,14 +427,13 @@ public abstract class Loader<T> {
      * @param cacheKey The cache key that is associated with the data request.
      * @param data     The data that was returned from the network.
      */
-    protected void onGetData(String cacheKey, T data) {
+    protected void onGetData(CacheKey cacheKey, T data) {
         // cache the data that was fetched.
-        mCache.put(cacheKey, data);
+        BatchedRequest<T> request = mInFlightRequests.get(cacheKey);
+        cacheData(cacheKey, data, request);
 
         // remove the request from the list of in-flight requests.
-        BatchedRequest<T> request = mInFlightRequests.remove(cacheKey);
-
-        if (request != null) {
+        if (request != null && mInFlightRequests.remove(cacheKey, request)) {
             // Update the response data.
             request.mResponseData = data;
 
@@ -173,12 +442,69 @@ public abstract class Loader<T> {
         }
     }
 
+    /**
+     * Puts loaded data into the memory cache, with the time to live of its request if the cache expires entries.
+     *
+     * @param cacheKey The cache key of the data.
+     * @param data     The loaded data.
+     * @param request  The request that loaded the data, or null if it is no longer tracked.
+     */
+    @SuppressWarnings("unchecked")
+    private void cacheData(CacheKey cacheKey, T data, BatchedRequest<T> request) {
+        if (request != null && request.mTimeToLiveMs > ExpiringMemoryCache.NO_EXPIRY
+                && mCache instanceof ExpiringMemoryCache) {
+            ((ExpiringMemoryCache<T>) mCache).put(cacheKey, data, request.mTimeToLiveMs);
+        } else {
+            mCache.put(cacheKey, data);
+        }
+    }
+
+    /**
+     * Delivers a partial result of an in-flight request to those of its callers whose listener is an
+     * {@link OnProgressListener}. It is delivered on the main thread, or on the delivery executor in concurrent
+     * mode, ahead of the final response. Callers that join the request later only receive the partial results
+     * produced after they joined.
+     *
+     * @param cacheKey The cache key that is associated with the data request.
+     * @param progress The partial result.
+     */
+    protected void deliverProgress(CacheKey cacheKey, final Object progress) {
+        final BatchedRequest<T> request = mInFlightRequests.get(cacheKey);
+        if (request == null) {
+            return;
+        }
+        post(new Runnable() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public void run() {
+                for (DataContainer<T> container : request.getContainers()) {
+                    if (!container.mCanceled && container.mListener instanceof OnProgressListener) {
+                        ((OnProgressListener<T, Object>) container.mListener).onProgress(container, progress);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs a delivery outside of the batches, on the main thread or on the delivery executor in concurrent mode.
+     *
+     * @param runnable The delivery to run.
+     */
+    private void post(Runnable runnable) {
+        if (mDeliveryExecutor != null) {
+            mDeliveryExecutor.execute(runnable);
+        } else {
+            mHandler.post(runnable);
+        }
+    }
+
     /**
      * Handler for when a requested data failed to load.
      *
      * @param cacheKey The cache key that is associated with the data request.
      */
-    protected void onError(String cacheKey, VolleyError error) {
+    protected void onError(CacheKey cacheKey, VolleyError error) {
         // Notify the requestes that something failed via a null result.
         // Remove this request from the list of in-flight requests.
         BatchedRequest<T> request = mInFlightRequests.remove(cacheKey);
@@ -196,9 +522,56 @@ public abstract class Loader<T> {
      * Get the calculated cache key for the request.
      *
      * @param url The specified URL for the request.
-     * @return the key in String
+     * @return the key identifying the data in the cache and in flight.
      */
-    protected abstract String getCacheKey(String url);
+    protected abstract CacheKey getCacheKey(String url);
+
+    /**
+     * Get the size of cached data, in the units the memory cache is sized in. A
+     * {@link com.iftekhar.volleyplus.toolbox.MemoryBudget}
+     * weights the hits of the loader's cache by it, so a cache whose hits each hold many bytes gets more
+     * room than one serving the same number of small hits. Loaders whose memory cache is sized in bytes
+     * override this with the same size; the default counts every hit as one.
+     *
+     * @param cacheKey The key the data is cached under.
+     * @param data     The cached data.
+     * @return the size of the data, 1 by default.
+     */
+    protected int sizeOf(CacheKey cacheKey, T data) {
+        return 1;
+    }
+
+    /**
+     * Sets the time to live of loaded data. It only applies if the memory cache is an
+     * {@link ExpiringMemoryCache}, whose default time to live is used otherwise.
+     *
+     * @param timeToLiveMs The time to live in milliseconds, or {@link ExpiringMemoryCache#NO_EXPIRY}.
+     */
+    public void setTimeToLive(long timeToLiveMs) {
+        mTimeToLiveMs = timeToLiveMs;
+    }
+
+    /**
+     * Get the time to live of data loaded from the specified URL. Subclasses override this to take the
+     * time to live from their request data.
+     *
+     * @param url The specified URL for the request.
+     * @return the time to live in milliseconds, the one set with {@link #setTimeToLive(long)} by default.
+     */
+    protected long getTimeToLive(String url) {
+        return mTimeToLiveMs;
+    }
+
+    /**
+     * Get the priority to load the specified URL with. Subclasses override this to take the priority
+     * from their request data.
+     *
+     * @param url The specified URL for the request.
+     * @return the priority, {@link #DEFAULT_PRIORITY} by default.
+     */
+    protected Request.Priority getPriority(String url) {
+        return DEFAULT_PRIORITY;
+    }
 
     /**
      * Create the appropriate volley {@link Request} with specified parameters.
@@ -218,6 +591,20 @@ public abstract class Loader<T> {
      */
     public abstract Builder<T> newRequest();
 
+    /**
+     * Returns the builder the load, bulk load or prefetch in progress on the current thread was started
+     * with. Subclasses read their request data from it in {@link #getCacheKey(String)},
+     * {@link #makeRequest(String, Response.Listener, Response.ErrorListener)} and the other methods the
+     * loader calls while loading.
+     *
+     * @param <B> The type of builder the loader's {@link #newRequest()} returns.
+     * @return the builder, or null if the load was started without one.
+     */
+    @SuppressWarnings("unchecked")
+    protected final <B extends Builder<T>> B getRequestData() {
+        return (B) mRequestData.get();
+    }
+
     /**
      * Loads data of type {@link T} from the specified URL.
      *
@@ -225,8 +612,34 @@ public abstract class Loader<T> {
      * @param onLoadListener An implementation of OnLoadListener to be called during the loading process.
      */
     public void load(String url, OnLoadListener<T> onLoadListener) {
+        loadWithRequestData(url, onLoadListener, null);
+    }
+
+    /**
+     * Loads data like {@link #load(String, OnLoadListener)}, with the request data of a builder.
+     * Builders call this from their own load method.
+     *
+     * @param url            The specified URL to load from.
+     * @param onLoadListener An implementation of OnLoadListener to be called during the loading process.
+     * @param requestData    The builder to construct the request with, or null for the defaults.
+     */
+    protected final void loadWithRequestData(String url, OnLoadListener<T> onLoadListener, Builder<T> requestData) {
+        // restore rather than clear, a listener called from within may start a load of its own.
+        Builder<T> previous = mRequestData.get();
+        mRequestData.set(requestData);
+        try {
+            performLoad(url, onLoadListener);
+        } finally {
+            mRequestData.set(previous);
+        }
+    }
+
+    /**
+     * Loads data from the specified URL with the request data of the current thread.
+     */
+    private void performLoad(String url, OnLoadListener<T> onLoadListener) {
 
-        // only fulfill requests that were initiated from the main thread.
+        // unless concurrent, only fulfill requests that were initiated from the main thread.
         throwIfNotOnMainThread();
 
         // Unfortunately, we have no listener to update.
@@ -234,39 +647,562 @@ public abstract class Loader<T> {
             return;
         }
 
-        final String cacheKey = getCacheKey(url);
+        final CacheKey cacheKey = getCacheKey(url);
 
         // Try to look up the request in the cache of previously loaded data.
         T cachedData = mCache.get(cacheKey);
         if (cachedData != null) {
             // Return the cached bitmap.
-            DataContainer<T> container = new DataContainer<>(cachedData, url, null, null);
+            mStats.recordCacheHit(sizeOf(cacheKey, cachedData));
+            if (!isStaleWhileRevalidate(url)) {
+                DataContainer<T> container = new DataContainer<>(cachedData, url, null, null);
+                onLoadListener.onSuccess(container, true);
+                return;
+            }
+            // keep the caller listening, in case the revalidation brings changed data.
+            DataContainer<T> container = new DataContainer<>(cachedData, url, cacheKey, onLoadListener);
+            container.mPriority = PREFETCH_PRIORITY;
             onLoadListener.onSuccess(container, true);
+            revalidate(url, cacheKey, container);
             return;
         }
 
         // The bitmap did not exist in the cache, fetch it!
         DataContainer<T> dataContainer = new DataContainer<>(null, url, cacheKey, onLoadListener);
+        dataContainer.mPriority = getPriority(url);
+        dataContainer.mLoadStartNanos = System.nanoTime();
+        mStats.recordCacheMiss();
 
         // At this point, the caller should know that requested data was not found
         // in the cache. So they can do some intermediary task like load a placeholder
         // for Bitmap data requests.
         onLoadListener.onCacheMiss(dataContainer);
 
-        // Check to see if a request is already in-flight.
-        BatchedRequest<T> request = mInFlightRequests.get(cacheKey);
+        loadMissed(url, cacheKey, dataContainer);
+    }
+
+    /**
+     * Joins the container to the request in flight for its data, or starts one.
+     *
+     * @param url           The URL of the data.
+     * @param cacheKey      The cache key of the data.
+     * @param dataContainer The container of a load that missed the memory cache.
+     */
+    private void loadMissed(String url, CacheKey cacheKey, DataContainer<T> dataContainer) {
+        while (true) {
+            // Check to see if a request is already in-flight.
+            BatchedRequest<T> request = mInFlightRequests.get(cacheKey);
+            if (request != null) {
+                // If it is, add this request to the list of listeners.
+                if (request.addContainer(dataContainer)) {
+                    mStats.recordCoalescedLoad();
+                    // the new container may outrank the ones already waiting.
+                    reprioritize(request);
+                    return;
+                }
+                // The request was canceled or its response is being delivered. The data is
+                // either cached by now or has to be requested again.
+                mInFlightRequests.remove(cacheKey, request);
+                T cachedData = mCache.get(cacheKey);
+                if (cachedData != null) {
+                    dataContainer.mData = cachedData;
+                    dataContainer.mListener.onSuccess(dataContainer, true);
+                    return;
+                }
+                continue;
+            }
+
+            // The request is not already in flight. Track it before sending it to the network,
+            // so that its response can't arrive before it is tracked.
+            Request<T> newRequest = makeDataRequest(url, cacheKey);
+            BatchedRequest<T> newBatchedRequest = new BatchedRequest<>(newRequest, dataContainer);
+            newBatchedRequest.mTimeToLiveMs = getTimeToLive(url);
+            if (mInFlightRequests.putIfAbsent(cacheKey, newBatchedRequest) == null) {
+                mStats.recordRequestStarted();
+                submit(newBatchedRequest);
+                return;
+            }
+            // Another thread started the same request in the meantime; join it instead.
+        }
+    }
+
+    /**
+     * Loads data of type {@link T} from all of the specified URLs and hands it to a single callback.
+     * The memory cache is checked for all URLs first; those that miss it are loaded like with
+     * {@link #load(String, OnLoadListener)}, joining requests already in flight. Once the last of them
+     * was loaded or failed, the listener gets the cached and loaded data together, along with the errors
+     * of the URLs that failed, on the main thread or on the delivery executor in concurrent mode. If all
+     * URLs hit the cache, it is called right away.
+     * <p>
+     * Memory cache hits are not revalidated, even with {@link #setStaleWhileRevalidate(boolean)}.
+     * </p>
+     *
+     * @param urls         The URLs to load from.
+     * @param bulkListener The listener to hand the data to.
+     * @return the containers of the URLs that missed the cache. Canceling one of them with
+     * {@link #cancel(DataContainer)} leaves its URL out of the outcome; once all of them are canceled,
+     * the listener is not called at all.
+     */
+    public List<DataContainer<T>> loadAll(Collection<String> urls, BulkListener<T> bulkListener) {
+        return loadAllWithRequestData(urls, bulkListener, null);
+    }
+
+    /**
+     * Loads data like {@link #loadAll(Collection, BulkListener)}, with the request data of a builder.
+     * Builders call this from their own loadAll method.
+     *
+     * @param urls         The URLs to load from.
+     * @param bulkListener The listener to hand the data to.
+     * @param requestData  The builder to construct the requests with, or null for the defaults.
+     * @return the containers of the URLs that missed the cache.
+     */
+    protected final List<DataContainer<T>> loadAllWithRequestData(Collection<String> urls, BulkListener<T> bulkListener,
+            Builder<T> requestData) {
+        Builder<T> previous = mRequestData.get();
+        mRequestData.set(requestData);
+        try {
+            return performLoadAll(urls, bulkListener);
+        } finally {
+            mRequestData.set(previous);
+        }
+    }
+
+    /**
+     * Loads data from all of the specified URLs with the request data of the current thread.
+     */
+    private List<DataContainer<T>> performLoadAll(Collection<String> urls, BulkListener<T> bulkListener) {
+
+        // unless concurrent, only fulfill requests that were initiated from the main thread.
+        throwIfNotOnMainThread();
+
+        List<DataContainer<T>> containers = new ArrayList<>();
+        if (bulkListener == null) {
+            return containers;
+        }
+
+        BulkLoad<T> bulkLoad = new BulkLoad<>(bulkListener);
+        List<CacheKey> missedKeys = new ArrayList<>();
+
+        // check the cache for all URLs in one pass, then load the misses.
+        for (String url : urls) {
+            if (bulkLoad.contains(url)) {
+                continue;
+            }
+            CacheKey cacheKey = getCacheKey(url);
+            T cachedData = mCache.get(cacheKey);
+            if (cachedData != null) {
+                mStats.recordCacheHit(sizeOf(cacheKey, cachedData));
+                bulkLoad.addHit(url, cachedData);
+                continue;
+            }
+            mStats.recordCacheMiss();
+            DataContainer<T> container = new DataContainer<>(null, url, cacheKey, bulkLoad.addMiss(url));
+            container.mPriority = getPriority(url);
+            container.mLoadStartNanos = System.nanoTime();
+            containers.add(container);
+            missedKeys.add(cacheKey);
+        }
+
+        for (int i = 0; i < containers.size(); i++) {
+            DataContainer<T> container = containers.get(i);
+            loadMissed(container.mRequestUrl, missedKeys.get(i), container);
+        }
+        bulkLoad.onAllAdded();
+        return containers;
+    }
+
+    /**
+     * Sets whether memory cache hits are revalidated. If enabled, a hit is delivered right away with
+     * {@code isFromCache} set. If the response in volley's HTTP cache needs a refresh, it is then revalidated
+     * in the background with the ETag and Last-Modified validators of that response. A 304 Not Modified
+     * answer is dropped without another callback. Changed data replaces the cached data and is delivered
+     * again with {@code isFromCache} unset. The same data is revalidated at most once per
+     * {@link #setRevalidationInterval(long) revalidation interval}. Canceling every container served
+     * the data cancels its revalidation.
+     * <p>
+     * The stale response is looked up on the thread of the load, so only HTTP caches that can be read
+     * without disk I/O are consulted: the memory tier and pending writes of a {@link TwoTierCache}, or an
+     * {@link InMemoryCache}. Data whose response is only on disk, like that of disk-only keys, is not
+     * revalidated.
+     * </p>
+     *
+     * @param enabled True to revalidate memory cache hits.
+     */
+    public void setStaleWhileRevalidate(boolean enabled) {
+        mStaleWhileRevalidate = enabled;
+    }
+
+    /**
+     * Sets the minimum time between two revalidations of the same data.
+     *
+     * @param intervalMs The interval in milliseconds.
+     */
+    public void setRevalidationInterval(long intervalMs) {
+        mRevalidationIntervalMs = intervalMs;
+    }
+
+    /**
+     * Whether a memory cache hit for the specified URL is revalidated. Subclasses override this to take
+     * the policy from their request data.
+     *
+     * @param url The specified URL for the request.
+     * @return the policy set with {@link #setStaleWhileRevalidate(boolean)} by default.
+     */
+    protected boolean isStaleWhileRevalidate(String url) {
+        return mStaleWhileRevalidate;
+    }
+
+    /**
+     * Joins the container to the revalidation of its data, starting one if none is in flight and the
+     * data is due for it.
+     *
+     * @param url       The URL of the data.
+     * @param cacheKey  The cache key of the data.
+     * @param container The container that was served the cached data.
+     */
+    private void revalidate(String url, CacheKey cacheKey, DataContainer<T> container) {
+        BatchedRequest<T> request = mRevalidations.get(cacheKey);
+        if (request != null && request.addContainer(container)) {
+            return;
+        }
+        Request<T> newRequest = makeRevalidationRequest(url, cacheKey);
+        if (newRequest == null) {
+            return;
+        }
+        request = new BatchedRequest<>(newRequest, container);
+        request.mRevalidation = true;
+        request.mTimeToLiveMs = getTimeToLive(url);
+        if (mRevalidations.putIfAbsent(cacheKey, request) == null) {
+            mStats.recordRevalidationStarted();
+            submit(request);
+        }
+    }
+
+    /**
+     * Makes a conditional request for the data if it was not revalidated within the revalidation interval
+     * and volley's HTTP cache holds a response for it in memory that needs a refresh. The request is marked as delivered
+     * so that the network dispatcher drops a 304 Not Modified answer instead of parsing the cached response.
+     *
+     * @param url      The URL of the data.
+     * @param cacheKey The cache key of the data.
+     * @return the request, or null if the data needs no revalidation.
+     */
+    private Request<T> makeRevalidationRequest(String url, final CacheKey cacheKey) {
+        long now = System.currentTimeMillis();
+        synchronized (mRevalidationTimes) {
+            Long revalidatedAt = mRevalidationTimes.get(cacheKey);
+            if (revalidatedAt != null && now - revalidatedAt < mRevalidationIntervalMs) {
+                return null;
+            }
+            mRevalidationTimes.put(cacheKey, now);
+        }
+        Request<T> request = makeRequest(url, new Response.Listener<T>() {
+            @Override
+            public void onResponse(T response) {
+                onRevalidated(cacheKey, response);
+            }
+        }, new Response.ErrorListener() {
+            @Override
+            public void onErrorResponse(VolleyError error) {
+                onRevalidationFailed(cacheKey);
+            }
+        });
+        Cache.Entry entry = peekCacheEntry(request.getCacheKey());
+        if (entry == null || !entry.refreshNeeded()) {
+            return null;
+        }
+        request.setCacheEntry(entry);
+        request.markDelivered();
+        // go straight to the network; the cache dispatcher would deliver the stale response first.
+        request.setShouldCache(false);
+        return request;
+    }
+
+    /**
+     * Returns the entry of volley's HTTP cache for a request, if the cache holds it in memory. Caches that
+     * may read from disk are not consulted, since revalidations start on the thread of the load.
+     *
+     * @param key The cache key of the request.
+     * @return the entry, or null if it is not cached in memory.
+     */
+    private Cache.Entry peekCacheEntry(String key) {
+        Cache cache = mRequestQueue.getCache();
+        if (cache instanceof TwoTierCache) {
+            return ((TwoTierCache) cache).peek(key);
+        }
+        if (cache instanceof InMemoryCache) {
+            return cache.get(key);
+        }
+        return null;
+    }
+
+    /**
+     * Handler for when a revalidation brought changed data. Caches it and delivers it again to the
+     * containers still listening.
+     *
+     * @param cacheKey The cache key of the data.
+     * @param data     The changed data.
+     */
+    protected void onRevalidated(CacheKey cacheKey, final T data) {
+        final BatchedRequest<T> request = mRevalidations.get(cacheKey);
+        cacheData(cacheKey, data, request);
+        mStats.recordRevalidationChanged();
+        if (request == null || !mRevalidations.remove(cacheKey, request)) {
+            return;
+        }
+        post(new Runnable() {
+            @Override
+            public void run() {
+                for (DataContainer<T> container : request.drainContainers()) {
+                    if (!container.mCanceled) {
+                        container.mData = data;
+                        container.mListener.onSuccess(container, false);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Handler for when a revalidation failed. Its containers keep the data they were served.
+     *
+     * @param cacheKey The cache key of the data.
+     */
+    protected void onRevalidationFailed(CacheKey cacheKey) {
+        BatchedRequest<T> request = mRevalidations.remove(cacheKey);
         if (request != null) {
-            // If it is, add this request to the list of listeners.
-            request.addContainer(dataContainer);
+            mStats.recordError();
+            request.drainContainers();
+        }
+    }
+
+    /**
+     * Stops tracking a revalidation that finished without a response, because the data was not modified.
+     * A request that delivers its result after finishing stays tracked until it does.
+     *
+     * @param finished The request that finished.
+     */
+    private void onRevalidationFinished(Request<?> finished) {
+        if (finished instanceof DeferredDelivery && ((DeferredDelivery) finished).isDeliveryPending()) {
+            return;
+        }
+        for (Map.Entry<CacheKey, BatchedRequest<T>> entry : mRevalidations.entrySet()) {
+            BatchedRequest<T> request = entry.getValue();
+            if (request.mRequest == finished && mRevalidations.remove(entry.getKey(), request)) {
+                request.drainContainers();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sets the priority a container requests its data with. If its request is still waiting for the
+     * RequestQueue, it is moved ahead of or behind the other waiting requests accordingly; the effective
+     * priority of a request is the highest priority among its live containers.
+     *
+     * @param container The container whose priority changed.
+     * @param priority  The new priority.
+     */
+    public void setPriority(DataContainer<T> container, Request.Priority priority) {
+        if (container == null || container.mListener == null || container.mPriority == priority) {
             return;
         }
+        container.mPriority = priority;
+        BatchedRequest<T> request = mInFlightRequests.get(container.mCacheKey);
+        if (request != null) {
+            reprioritize(request);
+        }
+    }
+
+    /**
+     * Returns a snapshot of this loader's stats. Cheap enough to be taken periodically for telemetry.
+     *
+     * @return the current stats.
+     */
+    public LoaderStats.Snapshot getStats() {
+        int queued;
+        synchronized (mPendingRequests) {
+            queued = mPendingRequests.size();
+        }
+        return mStats.snapshot(mInFlightRequests.size(), queued);
+    }
+
+    /**
+     * Sets the maximum number of requests handed to the RequestQueue at once. Requests beyond it wait in
+     * the loader, ordered by priority.
+     *
+     * @param maxActiveRequests The maximum number of active requests, at least one.
+     */
+    public void setMaxActiveRequests(int maxActiveRequests) {
+        synchronized (mPendingRequests) {
+            mMaxActiveRequests = Math.max(1, maxActiveRequests);
+            admitPendingRequests();
+        }
+    }
+
+    /**
+     * Queues a newly tracked request for the RequestQueue behind all requests of higher or equal
+     * priority, and admits it right away if there is a free slot.
+     *
+     * @param request The request to submit.
+     */
+    private void submit(BatchedRequest<T> request) {
+        synchronized (mPendingRequests) {
+            request.mQueuedPriority = request.getPriority();
+            request.mSequence = mNextSequence++;
+            mPendingRequests.add(request);
+            admitPendingRequests();
+        }
+    }
+
+    /**
+     * Hands pending requests to the RequestQueue, highest priority first, while there are free slots.
+     * Must be called while holding mPendingRequests.
+     */
+    private void admitPendingRequests() {
+        while (mActiveRequests.size() < mMaxActiveRequests && !mPendingRequests.isEmpty()) {
+            BatchedRequest<T> request = mPendingRequests.poll();
+            if (request.mRequest.isCanceled()) {
+                continue;
+            }
+            request.mAdmitted = true;
+            if (request.mRequest instanceof Prioritizable) {
+                ((Prioritizable) request.mRequest).setPriority(request.mQueuedPriority);
+            }
+            mActiveRequests.add(request.mRequest);
+            if (!request.mRevalidation && dispatchLocally(request.mRequest)) {
+                continue;
+            }
+            mRequestQueue.add(request.mRequest);
+            if (request.mRevalidation) {
+                // it is queued for the network by now; have a changed response written to the HTTP cache.
+                // This races only with a response parsed before the network round trip could complete,
+                // and losing it merely costs the next revalidation a full response.
+                request.mRequest.setShouldCache(true);
+            }
+        }
+    }
+
+    /**
+     * Serves an admitted request without the RequestQueue, if its data is available locally. Called with
+     * the loader's queueing lock held, so the request must be served asynchronously. A request served
+     * locally must still deliver its response or error through the listeners it was made with, and then
+     * be passed to {@link #finishLocalRequest(Request)}. Revalidations always go to the RequestQueue.
+     *
+     * @param request The admitted request.
+     * @return true if the request is served locally, false to add it to the RequestQueue.
+     */
+    protected boolean dispatchLocally(Request<T> request) {
+        return false;
+    }
+
+    /**
+     * Frees the slot of a request that was served locally and admits the next one.
+     *
+     * @param request The request that was served locally.
+     */
+    protected final void finishLocalRequest(Request<T> request) {
+        synchronized (mPendingRequests) {
+            if (mActiveRequests.remove(request)) {
+                admitPendingRequests();
+            }
+        }
+    }
 
-        // The request is not already in flight. Send the new request to the network and
-        // track it.
-        Request<T> newRequest = makeDataRequest(url, cacheKey);
+    /**
+     * Re-evaluates the effective priority of a request after its containers or their priorities changed.
+     * A request still pending in the loader is re-ordered. An admitted one keeps its priority: volley's
+     * queues are priority heaps that don't expect the priority of a queued request to change.
+     *
+     * @param request The request to re-evaluate.
+     */
+    private void reprioritize(BatchedRequest<T> request) {
+        synchronized (mPendingRequests) {
+            Request.Priority priority = request.getPriority();
+            if (request.mAdmitted || request.mQueuedPriority == null || request.mQueuedPriority == priority) {
+                return;
+            }
+            if (mPendingRequests.remove(request)) {
+                request.mQueuedPriority = priority;
+                mPendingRequests.add(request);
+            }
+        }
+    }
 
-        mRequestQueue.add(newRequest);
-        mInFlightRequests.put(cacheKey, new BatchedRequest<>(newRequest, dataContainer));
+    /**
+     * Warms the cache with data from the specified URLs without listening for it. URLs already cached
+     * or in flight are skipped; the rest are queued with {@link #PREFETCH_PRIORITY}. A later {@link #load(String, OnLoadListener)} of the same URL joins the
+     * prefetch instead of requesting it again, and canceling that load doesn't cancel the prefetch.
+     *
+     * @param urls The URLs to prefetch.
+     * @return the containers of the prefetches started. Canceling one with {@link #cancel(DataContainer)}
+     * cancels its prefetch, unless a load joined it in the meantime. They never receive the data.
+     */
+    public List<DataContainer<T>> prefetch(Collection<String> urls) {
+        return prefetchWithRequestData(urls, null);
+    }
+
+    /**
+     * Prefetches data like {@link #prefetch(Collection)}, with the request data of a builder. Builders
+     * call this from their own prefetch method.
+     *
+     * @param urls        The URLs to prefetch.
+     * @param requestData The builder to construct the requests with, or null for the defaults.
+     * @return the containers of the prefetches started.
+     */
+    protected final List<DataContainer<T>> prefetchWithRequestData(Collection<String> urls, Builder<T> requestData) {
+        Builder<T> previous = mRequestData.get();
+        mRequestData.set(requestData);
+        try {
+            return performPrefetch(urls);
+        } finally {
+            mRequestData.set(previous);
+        }
+    }
+
+    /**
+     * Prefetches data from the specified URLs with the request data of the current thread.
+     */
+    private List<DataContainer<T>> performPrefetch(Collection<String> urls) {
+
+        // unless concurrent, only fulfill requests that were initiated from the main thread.
+        throwIfNotOnMainThread();
+
+        List<DataContainer<T>> containers = new ArrayList<>();
+        for (String url : urls) {
+            final CacheKey cacheKey = getCacheKey(url);
+            if (mInFlightRequests.containsKey(cacheKey) || mCache.get(cacheKey) != null) {
+                continue;
+            }
+            Request<T> newRequest = makeDataRequest(url, cacheKey);
+            if (newRequest instanceof Prioritizable) {
+                ((Prioritizable) newRequest).setPriority(PREFETCH_PRIORITY);
+            }
+            BatchedRequest<T> request = new BatchedRequest<>(newRequest);
+            request.mTimeToLiveMs = getTimeToLive(url);
+            if (mInFlightRequests.putIfAbsent(cacheKey, request) == null) {
+                mStats.recordPrefetchStarted();
+                submit(request);
+                containers.add(new DataContainer<T>(null, url, cacheKey, new PrefetchListener<T>()));
+            }
+        }
+        return containers;
+    }
+
+    /**
+     * Cancels the prefetch of a container returned by {@link #prefetch(Collection)}, if it is still in
+     * flight and no load joined it.
+     *
+     * @param container The container of the prefetch.
+     */
+    private void cancelPrefetch(DataContainer<T> container) {
+        BatchedRequest<T> request = mInFlightRequests.get(container.mCacheKey);
+        if (request != null && request.cancelPrefetchIfUnused()) {
+            mInFlightRequests.remove(container.mCacheKey, request);
+            synchronized (mPendingRequests) {
+                mPendingRequests.remove(request);
+            }
+        }
     }
 
     /**
@@ -279,12 +1215,49 @@ public abstract class Loader<T> {
         if (container == null || container.mListener == null) {
             return;
         }
+        // mark the container first so that a delivery already in progress skips it.
+        container.mCanceled = true;
+        mStats.recordCancellation();
+        if (container.mListener instanceof PrefetchListener) {
+            cancelPrefetch(container);
+            return;
+        }
+        if (container.mListener instanceof BulkLoad.Item) {
+            // the bulk listener may be called now; not from within cancel().
+            final BulkLoad.Item<?> item = (BulkLoad.Item<?>) container.mListener;
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    item.onCanceled();
+                }
+            });
+        }
+
+        // a container served from the memory cache may only be waiting for its revalidation, which is
+        // canceled once no one is left listening.
+        BatchedRequest<T> revalidation = mRevalidations.get(container.mCacheKey);
+        if (revalidation != null && revalidation.removeContainerAndCancelIfNecessary(container)) {
+            mRevalidations.remove(container.mCacheKey, revalidation);
+            synchronized (mPendingRequests) {
+                mPendingRequests.remove(revalidation);
+            }
+            // the data was not revalidated after all; let the next load try again.
+            synchronized (mRevalidationTimes) {
+                mRevalidationTimes.remove(container.mCacheKey);
+            }
+        }
 
         BatchedRequest<T> request = mInFlightRequests.get(container.mCacheKey);
         if (request != null) {
             boolean canceled = request.removeContainerAndCancelIfNecessary(container);
             if (canceled) {
-                mInFlightRequests.remove(container.mCacheKey);
+                mInFlightRequests.remove(container.mCacheKey, request);
+                synchronized (mPendingRequests) {
+                    mPendingRequests.remove(request);
+                }
+            } else {
+                // the remaining containers may not need the request as urgently.
+                reprioritize(request);
             }
         } else {
             // check to see if it is already batched for delivery.
@@ -292,7 +1265,7 @@ public abstract class Loader<T> {
             if (request != null) {
                 boolean canceled = request.removeContainerAndCancelIfNecessary(container);
                 if (canceled) {
-                    mBatchedResponses.remove(container.mCacheKey);
+                    mBatchedResponses.remove(container.mCacheKey, request);
                 }
             }
         }
@@ -356,20 +1329,81 @@ public abstract class Loader<T> {
         void onSuccess(DataContainer<P> container, boolean isFromCache);
     }
 
+    /**
+     * Marks the containers returned by {@link #prefetch(Collection)}. Prefetches have no listener, so it
+     * is never called.
+     *
+     * @param <P> The data type.
+     */
+    private static final class PrefetchListener<P> implements OnLoadListener<P> {
+        @Override
+        public void onCacheMiss(DataContainer<P> container) {
+        }
+
+        @Override
+        public void onSuccess(DataContainer<P> container, boolean isFromCache) {
+        }
+
+        @Override
+        public void onErrorResponse(VolleyError error) {
+        }
+    }
+
+    /**
+     * Receives the outcome of {@link #loadAll(Collection, BulkListener)}.
+     *
+     * @param <P> The data type.
+     */
+    public interface BulkListener<P> {
+        /**
+         * Called once all URLs of the load were served from the cache, loaded or failed.
+         *
+         * @param data   The data by URL, in the order the URLs were given, without the URLs that failed
+         *               or were canceled.
+         * @param errors The errors of the URLs that failed, by URL.
+         */
+        void onBulkLoaded(Map<String, P> data, Map<String, VolleyError> errors);
+    }
+
+    /**
+     * An {@link OnLoadListener} that also receives partial results while the data is loading, for loaders
+     * that produce them.
+     *
+     * @param <P> The data type.
+     * @param <R> The type of the partial results.
+     */
+    public interface OnProgressListener<P, R> extends OnLoadListener<P> {
+        /**
+         * Called with a partial result of the data, before {@link #onSuccess(DataContainer, boolean)}.
+         *
+         * @param container The container of the request in flight.
+         * @param progress  The partial result.
+         */
+        void onProgress(DataContainer<P> container, R progress);
+    }
+
     /**
      * <p>Implement this interface to pass {@link Request} specific data which are used by
      * the loader to construct a Request if necessary. A new instance of the Builder should be returned after
      * each call to {@link #newRequest()}.
      * </p>
-     * Builder has one defined method {@link #load(String, OnLoadListener)}. All Loader implementations should keep a
-     * reference to the Builder when this method is called, and use it to construct a volley
-     * {@link Request} when {@link #makeRequest(String, Response.Listener, Response.ErrorListener)}
-     * is called. Also, all Loader implementations should declare additional request-specific builder
-     * methods in their respective Builder implementation.
+     * Builder has three defined methods, {@link #load(String, OnLoadListener)},
+     * {@link #loadAll(Collection, BulkListener)} and {@link #prefetch(Collection)}, which pass the Builder
+     * on to {@link #loadWithRequestData(String, OnLoadListener, Builder)},
+     * {@link #loadAllWithRequestData(Collection, BulkListener, Builder)} and
+     * {@link #prefetchWithRequestData(Collection, Builder)}. Loader implementations read it back through
+     * {@link #getRequestData()} to construct a volley {@link Request} when
+     * {@link #makeRequest(String, Response.Listener, Response.ErrorListener)} is called. Also, all Loader
+     * implementations should declare additional request-specific builder methods in their respective
+     * Builder implementation.
      *
      * @param <T> The data type for request.
      */
     public interface Builder<T> {
         void load(String url, OnLoadListener<T> onLoadListener);
+
+        List<DataContainer<T>> loadAll(Collection<String> urls, BulkListener<T> bulkListener);
+
+        List<DataContainer<T>> prefetch(Collection<String> urls);
     }
 }
@@ -0,0 +1,437 @@
+package com.iftekhar.volleyplus;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * Counters and histograms describing how a {@link Loader} performs: how often its memory cache hits,
+ * how many callers it coalesces onto a single request, how large its delivery batches are and how long
+ * a load takes from {@link Loader#load(String, Loader.OnLoadListener)} to delivery.
+ * <p>
+ * All recording is lock-free and allocation-free, so stats are always on. A consistent-enough view is
+ * taken with {@link Loader#getStats()} or {@link VolleyPlus#getStats()}, which return immutable
+ * {@link Snapshot}s that can be logged or forwarded to any telemetry. Counters are cumulative; the
+ * difference of two snapshots gives the activity between them.
+ * </p>
+ */
+public final class LoaderStats {
+
+    /**
+     * A lock-free histogram of non-negative values in power-of-two buckets. Bucket 0 holds zeros and
+     * bucket i holds values in [2^(i-1), 2^i), so percentiles are accurate to a factor of two.
+     */
+    public static final class Histogram {
+
+        /**
+         * Number of buckets. The last bucket also holds every larger value.
+         */
+        public static final int BUCKET_COUNT = 40;
+
+        /**
+         * Number of values recorded per bucket.
+         */
+        private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+
+        /**
+         * Number of values recorded.
+         */
+        private final AtomicLong mCount = new AtomicLong();
+
+        /**
+         * Sum of values recorded.
+         */
+        private final AtomicLong mSum = new AtomicLong();
+
+        /**
+         * Largest value recorded.
+         */
+        private final AtomicLong mMax = new AtomicLong();
+
+        Histogram() {
+        }
+
+        /**
+         * Records a value. Negative values are recorded as zero.
+         *
+         * @param value The value to record.
+         */
+        void record(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            mBuckets.incrementAndGet(Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(value)));
+            mCount.incrementAndGet();
+            mSum.addAndGet(value);
+            long max = mMax.get();
+            while (value > max && !mMax.compareAndSet(max, value)) {
+                max = mMax.get();
+            }
+        }
+
+        /**
+         * Returns an immutable copy of the histogram.
+         */
+        public Snapshot snapshot() {
+            long[] buckets = new long[BUCKET_COUNT];
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                buckets[i] = mBuckets.get(i);
+            }
+            return new Snapshot(buckets, mCount.get(), mSum.get(), mMax.get());
+        }
+
+        /**
+         * An immutable copy of a {@link Histogram}.
+         */
+        public static final class Snapshot {
+            /**
+             * Number of values per bucket.
+             */
+            private final long[] mBuckets;
+
+            /**
+             * Number of values.
+             */
+            private final long mCount;
+
+            /**
+             * Sum of values.
+             */
+            private final long mSum;
+
+            /**
+             * Largest value.
+             */
+            private final long mMax;
+
+            Snapshot(long[] buckets, long count, long sum, long max) {
+                mBuckets = buckets;
+                mCount = count;
+                mSum = sum;
+                mMax = max;
+            }
+
+            /**
+             * Returns the largest value that falls into the specified bucket.
+             *
+             * @param bucket The bucket index.
+             */
+            public static long getBucketUpperBound(int bucket) {
+                return bucket >= BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+            }
+
+            /**
+             * Returns the number of values in the specified bucket.
+             *
+             * @param bucket The bucket index.
+             */
+            public long getBucketCount(int bucket) {
+                return mBuckets[bucket];
+            }
+
+            /**
+             * Returns the number of values recorded.
+             */
+            public long getCount() {
+                return mCount;
+            }
+
+            /**
+             * Returns the mean of the values recorded, or 0 if there are none.
+             */
+            public double getMean() {
+                return mCount == 0 ? 0 : (double) mSum / mCount;
+            }
+
+            /**
+             * Returns the largest value recorded.
+             */
+            public long getMax() {
+                return mMax;
+            }
+
+            /**
+             * Returns an upper bound of the specified percentile, within a factor of two.
+             *
+             * @param percentile The percentile, between 0 and 100.
+             * @return the upper bound, or 0 if no values were recorded.
+             */
+            public long getPercentile(double percentile) {
+                long rank = (long) Math.ceil(mCount * percentile / 100d);
+                long seen = 0;
+                for (int i = 0; i < mBuckets.length; i++) {
+                    seen += mBuckets[i];
+                    if (seen >= rank && seen > 0) {
+                        return Math.min(getBucketUpperBound(i), mMax);
+                    }
+                }
+                return mMax;
+            }
+
+            @Override
+            public String toString() {
+                return String.format("[count=%d,mean=%.1f,p50=%d,p90=%d,p99=%d,max=%d]", mCount, getMean(),
+                        getPercentile(50), getPercentile(90), getPercentile(99), mMax);
+            }
+        }
+    }
+
+    private final AtomicLong mCacheHits = new AtomicLong();
+    private final AtomicLong mCacheHitBytes = new AtomicLong();
+    private final AtomicLong mCacheMisses = new AtomicLong();
+    private final AtomicLong mCoalescedLoads = new AtomicLong();
+    private final AtomicLong mRequestsStarted = new AtomicLong();
+    private final AtomicLong mPrefetchesStarted = new AtomicLong();
+    private final AtomicLong mRevalidationsStarted = new AtomicLong();
+    private final AtomicLong mRevalidationsChanged = new AtomicLong();
+    private final AtomicLong mCancellations = new AtomicLong();
+    private final AtomicLong mErrors = new AtomicLong();
+
+    /**
+     * Number of responses delivered together in each batch.
+     */
+    private final Histogram mBatchSizes = new Histogram();
+
+    /**
+     * Number of callers each delivered request was shared by.
+     */
+    private final Histogram mSubscribers = new Histogram();
+
+    /**
+     * Microseconds from a load that missed the cache to the delivery of its data.
+     */
+    private final Histogram mLoadLatencyMicros = new Histogram();
+
+    LoaderStats() {
+    }
+
+    void recordCacheHit(int bytes) {
+        mCacheHits.incrementAndGet();
+        mCacheHitBytes.addAndGet(bytes);
+    }
+
+    void recordCacheMiss() {
+        mCacheMisses.incrementAndGet();
+    }
+
+    void recordCoalescedLoad() {
+        mCoalescedLoads.incrementAndGet();
+    }
+
+    void recordRequestStarted() {
+        mRequestsStarted.incrementAndGet();
+    }
+
+    void recordPrefetchStarted() {
+        mPrefetchesStarted.incrementAndGet();
+    }
+
+    void recordRevalidationStarted() {
+        mRevalidationsStarted.incrementAndGet();
+    }
+
+    void recordRevalidationChanged() {
+        mRevalidationsChanged.incrementAndGet();
+    }
+
+    void recordCancellation() {
+        mCancellations.incrementAndGet();
+    }
+
+    void recordError() {
+        mErrors.incrementAndGet();
+    }
+
+    void recordBatch(int size) {
+        mBatchSizes.record(size);
+    }
+
+    void recordSubscribers(int count) {
+        mSubscribers.record(count);
+    }
+
+    void recordLoadLatency(long nanos) {
+        mLoadLatencyMicros.record(nanos / 1000);
+    }
+
+    /**
+     * Returns an immutable copy of the stats.
+     *
+     * @param inFlight The number of requests currently in flight.
+     * @param queued   The number of those waiting in the loader for the RequestQueue.
+     */
+    Snapshot snapshot(int inFlight, int queued) {
+        return new Snapshot(mCacheHits.get(), mCacheHitBytes.get(), mCacheMisses.get(), mCoalescedLoads.get(), mRequestsStarted.get(),
+                mPrefetchesStarted.get(), mRevalidationsStarted.get(), mRevalidationsChanged.get(), mCancellations.get(),
+                mErrors.get(), inFlight, queued, mBatchSizes.snapshot(), mSubscribers.snapshot(), mLoadLatencyMicros.snapshot());
+    }
+
+    /**
+     * An immutable copy of a loader's {@link LoaderStats}.
+     */
+    public static final class Snapshot {
+        private final long mCacheHits;
+        private final long mCacheHitBytes;
+        private final long mCacheMisses;
+        private final long mCoalescedLoads;
+        private final long mRequestsStarted;
+        private final long mPrefetchesStarted;
+        private final long mRevalidationsStarted;
+        private final long mRevalidationsChanged;
+        private final long mCancellations;
+        private final long mErrors;
+        private final int mInFlight;
+        private final int mQueued;
+        private final Histogram.Snapshot mBatchSizes;
+        private final Histogram.Snapshot mSubscribers;
+        private final Histogram.Snapshot mLoadLatencyMicros;
+
+        Snapshot(long cacheHits, long cacheHitBytes, long cacheMisses, long coalescedLoads, long requestsStarted,
+                 long prefetchesStarted, long revalidationsStarted, long revalidationsChanged, long cancellations, long errors, int inFlight,
+                 int queued, Histogram.Snapshot batchSizes, Histogram.Snapshot subscribers,
+                 Histogram.Snapshot loadLatencyMicros) {
+            mCacheHits = cacheHits;
+            mCacheHitBytes = cacheHitBytes;
+            mCacheMisses = cacheMisses;
+            mCoalescedLoads = coalescedLoads;
+            mRequestsStarted = requestsStarted;
+            mPrefetchesStarted = prefetchesStarted;
+            mRevalidationsStarted = revalidationsStarted;
+            mRevalidationsChanged = revalidationsChanged;
+            mCancellations = cancellations;
+            mErrors = errors;
+            mInFlight = inFlight;
+            mQueued = queued;
+            mBatchSizes = batchSizes;
+            mSubscribers = subscribers;
+            mLoadLatencyMicros = loadLatencyMicros;
+        }
+
+        /**
+         * Returns the number of loads served from the memory cache.
+         */
+        public long getCacheHits() {
+            return mCacheHits;
+        }
+
+        /**
+         * Returns the total size of the data served from the memory cache, as measured by
+         * {@link Loader#sizeOf(CacheKey, Object)}.
+         */
+        public long getCacheHitBytes() {
+            return mCacheHitBytes;
+        }
+
+        /**
+         * Returns the number of loads that missed the memory cache.
+         */
+        public long getCacheMisses() {
+            return mCacheMisses;
+        }
+
+        /**
+         * Returns the fraction of loads served from the memory cache, or 0 if there were none.
+         */
+        public double getHitRate() {
+            long loads = mCacheHits + mCacheMisses;
+            return loads == 0 ? 0 : (double) mCacheHits / loads;
+        }
+
+        /**
+         * Returns the number of cache misses that joined a request already in flight.
+         */
+        public long getCoalescedLoads() {
+            return mCoalescedLoads;
+        }
+
+        /**
+         * Returns the number of requests started for loads.
+         */
+        public long getRequestsStarted() {
+            return mRequestsStarted;
+        }
+
+        /**
+         * Returns the number of requests started for prefetches.
+         */
+        public long getPrefetchesStarted() {
+            return mPrefetchesStarted;
+        }
+
+        /**
+         * Returns the number of conditional requests started to revalidate memory cache hits.
+         */
+        public long getRevalidationsStarted() {
+            return mRevalidationsStarted;
+        }
+
+        /**
+         * Returns the number of revalidations that brought changed data. The rest were not modified or failed.
+         */
+        public long getRevalidationsChanged() {
+            return mRevalidationsChanged;
+        }
+
+        /**
+         * Returns the number of loads canceled.
+         */
+        public long getCancellations() {
+            return mCancellations;
+        }
+
+        /**
+         * Returns the number of requests that failed.
+         */
+        public long getErrors() {
+            return mErrors;
+        }
+
+        /**
+         * Returns the number of requests in flight when the snapshot was taken.
+         */
+        public int getInFlight() {
+            return mInFlight;
+        }
+
+        /**
+         * Returns the number of in-flight requests that were waiting for the RequestQueue when the
+         * snapshot was taken.
+         */
+        public int getQueued() {
+            return mQueued;
+        }
+
+        /**
+         * Returns the histogram of responses delivered together per batch.
+         */
+        public Histogram.Snapshot getBatchSizes() {
+            return mBatchSizes;
+        }
+
+        /**
+         * Returns the histogram of callers each delivered request was shared by.
+         */
+        public Histogram.Snapshot getSubscribers() {
+            return mSubscribers;
+        }
+
+        /**
+         * Returns the histogram of microseconds from a load that missed the cache to the delivery of its data.
+         */
+        public Histogram.Snapshot getLoadLatencyMicros() {
+            return mLoadLatencyMicros;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("LoaderStats[hits=%d,misses=%d,hitRate=%d%%,coalesced=%d,requests=%d,prefetches=%d,"
+                            + "revalidations=%d,revalidationsChanged=%d,cancellations=%d,errors=%d,inFlight=%d,queued=%d,batchSizes=%s,subscribers=%s,latencyMicros=%s]",
+                    mCacheHits, mCacheMisses, (int) (100 * getHitRate()), mCoalescedLoads, mRequestsStarted,
+                    mPrefetchesStarted, mRevalidationsStarted, mRevalidationsChanged, mCancellations, mErrors, mInFlight, mQueued, mBatchSizes, mSubscribers,
+                    mLoadLatencyMicros);
+        }
+    }
+}
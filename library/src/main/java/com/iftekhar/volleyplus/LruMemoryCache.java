@@ -0,0 +1,55 @@
+package com.iftekhar.volleyplus;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * A {@link MemoryCache} that keeps a fixed number of entries, evicting the least recently used one
+ * first. It suits loaders whose data is few and of similar size, e.g. a handful of lists, where
+ * sizing the cache in bytes isn't worth it. It is backed by a {@link SegmentedLruCache} of a single
+ * segment, so it evicts in exact LRU order and is thread-safe.
+ *
+ * @param <T> The data type.
+ */
+public class LruMemoryCache<T> implements MemoryCache<T> {
+
+    /**
+     * The cache holding the entries, sized in entries.
+     */
+    private final SegmentedLruCache<CacheKey, T> mCache;
+
+    /**
+     * Constructs an LruMemoryCache.
+     *
+     * @param maxEntries The maximum number of entries.
+     */
+    public LruMemoryCache(int maxEntries) {
+        mCache = new SegmentedLruCache<>(maxEntries, 1);
+    }
+
+    @Override
+    public T get(CacheKey cacheKey) {
+        return mCache.get(cacheKey);
+    }
+
+    @Override
+    public void put(CacheKey cacheKey, T t) {
+        mCache.put(cacheKey, t);
+    }
+
+    @Override
+    public void remove(CacheKey cacheKey) {
+        mCache.remove(cacheKey);
+    }
+
+    /**
+     * Sets a new maximum number of entries, evicting entries if it shrinks.
+     *
+     * @param size The new maximum number of entries.
+     */
+    @Override
+    public void resize(int size) {
+        mCache.resize(size);
+    }
+}
@@ -17,7 +17,7 @@ public interface MemoryCache<T> {
      * @param cacheKey The key for entry
      * @return the data, or null if not found
      */
-    T get(String cacheKey);
+    T get(CacheKey cacheKey);
 
     /**
      * Caches data against the specified key.
@@ -25,14 +25,14 @@ public interface MemoryCache<T> {
      * @param cacheKey The key for data.
      * @param t        The data object.
      */
-    void put(String cacheKey, T t);
+    void put(CacheKey cacheKey, T t);
 
     /**
      * Removes a cache entry with the specified key, if found.
      *
      * @param cacheKey The key for entry
      */
-    void remove(String cacheKey);
+    void remove(CacheKey cacheKey);
 
     /**
      * Sets a new maximum size for the cache implementation.
@@ -0,0 +1,20 @@
+package com.iftekhar.volleyplus;
+
+import com.android.volley.Request;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * Implemented by volley {@link Request}s whose priority can be set by a {@link Loader} before they are
+ * added to the RequestQueue. A {@link Loader} uses it to lower the priority of prefetches.
+ */
+public interface Prioritizable {
+    /**
+     * Sets the priority the request is queued with. Has no effect once the request was queued.
+     *
+     * @param priority The new priority.
+     */
+    void setPriority(Request.Priority priority);
+}
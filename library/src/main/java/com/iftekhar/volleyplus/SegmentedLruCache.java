@@ -0,0 +1,492 @@
+package com.iftekhar.volleyplus;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * A size-bounded cache with the API of {@link android.support.v4.util.LruCache}, split into segments
+ * that each have their own lock. Keys are spread over the segments by hash, so threads working on
+ * different keys rarely wait on each other, where LruCache takes one monitor for every get and put.
+ * <p>
+ * Each segment keeps its entries in access order and the size is bounded across all segments. A put
+ * evicts the least recently used entries of its own segment first and only then those of the other
+ * segments, so eviction order is an approximation of LRU. An entry's size is computed once, outside
+ * the lock, when it is put. Like LruCache, {@link #entryRemoved(boolean, Object, Object, Object)} is
+ * called without holding any lock. The size may briefly exceed the maximum while puts race.
+ * </p>
+ * <p>
+ * With a {@link FrequencySketch} set through {@link #setAdmissionSketch(FrequencySketch)}, the cache
+ * admits entries TinyLFU style. Every get is counted in the sketch. A put of a new key that would cause
+ * an eviction is rejected if the key was accessed less often than the entry it would evict. That keeps
+ * entries that are used over and over from being flushed out by a scan of entries used only once.
+ * </p>
+ * <p>
+ * Admission only compares the new key with the least recently used entry of its own segment, which is
+ * the entry a put evicts first. If the new entry needs more room than that entry frees, the put goes on
+ * to evict from the other segments without consulting the sketch, and a put into an empty segment
+ * is always admitted. Looking at the other segments would mean holding several segment locks at once.
+ * With many small entries per segment, as in a bitmap cache, the first victim is nearly always the
+ * only one.
+ * </p>
+ *
+ * @param <K> The key type.
+ * @param <V> The value type.
+ */
+public class SegmentedLruCache<K, V> {
+
+    /**
+     * Default number of segments.
+     */
+    public static final int DEFAULT_CONCURRENCY = 16;
+
+    /**
+     * A cached value with the size it was put with.
+     */
+    private static final class Node<V> {
+        final V mValue;
+        final int mSize;
+
+        Node(V value, int size) {
+            mValue = value;
+            mSize = size;
+        }
+    }
+
+    /**
+     * A part of the cache guarded by its own monitor.
+     */
+    private static final class Segment<K, V> {
+        /**
+         * Entries of the segment, least recently used first.
+         */
+        final LinkedHashMap<K, Node<V>> mMap = new LinkedHashMap<>(16, 0.75f, true);
+
+        int mHitCount;
+        long mHitSize;
+        int mMissCount;
+        int mPutCount;
+        int mEvictionCount;
+        int mRejectionCount;
+    }
+
+    /**
+     * The segments, a power of two in number.
+     */
+    private final Segment<K, V>[] mSegments;
+
+    /**
+     * Total size of the entries of all segments.
+     */
+    private final AtomicInteger mSize = new AtomicInteger();
+
+    /**
+     * Maximum total size of the entries.
+     */
+    private volatile int mMaxSize;
+
+    /**
+     * Access frequencies for admission, or null to admit every entry.
+     */
+    private volatile FrequencySketch mSketch;
+
+    /**
+     * Constructs a SegmentedLruCache with {@link #DEFAULT_CONCURRENCY} segments.
+     *
+     * @param maxSize For caches that do not override {@link #sizeOf}, this is the maximum number of
+     *                entries. For all other caches, this is the maximum sum of the sizes of the entries.
+     */
+    public SegmentedLruCache(int maxSize) {
+        this(maxSize, DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Constructs a SegmentedLruCache.
+     *
+     * @param maxSize     The maximum number or total size of the entries.
+     * @param concurrency The number of segments, rounded up to a power of two.
+     */
+    @SuppressWarnings("unchecked")
+    public SegmentedLruCache(int maxSize, int concurrency) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        int segmentCount = 1;
+        while (segmentCount < concurrency) {
+            segmentCount <<= 1;
+        }
+        mSegments = (Segment<K, V>[]) new Segment<?, ?>[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            mSegments[i] = new Segment<>();
+        }
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Sets the sketch to count accesses in and to admit new entries by. Entries that are already cached
+     * are not affected.
+     *
+     * @param sketch The sketch, sized for the number of entries the cache is expected to hold, or null to
+     *               admit every entry.
+     */
+    public void setAdmissionSketch(FrequencySketch sketch) {
+        mSketch = sketch;
+    }
+
+    /**
+     * Returns the index of the segment a key belongs to.
+     */
+    private int segmentIndex(Object key) {
+        int h = key.hashCode();
+        // spread the higher bits, the segment count is a power of two.
+        h ^= (h >>> 16);
+        h ^= (h >>> 8);
+        return h & (mSegments.length - 1);
+    }
+
+    /**
+     * Returns the value for the key, moving it to the head of its segment, or null if it is not cached.
+     *
+     * @param key The key.
+     */
+    public final V get(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+        FrequencySketch sketch = mSketch;
+        if (sketch != null) {
+            sketch.increment(key);
+        }
+        Segment<K, V> segment = mSegments[segmentIndex(key)];
+        synchronized (segment) {
+            Node<V> node = segment.mMap.get(key);
+            if (node == null) {
+                segment.mMissCount++;
+                return null;
+            }
+            segment.mHitCount++;
+            segment.mHitSize += node.mSize;
+            return node.mValue;
+        }
+    }
+
+    /**
+     * Returns the size the entry for the key was put with, without counting a hit or a miss.
+     *
+     * @param key The key.
+     * @return the size of the entry, or 0 if it is not cached.
+     */
+    public final int entrySize(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+        Segment<K, V> segment = mSegments[segmentIndex(key)];
+        synchronized (segment) {
+            Node<V> node = segment.mMap.get(key);
+            return node == null ? 0 : node.mSize;
+        }
+    }
+
+    /**
+     * Caches a value for the key, evicting least recently used entries if the cache outgrows its
+     * maximum size. With an admission sketch, a new value may be rejected instead; it is then passed to
+     * {@link #entryRejected(Object, Object)}, and the caller keeps using it uncached.
+     *
+     * @param key   The key.
+     * @param value The value.
+     * @return the previous value for the key, or null.
+     */
+    public final V put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("key == null || value == null");
+        }
+        int index = segmentIndex(key);
+        Segment<K, V> segment = mSegments[index];
+        Node<V> node = new Node<>(value, safeSizeOf(key, value));
+        FrequencySketch sketch = mSketch;
+        Node<V> previous = null;
+        boolean admitted;
+        synchronized (segment) {
+            segment.mPutCount++;
+            admitted = sketch == null || admit(sketch, segment, key, node.mSize);
+            if (admitted) {
+                previous = segment.mMap.put(key, node);
+            } else {
+                segment.mRejectionCount++;
+            }
+        }
+        if (!admitted) {
+            entryRejected(key, value);
+            return null;
+        }
+        mSize.addAndGet(previous != null ? node.mSize - previous.mSize : node.mSize);
+        if (previous != null) {
+            entryRemoved(false, key, previous.mValue, value);
+        }
+        trimToSize(mMaxSize, index);
+        return previous != null ? previous.mValue : null;
+    }
+
+    /**
+     * Decides whether a new entry is cached, by comparing its access frequency with that of the entry
+     * its segment would evict first, which is also the first entry {@link #trimToSize(int, int)} evicts
+     * for the put. Further victims in other segments are not compared. Must be called while holding
+     * the segment.
+     *
+     * @return true to cache the entry.
+     */
+    private boolean admit(FrequencySketch sketch, Segment<K, V> segment, K key, int size) {
+        if (mSize.get() + size <= mMaxSize || segment.mMap.isEmpty() || segment.mMap.containsKey(key)) {
+            // nothing would be evicted for it, or it replaces an entry that was admitted before.
+            return true;
+        }
+        K victim = segment.mMap.keySet().iterator().next();
+        return sketch.frequency(key) >= sketch.frequency(victim);
+    }
+
+    /**
+     * Removes the entry for the key.
+     *
+     * @param key The key.
+     * @return the removed value, or null if it was not cached.
+     */
+    public final V remove(K key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+        Segment<K, V> segment = mSegments[segmentIndex(key)];
+        Node<V> previous;
+        synchronized (segment) {
+            previous = segment.mMap.remove(key);
+        }
+        if (previous == null) {
+            return null;
+        }
+        mSize.addAndGet(-previous.mSize);
+        entryRemoved(false, key, previous.mValue, null);
+        return previous.mValue;
+    }
+
+    /**
+     * Changes the maximum size of the cache, evicting entries if it shrinks.
+     *
+     * @param maxSize The new maximum size.
+     */
+    public void resize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        mMaxSize = maxSize;
+        trimToSize(maxSize, -1);
+    }
+
+    /**
+     * Evicts entries until the total size is at most the specified size.
+     *
+     * @param maxSize The size to trim to, or -1 to evict all entries.
+     */
+    public void trimToSize(int maxSize) {
+        trimToSize(maxSize, -1);
+    }
+
+    /**
+     * Evicts least recently used entries, starting with the segment of the last put, until the total
+     * size is at most the specified size. The most recent entry of that segment goes last, so the entry
+     * that was just put is only evicted if it doesn't fit on its own.
+     *
+     * @param maxSize The size to trim to.
+     * @param first   The index of the segment of the last put, or -1.
+     */
+    private void trimToSize(int maxSize, int first) {
+        int count = mSegments.length;
+        int start = first < 0 ? 0 : first;
+        for (int i = 0; i <= count && mSize.get() > maxSize; i++) {
+            int index = (start + i) % count;
+            // keep the newest entry of the first segment until all other segments are done.
+            int keep = first >= 0 && i == 0 ? 1 : 0;
+            evictFrom(mSegments[index], maxSize, keep);
+        }
+    }
+
+    /**
+     * Evicts least recently used entries of a segment while the total size exceeds the maximum.
+     *
+     * @param segment The segment.
+     * @param maxSize The size to trim to.
+     * @param keep    The number of most recent entries not to evict.
+     */
+    private void evictFrom(Segment<K, V> segment, int maxSize, int keep) {
+        while (mSize.get() > maxSize) {
+            K key;
+            Node<V> node;
+            synchronized (segment) {
+                if (segment.mMap.size() <= keep) {
+                    return;
+                }
+                Iterator<Map.Entry<K, Node<V>>> iterator = segment.mMap.entrySet().iterator();
+                Map.Entry<K, Node<V>> eldest = iterator.next();
+                key = eldest.getKey();
+                node = eldest.getValue();
+                iterator.remove();
+                segment.mEvictionCount++;
+            }
+            mSize.addAndGet(-node.mSize);
+            entryRemoved(true, key, node.mValue, null);
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public final void evictAll() {
+        trimToSize(-1, -1);
+    }
+
+    /**
+     * Called for entries that have been evicted or removed, without holding any lock.
+     *
+     * @param evicted  True if the entry was evicted to make space, false if it was removed or replaced.
+     * @param key      The key.
+     * @param oldValue The removed value.
+     * @param newValue The new value for the key, if it was replaced, or null.
+     */
+    protected void entryRemoved(boolean evicted, K key, V oldValue, V newValue) {
+    }
+
+    /**
+     * Called for a new value the admission sketch rejected, without holding any lock. Unlike an evicted
+     * value, the value was never cached and is typically still in use by whoever put it, so it must not
+     * be recycled here.
+     *
+     * @param key   The key.
+     * @param value The rejected value.
+     */
+    protected void entryRejected(K key, V value) {
+    }
+
+    /**
+     * Returns the size of an entry in user-defined units. The default is 1, so that size is the number
+     * of entries and max size is the maximum number of entries. An entry's size must not change while
+     * it is in the cache.
+     *
+     * @param key   The key.
+     * @param value The value.
+     */
+    protected int sizeOf(K key, V value) {
+        return 1;
+    }
+
+    private int safeSizeOf(K key, V value) {
+        int result = sizeOf(key, value);
+        if (result < 0) {
+            throw new IllegalStateException("Negative size: " + key + "=" + value);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the total size of the entries.
+     */
+    public final int size() {
+        return mSize.get();
+    }
+
+    /**
+     * Returns the maximum total size of the entries.
+     */
+    public final int maxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Returns the number of times {@link #get} returned a value.
+     */
+    public final int hitCount() {
+        int count = 0;
+        for (Segment<K, V> segment : mSegments) {
+            synchronized (segment) {
+                count += segment.mHitCount;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the total size of the values {@link #get} returned.
+     */
+    public final long hitSize() {
+        long size = 0;
+        for (Segment<K, V> segment : mSegments) {
+            synchronized (segment) {
+                size += segment.mHitSize;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of times {@link #get} returned null.
+     */
+    public final int missCount() {
+        int count = 0;
+        for (Segment<K, V> segment : mSegments) {
+            synchronized (segment) {
+                count += segment.mMissCount;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of times {@link #put} was called.
+     */
+    public final int putCount() {
+        int count = 0;
+        for (Segment<K, V> segment : mSegments) {
+            synchronized (segment) {
+                count += segment.mPutCount;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of entries that were evicted.
+     */
+    public final int evictionCount() {
+        int count = 0;
+        for (Segment<K, V> segment : mSegments) {
+            synchronized (segment) {
+                count += segment.mEvictionCount;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of new entries the admission sketch rejected.
+     */
+    public final int rejectionCount() {
+        int count = 0;
+        for (Segment<K, V> segment : mSegments) {
+            synchronized (segment) {
+                count += segment.mRejectionCount;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public final String toString() {
+        int hits = hitCount();
+        int accesses = hits + missCount();
+        int hitPercent = accesses != 0 ? (100 * hits / accesses) : 0;
+        return String.format("SegmentedLruCache[maxSize=%d,size=%d,segments=%d,hits=%d,misses=%d,hitRate=%d%%]",
+                mMaxSize, size(), mSegments.length, hits, accesses - hits, hitPercent);
+    }
+}
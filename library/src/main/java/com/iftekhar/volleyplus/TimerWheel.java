@@ -0,0 +1,275 @@
+package com.iftekhar.volleyplus;
+
+import java.util.Collection;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * A hierarchical timer wheel for deadlines in milliseconds. Scheduling, rescheduling and canceling a
+ * deadline are O(1): each node is linked into the bucket of the finest level whose span still covers
+ * its deadline. Advancing the wheel only visits the buckets whose ticks have passed. Nodes in a passed
+ * bucket that are not due yet cascade down into a finer level.
+ * <p>
+ * Level 0 has buckets of about one second and levels grow by a factor of 64, so the wheel spans about
+ * 200 days; later deadlines wait in the farthest bucket and are re-placed whenever it passes. Expiry
+ * is accurate to one bucket of level 0, so deadlines may be reported up to a second late.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ *
+ * @param <K> The type of key a deadline belongs to.
+ */
+public final class TimerWheel<K> {
+
+    /**
+     * Number of buckets per level. A power of two.
+     */
+    private static final int BUCKETS = 64;
+
+    /**
+     * Shift from milliseconds to the ticks of each level. Each level's tick spans all buckets of the
+     * level below.
+     */
+    private static final int[] SHIFTS = {10, 16, 22, 28};
+
+    /**
+     * A deadline linked into a bucket of the wheel.
+     *
+     * @param <K> The type of key the deadline belongs to.
+     */
+    public static final class Node<K> {
+        /**
+         * The key the deadline belongs to.
+         */
+        private final K mKey;
+
+        /**
+         * The deadline in milliseconds. Volatile, so that it can be compared without holding the lock
+         * that guards the wheel.
+         */
+        private volatile long mDeadline;
+
+        /**
+         * Neighbours in the bucket; null while the node is not scheduled.
+         */
+        private Node<K> mPrev;
+        private Node<K> mNext;
+
+        Node(K key) {
+            mKey = key;
+        }
+
+        /**
+         * Returns the key the deadline belongs to.
+         */
+        public K getKey() {
+            return mKey;
+        }
+
+        /**
+         * Returns the deadline in milliseconds.
+         */
+        public long getDeadline() {
+            return mDeadline;
+        }
+
+        /**
+         * Returns true if the node is waiting in the wheel.
+         */
+        public boolean isScheduled() {
+            return mNext != null;
+        }
+    }
+
+    /**
+     * Sentinel nodes of the circular bucket lists, by level and bucket.
+     */
+    private final Node<K>[][] mBuckets;
+
+    /**
+     * Time the wheel was last advanced to, in milliseconds.
+     */
+    private long mTime;
+
+    /**
+     * Number of scheduled nodes.
+     */
+    private int mSize;
+
+    /**
+     * Creates an empty wheel.
+     *
+     * @param time The current time in milliseconds.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimerWheel(long time) {
+        mTime = time;
+        mBuckets = new Node[SHIFTS.length][BUCKETS];
+        for (Node<K>[] level : mBuckets) {
+            for (int i = 0; i < BUCKETS; i++) {
+                Node<K> sentinel = new Node<>(null);
+                sentinel.mPrev = sentinel;
+                sentinel.mNext = sentinel;
+                level[i] = sentinel;
+            }
+        }
+    }
+
+    /**
+     * Schedules a new deadline for the specified key.
+     *
+     * @param key      The key the deadline belongs to.
+     * @param deadline The deadline in milliseconds.
+     * @return the node to reschedule or cancel the deadline with.
+     */
+    public Node<K> schedule(K key, long deadline) {
+        Node<K> node = new Node<>(key);
+        node.mDeadline = deadline;
+        link(node);
+        return node;
+    }
+
+    /**
+     * Moves a deadline, scheduling it again if it had expired or was canceled.
+     *
+     * @param node     The node of the deadline.
+     * @param deadline The new deadline in milliseconds.
+     */
+    public void reschedule(Node<K> node, long deadline) {
+        if (node.isScheduled()) {
+            unlink(node);
+        }
+        node.mDeadline = deadline;
+        link(node);
+    }
+
+    /**
+     * Cancels a deadline. Does nothing if it already expired or was canceled.
+     *
+     * @param node The node of the deadline.
+     */
+    public void cancel(Node<K> node) {
+        if (node.isScheduled()) {
+            unlink(node);
+        }
+    }
+
+    /**
+     * Returns the number of scheduled deadlines.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Returns the earliest time at which {@link #advance(long, Collection)} may expire a deadline or move
+     * it down a level. Advancing the wheel to an earlier time finds nothing to do. It is found by looking
+     * for the next non-empty bucket of each level, so it costs at most one pass over the buckets.
+     *
+     * @return the time in milliseconds, or {@link Long#MAX_VALUE} if no deadline is scheduled.
+     */
+    public long nextAdvanceTime() {
+        long next = Long.MAX_VALUE;
+        if (mSize == 0) {
+            return next;
+        }
+        for (int level = 0; level < SHIFTS.length; level++) {
+            long ticks = mTime >>> SHIFTS[level];
+            for (int i = 0; i < BUCKETS; i++) {
+                Node<K> sentinel = mBuckets[level][(int) ((ticks + i) & (BUCKETS - 1))];
+                if (sentinel.mNext != sentinel) {
+                    // a bucket is visited once its tick is reached, but the current one only on the next
+                    // tick; all deadlines of a level 0 bucket have passed by the end of its tick.
+                    long tick = level == 0 ? ticks + i + 1 : Math.max(ticks + i, ticks + 1);
+                    next = Math.min(next, tick << SHIFTS[level]);
+                    break;
+                }
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Advances the wheel to the specified time, collecting the nodes whose deadlines passed. Collected
+     * nodes are no longer scheduled.
+     *
+     * @param time    The current time in milliseconds.
+     * @param expired The collection to add expired nodes to.
+     */
+    public void advance(long time, Collection<Node<K>> expired) {
+        long previous = mTime;
+        if (time <= previous) {
+            return;
+        }
+        mTime = time;
+        for (int level = 0; level < SHIFTS.length; level++) {
+            long previousTicks = previous >>> SHIFTS[level];
+            long ticks = time >>> SHIFTS[level];
+            if (ticks == previousTicks) {
+                // coarser levels can't have ticked either.
+                break;
+            }
+            long passed = Math.min(ticks - previousTicks, BUCKETS - 1);
+            for (long tick = previousTicks; tick <= previousTicks + passed; tick++) {
+                expireBucket(mBuckets[level][(int) (tick & (BUCKETS - 1))], expired);
+            }
+        }
+    }
+
+    /**
+     * Collects the due nodes of a passed bucket and re-places the others.
+     *
+     * @param sentinel The sentinel of the bucket.
+     * @param expired  The collection to add expired nodes to.
+     */
+    private void expireBucket(Node<K> sentinel, Collection<Node<K>> expired) {
+        // detach the whole list first, as nodes may be re-placed into the same bucket.
+        Node<K> node = sentinel.mNext;
+        sentinel.mPrev = sentinel;
+        sentinel.mNext = sentinel;
+        while (node != sentinel) {
+            Node<K> next = node.mNext;
+            node.mPrev = null;
+            node.mNext = null;
+            mSize--;
+            if (node.mDeadline <= mTime) {
+                expired.add(node);
+            } else {
+                link(node);
+            }
+            node = next;
+        }
+    }
+
+    /**
+     * Links a node into the bucket of the finest level that still covers its deadline.
+     */
+    private void link(Node<K> node) {
+        long delay = Math.max(0, node.mDeadline - mTime);
+        int level = 0;
+        while (level < SHIFTS.length - 1 && delay >= 1L << SHIFTS[level + 1]) {
+            level++;
+        }
+        long deadline = Math.min(node.mDeadline, mTime + ((long) (BUCKETS - 1) << SHIFTS[level]));
+        Node<K> sentinel = mBuckets[level][(int) ((deadline >>> SHIFTS[level]) & (BUCKETS - 1))];
+        node.mNext = sentinel;
+        node.mPrev = sentinel.mPrev;
+        sentinel.mPrev.mNext = node;
+        sentinel.mPrev = node;
+        mSize++;
+    }
+
+    /**
+     * Unlinks a scheduled node from its bucket.
+     */
+    private void unlink(Node<K> node) {
+        node.mPrev.mNext = node.mNext;
+        node.mNext.mPrev = node.mPrev;
+        node.mPrev = null;
+        node.mNext = null;
+        mSize--;
+    }
+}
@@ -1,20 +1,40 @@
 package com.iftekhar.volleyplus;
 
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.app.Application;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.Bundle;
 import android.support.v4.util.ArrayMap;
-import android.support.v4.util.LruCache;
 
+import com.android.volley.Cache;
+import com.android.volley.Network;
 import com.android.volley.Request;
 import com.android.volley.RequestQueue;
 import com.android.volley.toolbox.BasicNetwork;
-import com.android.volley.toolbox.HurlStack;
+import com.android.volley.toolbox.HttpStack;
+import com.iftekhar.volleyplus.ext.CoalescingNetwork;
 import com.iftekhar.volleyplus.ext.InMemoryCache;
+import com.iftekhar.volleyplus.ext.JournaledDiskCache;
+import com.iftekhar.volleyplus.ext.LendingRequestQueue;
+import com.iftekhar.volleyplus.ext.PooledHurlStack;
+import com.iftekhar.volleyplus.ext.SpillingHttpStack;
+import com.iftekhar.volleyplus.ext.TwoTierCache;
+import com.iftekhar.volleyplus.toolbox.BitmapDecodeStage;
 import com.iftekhar.volleyplus.toolbox.BitmapLoader;
+import com.iftekhar.volleyplus.toolbox.BitmapPool;
+import com.iftekhar.volleyplus.toolbox.CompressedImageTier;
+import com.iftekhar.volleyplus.toolbox.JsonMemoryCache;
 import com.iftekhar.volleyplus.toolbox.JsonObjectLoader;
+import com.iftekhar.volleyplus.toolbox.MemoryBudget;
 
 import org.json.JSONObject;
 
+import java.io.File;
 import java.util.Map;
 
 /**
@@ -30,6 +50,20 @@ import java.util.Map;
  * {@link JsonObjectLoader} and {@link BitmapLoader}. It is possible to create your own {@link Loader}
  * implementations for a data class and replace/add them to the pool.
  * </p>
+ * <p>
+ * The memory caches of the default loaders, the pool of reusable bitmaps, the tier of compressed images
+ * and the memory tier of the http cache share a single {@link MemoryBudget}, which is trimmed when the
+ * system reports memory pressure. Caches of other loaders can join it through {@link #getMemoryBudget()}.
+ * </p>
+ * <p>
+ * Images are loaded through a RequestQueue of their own, so that API calls don't wait behind them for
+ * a network dispatcher. The two queues share the http cache and lend each other idle dispatchers.
+ * </p>
+ * <p>
+ * They share a {@link CoalescingNetwork} as well, so identical GET requests in flight at the same time
+ * go to the network once, whether they come from a loader, from two loaders of the same data class or
+ * from {@link #addToRequestQueue(Request)}.
+ * </p>
  */
 public class VolleyPlus {
 
@@ -43,6 +77,57 @@ public class VolleyPlus {
      */
     private static final int DEFAULT_MAX_MEMORY_BYTES = MAX_MEMORY / 8;
 
+    /**
+     * Default memory budget in bytes shared by the default loaders, the bitmap pool, the compressed tier
+     * and the http cache. It is less than their separate sizes added up, since it goes to whichever cache
+     * serves the most.
+     */
+    private static final int DEFAULT_MEMORY_BUDGET_BYTES = MAX_MEMORY / 3;
+
+    /**
+     * Default maximum size of the pool of reusable bitmaps in bytes, until the memory budget resizes it.
+     */
+    private static final int DEFAULT_BITMAP_POOL_BYTES = MAX_MEMORY / 32;
+
+    /**
+     * Default budget of the tier holding compressed images evicted from the bitmap cache, in bytes, until
+     * the memory budget resizes it. It is only allocated as images are cached.
+     */
+    private static final int DEFAULT_COMPRESSED_TIER_BYTES = MAX_MEMORY / 16;
+
+    /**
+     * Default number of bitmaps the admission sketch of the bitmap cache is sized for, assuming 64KB
+     * per bitmap on average.
+     */
+    private static final int DEFAULT_BITMAP_SKETCH_ENTRIES =
+            Math.max(256, DEFAULT_MAX_MEMORY_BYTES / (64 * 1024));
+
+    /**
+     * Default time to live of JSON Objects in memory, in milliseconds. Expired objects are loaded again
+     * from the http cache, or from the network if stale there too.
+     */
+    private static final long DEFAULT_JSON_TIME_TO_LIVE_MS = 5 * 60 * 1000;
+
+    /**
+     * Default number of network dispatchers of the RequestQueue for API calls and standard requests.
+     */
+    private static final int DEFAULT_API_NETWORK_THREADS = 2;
+
+    /**
+     * Default number of network dispatchers of the RequestQueue for images.
+     */
+    private static final int DEFAULT_IMAGE_NETWORK_THREADS = 4;
+
+    /**
+     * Name of the directory inside the application cache dir used for persistent http caching.
+     */
+    private static final String DEFAULT_CACHE_DIR = "volleyplus";
+
+    /**
+     * Name of the directory inside the application cache dir large response bodies are written to.
+     */
+    private static final String DEFAULT_BODY_DIR = "volleyplus-bodies";
+
     /**
      * static instance of this class to be used throughout an application's lifecycle.
      */
@@ -58,21 +143,121 @@ public class VolleyPlus {
      */
     private RequestQueue mRequestQueue;
 
+    /**
+     * the RequestQueue of the bitmap loader, so that images don't hold up API calls.
+     */
+    private RequestQueue mImageRequestQueue;
+
+    /**
+     * the http cache shared by the default RequestQueues.
+     */
+    private Cache mHttpCache;
+
+    /**
+     * the network shared by the default RequestQueues.
+     */
+    private Network mNetwork;
+
+    /**
+     * the HttpStack the default RequestQueues perform requests with.
+     */
+    private final HttpStack mHttpStack;
+
     /**
      * a map of loaders to their corresponding data classes.
      */
     private Map<Class<?>, Object> mLoaderPool;
 
+    /**
+     * the memory budget shared by the caches of the default loaders and the default http cache.
+     */
+    private final MemoryBudget mMemoryBudget = new MemoryBudget(DEFAULT_MEMORY_BUDGET_BYTES);
+
     /**
      * Creates a single global VolleyPlus instance.
      *
-     * @param context The application context.
+     * @param context   The application context.
+     * @param httpStack The HttpStack for the default RequestQueues.
      */
-    private VolleyPlus(Context context) {
+    private VolleyPlus(Context context, HttpStack httpStack) {
         mContext = context;
+        mHttpStack = httpStack;
         mLoaderPool = new ArrayMap<>(2);
-        addToLoaderPool(Bitmap.class, getBitmapLoader());
-        addToLoaderPool(JSONObject.class, getJsonObjectLoader());
+        BitmapLoader bitmapLoader = getBitmapLoader();
+        JsonObjectLoader jsonObjectLoader = getJsonObjectLoader();
+        addToLoaderPool(Bitmap.class, bitmapLoader);
+        addToLoaderPool(JSONObject.class, jsonObjectLoader);
+        mMemoryBudget.register(bitmapLoader);
+        mMemoryBudget.register(jsonObjectLoader);
+        mMemoryBudget.register(bitmapLoader.getBitmapPool());
+        mMemoryBudget.register(bitmapLoader.getCompressedTier());
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            registerTrimCallbacks();
+            registerLifecycleCallbacks();
+        }
+    }
+
+    /**
+     * Forwards memory pressure reported to the application to the memory budget.
+     */
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private void registerTrimCallbacks() {
+        mContext.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                mMemoryBudget.onTrimMemory(level);
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                mMemoryBudget.onLowMemory();
+            }
+        });
+    }
+
+    /**
+     * Resumes the rebalancing of the memory budget, which stops while the caches are idle, whenever an
+     * activity of the application resumes.
+     */
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private void registerLifecycleCallbacks() {
+        if (!(mContext instanceof Application)) {
+            return;
+        }
+        ((Application) mContext).registerActivityLifecycleCallbacks(new Application.ActivityLifecycleCallbacks() {
+            @Override
+            public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+            }
+
+            @Override
+            public void onActivityStarted(Activity activity) {
+            }
+
+            @Override
+            public void onActivityResumed(Activity activity) {
+                mMemoryBudget.resume();
+            }
+
+            @Override
+            public void onActivityPaused(Activity activity) {
+            }
+
+            @Override
+            public void onActivityStopped(Activity activity) {
+            }
+
+            @Override
+            public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+            }
+
+            @Override
+            public void onActivityDestroyed(Activity activity) {
+            }
+        });
     }
 
     /**
@@ -84,7 +269,25 @@ public class VolleyPlus {
      */
     public static synchronized VolleyPlus getInstance(Context context) {
         if (instance == null) {
-            instance = new VolleyPlus(context.getApplicationContext());
+            instance = new VolleyPlus(context.getApplicationContext(), new PooledHurlStack());
+        }
+        return instance;
+    }
+
+    /**
+     * Gets the global single instance of VolleyPlus, creating it with default RequestQueues that
+     * perform requests with the specified HttpStack if it doesn't exist yet. Use this to tune the
+     * connection pool through a {@link PooledHurlStack}, or to plug in a stack built on another HTTP
+     * client, e.g. one that multiplexes requests over HTTP/2. It must be called before any other
+     * {@code getInstance} call to take effect.
+     *
+     * @param context   The application context.
+     * @param httpStack The HttpStack for the default RequestQueues.
+     * @return the VolleyPlus instance.
+     */
+    public static synchronized VolleyPlus getInstance(Context context, HttpStack httpStack) {
+        if (instance == null) {
+            instance = new VolleyPlus(context.getApplicationContext(), httpStack);
         }
         return instance;
     }
@@ -92,30 +295,53 @@ public class VolleyPlus {
     /**
      * Creates the default implementation of {@link Loader} for Bitmaps.
      *
-     * @return a new instance of BitmapLoader that uses a {@link LruCache} for caching bitmaps
-     * and has a memory capacity of 1/8th of the max heap size.
+     * @return a new instance of BitmapLoader on the {@link #getImageRequestQueue() image RequestQueue} that
+     * uses a {@link SegmentedLruCache} for caching bitmaps, sized by the {@link MemoryBudget} once
+     * registered and admitting bitmaps by a {@link FrequencySketch}.
+     * Bitmaps leaving the cache are reused for decoding through a {@link BitmapPool}, and decoding runs
+     * on a {@link BitmapDecodeStage}.
+     * Their compressed bytes are kept in a {@link CompressedImageTier} to decode them again from.
      */
     private BitmapLoader getBitmapLoader() {
-        return new BitmapLoader(getRequestQueue(), new MemoryCache<Bitmap>() {
-            private final LruCache<String, Bitmap> cache = new LruCache<String, Bitmap>(DEFAULT_MAX_MEMORY_BYTES) {
+        final BitmapPool bitmapPool = new BitmapPool(DEFAULT_BITMAP_POOL_BYTES);
+        BitmapLoader bitmapLoader = new BitmapLoader(getImageRequestQueue(), new MemoryCache<Bitmap>() {
+            private final SegmentedLruCache<CacheKey, Bitmap> cache =
+                    new SegmentedLruCache<CacheKey, Bitmap>(DEFAULT_MAX_MEMORY_BYTES) {
                 @Override
-                protected int sizeOf(String key, Bitmap value) {
+                protected int sizeOf(CacheKey key, Bitmap value) {
                     return value.getRowBytes() * value.getHeight();
                 }
+
+                @Override
+                protected void entryRemoved(boolean evicted, CacheKey key, Bitmap oldValue, Bitmap newValue) {
+                    if (oldValue != newValue) {
+                        bitmapPool.onRemovedFromCache(oldValue);
+                    }
+                }
+
+                @Override
+                protected void entryRejected(CacheKey key, Bitmap value) {
+                    bitmapPool.onRejectedByCache(value);
+                }
             };
 
+            {
+                // a fling through a long list shouldn't flush the images shown on every screen.
+                cache.setAdmissionSketch(new FrequencySketch(DEFAULT_BITMAP_SKETCH_ENTRIES));
+            }
+
             @Override
-            public Bitmap get(String cacheKey) {
+            public Bitmap get(CacheKey cacheKey) {
                 return cache.get(cacheKey);
             }
 
             @Override
-            public void put(String cacheKey, Bitmap bitmap) {
+            public void put(CacheKey cacheKey, Bitmap bitmap) {
                 cache.put(cacheKey, bitmap);
             }
 
             @Override
-            public void remove(String cacheKey) {
+            public void remove(CacheKey cacheKey) {
                 cache.remove(cacheKey);
             }
 
@@ -123,44 +349,22 @@ public class VolleyPlus {
             public void resize(int size) {
                 cache.resize(size);
             }
-        });
+        }, bitmapPool);
+        bitmapLoader.setDecodeStage(new BitmapDecodeStage());
+        bitmapLoader.setCompressedTier(new CompressedImageTier(DEFAULT_COMPRESSED_TIER_BYTES));
+        return bitmapLoader;
     }
 
     /**
      * Creates the default implementation of {@link Loader} for JSON Objects.
      *
-     * @return a new instance of JsonObjectLoader that uses a {@link LruCache} for caching JSON Objects
-     * and has a memory capacity of 1/8th of the max heap size.
+     * @return a new instance of JsonObjectLoader that uses a {@link JsonMemoryCache} for caching the
+     * JSON Objects parsed on the network thread, sized by the {@link MemoryBudget} once registered. Cached objects expire
+     * after five minutes through an {@link ExpiringMemoryCache}, unless loaded with another time to live.
      */
     private JsonObjectLoader getJsonObjectLoader() {
-        return new JsonObjectLoader(getRequestQueue(), new MemoryCache<JSONObject>() {
-            private final LruCache<String, JSONObject> cache = new LruCache<String, JSONObject>(DEFAULT_MAX_MEMORY_BYTES) {
-                @Override
-                protected int sizeOf(String key, JSONObject value) {
-                    return value.toString().getBytes().length;
-                }
-            };
-
-            @Override
-            public JSONObject get(String cacheKey) {
-                return cache.get(cacheKey);
-            }
-
-            @Override
-            public void put(String cacheKey, JSONObject jsonObject) {
-                cache.put(cacheKey, jsonObject);
-            }
-
-            @Override
-            public void remove(String cacheKey) {
-                cache.remove(cacheKey);
-            }
-
-            @Override
-            public void resize(int size) {
-                cache.resize(size);
-            }
-        });
+        return new JsonObjectLoader(getRequestQueue(), new ExpiringMemoryCache<>(
+                new JsonMemoryCache(DEFAULT_MAX_MEMORY_BYTES), DEFAULT_JSON_TIME_TO_LIVE_MS));
     }
 
     /**
@@ -185,6 +389,29 @@ public class VolleyPlus {
         return (Loader<T>) mLoaderPool.get(clazz);
     }
 
+    /**
+     * Takes a snapshot of the stats of every {@link Loader} in the pool.
+     *
+     * @return the stats of each loader, by the class of its data.
+     */
+    public Map<Class<?>, LoaderStats.Snapshot> getStats() {
+        Map<Class<?>, LoaderStats.Snapshot> stats = new ArrayMap<>(mLoaderPool.size());
+        for (Map.Entry<Class<?>, Object> entry : mLoaderPool.entrySet()) {
+            stats.put(entry.getKey(), ((Loader<?>) entry.getValue()).getStats());
+        }
+        return stats;
+    }
+
+    /**
+     * Gets the memory budget shared by the caches of the default loaders and the default http cache.
+     * Register the memory caches of other loaders with it, if they are sized in bytes.
+     *
+     * @return the MemoryBudget instance.
+     */
+    public MemoryBudget getMemoryBudget() {
+        return mMemoryBudget;
+    }
+
     /**
      * Adds standard volley request to the RequestQueue.
      *
@@ -206,18 +433,95 @@ public class VolleyPlus {
     }
 
     /**
-     * Gets the current implementation of the volley RequestQueue. If not explicitly set, this
-     * will return a default implementation of RequestQueue that uses an {@link InMemoryCache} for
-     * http caching and a {@link BasicNetwork} with {@link HurlStack}.
+     * Gets the current implementation of the volley RequestQueue, used for API calls, the JSON loader
+     * and standard volley requests. If not explicitly set, this will return a default implementation
+     * of RequestQueue that uses a {@link TwoTierCache} for http caching, backing an
+     * {@link InMemoryCache} with a persistent {@link JournaledDiskCache}, and a {@link BasicNetwork} with
+     * the HttpStack VolleyPlus was created with, a {@link PooledHurlStack} by default. The memory tier is
+     * sized by the {@link MemoryBudget}. It is a {@link LendingRequestQueue} with two network
+     * dispatchers, sharing idle dispatchers with the {@link #getImageRequestQueue() image RequestQueue}.
      *
      * @return The RequestQueue instance.
      */
     public RequestQueue getRequestQueue() {
         if (mRequestQueue == null) {
             //mRequestQueue = Volley.newRequestQueue(mContext);
-            mRequestQueue = new RequestQueue(new InMemoryCache(), new BasicNetwork(new HurlStack()));
+            mRequestQueue = new LendingRequestQueue(getHttpCache(), getNetwork(), DEFAULT_API_NETWORK_THREADS);
             mRequestQueue.start();
+            shareDispatchers(mRequestQueue, mImageRequestQueue);
         }
         return mRequestQueue;
     }
+
+    /**
+     * Gets the RequestQueue of the bitmap loader. It shares the http cache and network of the default
+     * RequestQueue but has four network dispatchers of its own, so a grid loading images doesn't keep
+     * API calls waiting. Each of the two queues borrows the idle dispatchers of the other while its own
+     * are busy, but keeps one for its own requests.
+     *
+     * @return The RequestQueue instance.
+     */
+    public RequestQueue getImageRequestQueue() {
+        if (mImageRequestQueue == null) {
+            mImageRequestQueue = new LendingRequestQueue(getHttpCache(), getNetwork(),
+                    DEFAULT_IMAGE_NETWORK_THREADS);
+            mImageRequestQueue.start();
+            shareDispatchers(mRequestQueue, mImageRequestQueue);
+        }
+        return mImageRequestQueue;
+    }
+
+    /**
+     * Creates and starts a RequestQueue for a custom {@link Loader} whose traffic should not compete
+     * with other loaders for dispatchers. It shares the http cache and network of the default
+     * RequestQueue and borrows idle dispatchers from it while its own are busy.
+     *
+     * @param threadPoolSize The number of network dispatchers of the queue.
+     * @return The started RequestQueue.
+     */
+    public RequestQueue newRequestQueue(int threadPoolSize) {
+        LendingRequestQueue requestQueue = new LendingRequestQueue(getHttpCache(), getNetwork(), threadPoolSize);
+        requestQueue.start();
+        RequestQueue defaultQueue = getRequestQueue();
+        if (defaultQueue instanceof LendingRequestQueue) {
+            requestQueue.setLender((LendingRequestQueue) defaultQueue);
+        }
+        return requestQueue;
+    }
+
+    /**
+     * Lets two queues borrow idle dispatchers from each other, if both are lending queues.
+     */
+    private static void shareDispatchers(RequestQueue first, RequestQueue second) {
+        if (first instanceof LendingRequestQueue && second instanceof LendingRequestQueue) {
+            ((LendingRequestQueue) first).setLender((LendingRequestQueue) second);
+            ((LendingRequestQueue) second).setLender((LendingRequestQueue) first);
+        }
+    }
+
+    /**
+     * Gets the http cache shared by the default RequestQueues, creating it on first use.
+     */
+    private Cache getHttpCache() {
+        if (mHttpCache == null) {
+            File cacheDir = new File(mContext.getCacheDir(), DEFAULT_CACHE_DIR);
+            InMemoryCache memoryCache = new InMemoryCache();
+            mMemoryBudget.register(memoryCache);
+            mHttpCache = new TwoTierCache(memoryCache, new JournaledDiskCache(cacheDir));
+        }
+        return mHttpCache;
+    }
+
+    /**
+     * Gets the network shared by the default RequestQueues, creating it on first use. Identical requests
+     * in flight share a response, and large bodies of requests that can parse them from a file are
+     * written to one instead of the heap.
+     */
+    private Network getNetwork() {
+        if (mNetwork == null) {
+            File bodyDir = new File(mContext.getCacheDir(), DEFAULT_BODY_DIR);
+            mNetwork = new CoalescingNetwork(new BasicNetwork(new SpillingHttpStack(mHttpStack, bodyDir)));
+        }
+        return mNetwork;
+    }
 }
@@ -0,0 +1,178 @@
+package com.iftekhar.volleyplus.ext;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Cache;
+import com.android.volley.Network;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.VolleyError;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Network} that performs identical requests in flight at the same time only once, and hands
+ * the one network response, or error, to all of them. Each request still parses and delivers the
+ * response itself, so a raw volley request and a {@link com.iftekhar.volleyplus.Loader} request for
+ * the same URL, or the requests of two loaders of the same data class, share a single round trip even
+ * though they parse it into different types.
+ * <p>
+ * Requests are identical if they have the same method, URL and headers, and would revalidate the same
+ * cached response if any. Only GET and HEAD requests are coalesced, since sending any other request
+ * twice may be intended. Volley's RequestQueue coalesces cacheable requests on its own, but only within
+ * a queue; this network can be shared by several queues.
+ * </p>
+ * <p>
+ * A request that joins one in flight waits for it on its network dispatcher, which it would otherwise
+ * have spent on the same round trip. Responses whose body was written to a file by a
+ * {@link SpillingHttpStack} belong to the request that received them, so requests waiting for such a
+ * response perform their own instead.
+ * </p>
+ */
+public class CoalescingNetwork implements Network {
+
+    /**
+     * The network performing the requests.
+     */
+    private final Network mNetwork;
+
+    /**
+     * Requests on the network, by identity.
+     */
+    private final ConcurrentHashMap<Identity, Call> mInFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Number of requests that were answered with the response of another request.
+     */
+    private final AtomicLong mCoalescedCount = new AtomicLong();
+
+    /**
+     * Constructs a CoalescingNetwork.
+     *
+     * @param network The network performing the requests.
+     */
+    public CoalescingNetwork(Network network) {
+        mNetwork = network;
+    }
+
+    @Override
+    public NetworkResponse performRequest(Request<?> request) throws VolleyError {
+        int method = request.getMethod();
+        if (method != Request.Method.GET && method != Request.Method.HEAD) {
+            return mNetwork.performRequest(request);
+        }
+        Identity identity = new Identity(request);
+        Call call = new Call();
+        Call inFlight = mInFlight.putIfAbsent(identity, call);
+        if (inFlight != null) {
+            NetworkResponse response = inFlight.await();
+            VolleyError error = inFlight.mError;
+            if (error == null && (response == null || inFlight.mSpilled)) {
+                return mNetwork.performRequest(request);
+            }
+            mCoalescedCount.incrementAndGet();
+            request.addMarker("network-coalesced");
+            if (error != null) {
+                throw error;
+            }
+            return response;
+        }
+        try {
+            call.mResponse = mNetwork.performRequest(request);
+            // checked before the request can parse the response and delete its file.
+            call.mSpilled = SpillingHttpStack.getBodyFile(request) != null;
+            return call.mResponse;
+        } catch (VolleyError e) {
+            call.mError = e;
+            throw e;
+        } catch (RuntimeException e) {
+            call.mError = new VolleyError(e);
+            throw e;
+        } finally {
+            // untrack first, so that a request arriving after the response starts its own.
+            mInFlight.remove(identity, call);
+            call.mDone.countDown();
+        }
+    }
+
+    /**
+     * Returns the number of requests that were answered with the response of another request.
+     */
+    public long getCoalescedCount() {
+        return mCoalescedCount.get();
+    }
+
+    /**
+     * A request on the network, with the outcome it is waited on for.
+     */
+    private static final class Call {
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        private volatile NetworkResponse mResponse;
+        private volatile VolleyError mError;
+        private volatile boolean mSpilled;
+
+        /**
+         * Waits for the outcome of the request.
+         *
+         * @return the response, or null if the request failed or ended without one.
+         */
+        NetworkResponse await() throws VolleyError {
+            try {
+                mDone.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new VolleyError(e);
+            }
+            return mResponse;
+        }
+    }
+
+    /**
+     * The canonical identity of a request on the network: its method, URL, headers and the validators
+     * of the cached response it revalidates.
+     */
+    private static final class Identity {
+        private final int mMethod;
+        private final String mUrl;
+        private final Map<String, String> mHeaders;
+        private final String mEtag;
+        private final long mLastModified;
+        private final int mHash;
+
+        Identity(Request<?> request) throws AuthFailureError {
+            mMethod = request.getMethod();
+            mUrl = request.getUrl();
+            mHeaders = request.getHeaders();
+            Cache.Entry entry = request.getCacheEntry();
+            mEtag = entry != null ? entry.etag : null;
+            mLastModified = entry != null ? entry.lastModified : 0;
+            int hash = mUrl.hashCode();
+            hash = 31 * hash + mMethod;
+            hash = 31 * hash + mHeaders.hashCode();
+            hash = 31 * hash + (mEtag != null ? mEtag.hashCode() : 0);
+            hash = 31 * hash + (int) (mLastModified ^ (mLastModified >>> 32));
+            mHash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Identity)) {
+                return false;
+            }
+            Identity other = (Identity) o;
+            return mHash == other.mHash && mMethod == other.mMethod && mLastModified == other.mLastModified
+                    && mUrl.equals(other.mUrl) && mHeaders.equals(other.mHeaders)
+                    && (mEtag != null ? mEtag.equals(other.mEtag) : other.mEtag == null);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHash;
+        }
+    }
+}
@@ -1,17 +1,17 @@
 package com.iftekhar.volleyplus.ext;
 
-import android.support.v4.util.LruCache;
-
 import com.android.volley.Cache;
+import com.iftekhar.volleyplus.SegmentedLruCache;
 
 import java.util.Collection;
 import java.util.Set;
 
 /**
  * An implementation of {@link Cache} that stores per-request response data
- * ({@link com.android.volley.Cache.Entry}) to a {@link LruCache}. The default
+ * ({@link com.android.volley.Cache.Entry}) to a {@link SegmentedLruCache}, so that the cache and
+ * network dispatchers don't contend on a single lock. The default
  * memory size is 1/8 th of the maximum number of bytes heap size can extend,
- * but this can be configured.
+ * but this can be configured, and changed later through {@link #resize(int)}.
  */
 public class InMemoryCache implements Cache {
 
@@ -28,12 +28,12 @@ public class InMemoryCache implements Cache {
     /**
      * Maximum size of the in-memory cache in bytes
      */
-    private final int mMaxCacheSizeInBytes;
+    private int mMaxCacheSizeInBytes;
 
     /**
-     * The memory-based cache implementation.
+     * The memory-based cache implementation, created on {@link #initialize()}.
      */
-    private LruCache<String, Entry> mCache;
+    private volatile SegmentedLruCache<String, Entry> mCache;
 
     public InMemoryCache() {
         this(DEFAULT_MAX_MEMORY_BYTES);
@@ -49,12 +49,12 @@ public class InMemoryCache implements Cache {
     }
 
     /**
-     * Approximates the size of an Entry object
+     * Approximates the size of an Entry object. Package-private for benchmarks.
      *
      * @param entry the object to calculate size
      * @return the collective size of public properties in the entry object in bytes
      */
-    private int getEntrySizeInBytes(Entry entry) {
+    int getEntrySizeInBytes(Entry entry) {
         int bytes = entry.data.length;
         bytes += entry.etag != null ? entry.etag.getBytes().length : 0;
         // calculate byte count of headers
@@ -83,9 +83,42 @@ public class InMemoryCache implements Cache {
         mCache.put(key, entry);
     }
 
+    /**
+     * Changes the maximum size of the in-memory cache, evicting entries if it shrinks. May be called
+     * before the cache is initialized.
+     *
+     * @param maxCacheSizeInBytes the new maximum size in bytes.
+     */
+    public synchronized void resize(int maxCacheSizeInBytes) {
+        mMaxCacheSizeInBytes = maxCacheSizeInBytes;
+        if (mCache != null) {
+            mCache.resize(maxCacheSizeInBytes);
+        }
+    }
+
+    /**
+     * Returns the number of times a get found its entry in memory.
+     */
+    public int getHitCount() {
+        SegmentedLruCache<String, Entry> cache = mCache;
+        return cache == null ? 0 : cache.hitCount();
+    }
+
+    /**
+     * Returns the total size in bytes of the entries gets found in memory.
+     */
+    public long getHitBytes() {
+        SegmentedLruCache<String, Entry> cache = mCache;
+        return cache == null ? 0 : cache.hitSize();
+    }
+
     @Override
-    public void initialize() {
-        mCache = new LruCache<String, Entry>(mMaxCacheSizeInBytes) {
+    public synchronized void initialize() {
+        if (mCache != null) {
+            // already initialized by another RequestQueue sharing this cache.
+            return;
+        }
+        mCache = new SegmentedLruCache<String, Entry>(mMaxCacheSizeInBytes) {
             @Override
             protected int sizeOf(String key, Entry entry) {
                 return getEntrySizeInBytes(entry);
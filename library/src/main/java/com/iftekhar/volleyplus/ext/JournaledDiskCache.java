@@ -0,0 +1,589 @@
+package com.iftekhar.volleyplus.ext;
+
+import com.android.volley.Cache;
+import com.android.volley.VolleyLog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A persistent implementation of {@link Cache} that stores each {@link com.android.volley.Cache.Entry}
+ * in its own file under a root directory. Files are named after the SHA-1 digest of their key, so two
+ * keys never share a file.
+ * <p>
+ * The set of cached keys, their sizes and their recency order is kept in an append-only journal so
+ * that {@link #initialize()} does not have to open every entry file. The journal is compacted when
+ * it accumulates too many redundant records. Entries are evicted in least-recently-used order once
+ * the total size exceeds the configured byte budget. Reads are journaled without a flush, like
+ * DiskLruCache does, so a cache hit costs no disk write; they reach disk with the next write or
+ * compaction, and losing them in a crash only costs recency information.
+ * </p>
+ * <p>
+ * Entry files are written and synced outside of the index lock, so a {@link #put(String, Entry)} in
+ * progress never blocks a concurrent {@link #get(String)} of another key.
+ * </p>
+ */
+public class JournaledDiskCache implements Cache {
+
+    /**
+     * Default maximum disk usage in bytes.
+     */
+    public static final int DEFAULT_DISK_USAGE_BYTES = 10 * 1024 * 1024;
+
+    /**
+     * Magic number identifying an entry file written by this cache.
+     */
+    private static final int ENTRY_MAGIC = 0x56504331;
+
+    /**
+     * Magic number identifying the journal file written by this cache.
+     */
+    private static final int JOURNAL_MAGIC = 0x5650434a;
+
+    /**
+     * Journal record for a key that was written.
+     */
+    private static final byte OP_PUT = 1;
+
+    /**
+     * Journal record for a key that was removed.
+     */
+    private static final byte OP_REMOVE = 2;
+
+    /**
+     * Journal record for a key that was read, used to restore recency order.
+     */
+    private static final byte OP_READ = 3;
+
+    /**
+     * Number of redundant journal records tolerated before the journal is compacted.
+     */
+    private static final int JOURNAL_COMPACT_THRESHOLD = 2000;
+
+    /**
+     * Name of the journal file inside the root directory.
+     */
+    private static final String JOURNAL_FILE = "journal";
+
+    /**
+     * Name of the temporary journal file used during compaction.
+     */
+    private static final String JOURNAL_FILE_TMP = "journal.tmp";
+
+    /**
+     * Suffix of entry files that are still being written.
+     */
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Digits of the hexadecimal file names.
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Map of cache keys to their on-disk sizes, in access order.
+     */
+    private final LinkedHashMap<String, Long> mEntries = new LinkedHashMap<>(16, .75f, true);
+
+    /**
+     * The root directory holding the journal and the entry files.
+     */
+    private final File mRootDirectory;
+
+    /**
+     * Maximum size of the disk cache in bytes.
+     */
+    private final long mMaxCacheSizeInBytes;
+
+    /**
+     * Total size of all entries currently on disk, in bytes.
+     */
+    private long mTotalSize = 0;
+
+    /**
+     * Number of journal records that no longer describe a live entry.
+     */
+    private int mRedundantOpCount = 0;
+
+    /**
+     * The open journal writer, or null before initialization.
+     */
+    private DataOutputStream mJournalWriter;
+
+    /**
+     * Constructs an instance of the JournaledDiskCache with the default disk budget.
+     *
+     * @param rootDirectory The root directory of the cache.
+     */
+    public JournaledDiskCache(File rootDirectory) {
+        this(rootDirectory, DEFAULT_DISK_USAGE_BYTES);
+    }
+
+    /**
+     * Constructs an instance of the JournaledDiskCache.
+     *
+     * @param rootDirectory       The root directory of the cache.
+     * @param maxCacheSizeInBytes Maximum size of the disk cache in bytes.
+     */
+    public JournaledDiskCache(File rootDirectory, long maxCacheSizeInBytes) {
+        mRootDirectory = rootDirectory;
+        mMaxCacheSizeInBytes = maxCacheSizeInBytes;
+    }
+
+    /**
+     * Returns the file an entry with the specified key is stored in.
+     *
+     * @param key The cache key.
+     * @return the entry file, which may not exist.
+     */
+    private File getFileForKey(String key) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+        byte[] hash = digest.digest(key.getBytes(UTF_8));
+        char[] name = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            name[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+            name[2 * i + 1] = HEX_DIGITS[hash[i] & 0xf];
+        }
+        return new File(mRootDirectory, new String(name));
+    }
+
+    @Override
+    public Entry get(String key) {
+        Long size;
+        synchronized (this) {
+            size = mEntries.get(key);
+            if (size == null) {
+                return null;
+            }
+            appendJournal(OP_READ, key, 0);
+        }
+        File file = getFileForKey(key);
+        try {
+            Entry entry = readEntry(file, key);
+            if (entry == null) {
+                // the file holds another key; it is that key's to delete.
+                VolleyLog.d("%s does not hold %s", file.getAbsolutePath(), key);
+                forget(key, size);
+            }
+            return entry;
+        } catch (IOException e) {
+            VolleyLog.d("%s: %s", file.getAbsolutePath(), e.toString());
+            remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * Drops a key from the index without deleting its file, if it is still indexed with the specified size.
+     */
+    private synchronized void forget(String key, Long size) {
+        if (!size.equals(mEntries.get(key))) {
+            return;
+        }
+        mEntries.remove(key);
+        mTotalSize -= size;
+        appendJournal(OP_REMOVE, key, 0);
+        mRedundantOpCount++;
+        compactJournalIfNecessary();
+    }
+
+    @Override
+    public void put(String key, Entry entry) {
+        File file = getFileForKey(key);
+        File tmp = new File(file.getPath() + TMP_SUFFIX);
+        long size;
+        try {
+            size = writeEntry(tmp, key, entry);
+        } catch (IOException e) {
+            VolleyLog.d("Could not write %s: %s", tmp.getAbsolutePath(), e.toString());
+            tmp.delete();
+            return;
+        }
+        synchronized (this) {
+            if (mJournalWriter == null) {
+                tmp.delete();
+                return;
+            }
+            if (!tmp.renameTo(file)) {
+                VolleyLog.d("Could not rename %s", tmp.getAbsolutePath());
+                tmp.delete();
+                return;
+            }
+            Long previous = mEntries.put(key, size);
+            if (previous != null) {
+                mTotalSize -= previous;
+                mRedundantOpCount++;
+            }
+            mTotalSize += size;
+            appendJournal(OP_PUT, key, size);
+            trimToSize();
+            compactJournalIfNecessary();
+        }
+    }
+
+    @Override
+    public synchronized void initialize() {
+        if (mJournalWriter != null) {
+            return;
+        }
+        if (!mRootDirectory.exists() && !mRootDirectory.mkdirs()) {
+            VolleyLog.e("Unable to create cache dir %s", mRootDirectory.getAbsolutePath());
+            return;
+        }
+        File journal = new File(mRootDirectory, JOURNAL_FILE);
+        if (journal.exists()) {
+            try {
+                readJournal(journal);
+            } catch (IOException e) {
+                VolleyLog.d("Discarding corrupt journal: %s", e.toString());
+                mEntries.clear();
+                mTotalSize = 0;
+            }
+        }
+        deleteUntrackedFiles();
+        try {
+            rewriteJournal();
+        } catch (IOException e) {
+            VolleyLog.e("Unable to write journal in %s", mRootDirectory.getAbsolutePath());
+        }
+        trimToSize();
+    }
+
+    @Override
+    public void invalidate(String key, boolean fullExpire) {
+        Entry entry = get(key);
+        if (entry != null) {
+            entry.softTtl = 0;
+            if (fullExpire) {
+                entry.ttl = 0;
+            }
+            put(key, entry);
+        }
+    }
+
+    @Override
+    public synchronized void remove(String key) {
+        Long size = mEntries.remove(key);
+        if (size == null) {
+            return;
+        }
+        mTotalSize -= size;
+        getFileForKey(key).delete();
+        appendJournal(OP_REMOVE, key, 0);
+        mRedundantOpCount++;
+        compactJournalIfNecessary();
+    }
+
+    @Override
+    public synchronized void clear() {
+        for (String key : mEntries.keySet()) {
+            getFileForKey(key).delete();
+        }
+        mEntries.clear();
+        mTotalSize = 0;
+        try {
+            rewriteJournal();
+        } catch (IOException e) {
+            VolleyLog.e("Unable to write journal in %s", mRootDirectory.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Returns the total size of all entries currently on disk, in bytes.
+     */
+    public synchronized long size() {
+        return mTotalSize;
+    }
+
+    /**
+     * Evicts least recently used entries until the total size fits the byte budget.
+     */
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> iterator = mEntries.entrySet().iterator();
+        while (mTotalSize > mMaxCacheSizeInBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            mTotalSize -= eldest.getValue();
+            getFileForKey(eldest.getKey()).delete();
+            appendJournal(OP_REMOVE, eldest.getKey(), 0);
+            mRedundantOpCount++;
+        }
+    }
+
+    /**
+     * Appends a record to the journal. Writes and removals are flushed but not synced, reads are only
+     * buffered; records lost on a crash only cost recency information or orphan files, both of which
+     * are repaired on the next {@link #initialize()}.
+     */
+    private void appendJournal(byte op, String key, long size) {
+        if (mJournalWriter == null) {
+            return;
+        }
+        try {
+            mJournalWriter.writeByte(op);
+            mJournalWriter.writeUTF(key);
+            if (op == OP_PUT) {
+                mJournalWriter.writeLong(size);
+            }
+            if (op != OP_READ) {
+                mJournalWriter.flush();
+            }
+        } catch (IOException e) {
+            VolleyLog.d("Journal write failed: %s", e.toString());
+        }
+        if (op == OP_READ) {
+            mRedundantOpCount++;
+        }
+    }
+
+    /**
+     * Rewrites the journal when redundant records outnumber the live entries.
+     */
+    private void compactJournalIfNecessary() {
+        if (mRedundantOpCount >= JOURNAL_COMPACT_THRESHOLD && mRedundantOpCount >= mEntries.size()) {
+            try {
+                rewriteJournal();
+            } catch (IOException e) {
+                VolleyLog.d("Journal compaction failed: %s", e.toString());
+            }
+        }
+    }
+
+    /**
+     * Replays the journal into the in-memory index.
+     *
+     * @param journal The journal file.
+     * @throws IOException if the journal is unreadable or malformed.
+     */
+    private void readJournal(File journal) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)));
+        try {
+            if (in.readInt() != JOURNAL_MAGIC) {
+                throw new IOException("Unexpected journal header");
+            }
+            while (true) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                String key = in.readUTF();
+                if (op == OP_PUT) {
+                    long size = in.readLong();
+                    Long previous = mEntries.put(key, size);
+                    if (previous != null) {
+                        mTotalSize -= previous;
+                    }
+                    mTotalSize += size;
+                } else if (op == OP_REMOVE) {
+                    Long previous = mEntries.remove(key);
+                    if (previous != null) {
+                        mTotalSize -= previous;
+                    }
+                } else if (op == OP_READ) {
+                    mEntries.get(key);
+                } else {
+                    throw new IOException("Unexpected journal op " + op);
+                }
+            }
+        } catch (EOFException e) {
+            // A truncated trailing record is the result of a crash mid-append; keep what was read.
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Drops index entries without a backing file and deletes files that are not in the index.
+     */
+    private void deleteUntrackedFiles() {
+        Set<String> trackedNames = new HashSet<>(mEntries.size());
+        Iterator<Map.Entry<String, Long>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            File file = getFileForKey(entry.getKey());
+            if (file.length() != entry.getValue()) {
+                iterator.remove();
+                mTotalSize -= entry.getValue();
+                file.delete();
+            } else {
+                trackedNames.add(file.getName());
+            }
+        }
+        File[] files = mRootDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.equals(JOURNAL_FILE) && !trackedNames.contains(name)) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Writes a compact journal containing only live entries, in recency order, and swaps it in
+     * place of the current one.
+     *
+     * @throws IOException if the journal could not be written.
+     */
+    private void rewriteJournal() throws IOException {
+        if (mJournalWriter != null) {
+            mJournalWriter.close();
+            mJournalWriter = null;
+        }
+        File tmp = new File(mRootDirectory, JOURNAL_FILE_TMP);
+        FileOutputStream fos = new FileOutputStream(tmp);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+        try {
+            out.writeInt(JOURNAL_MAGIC);
+            for (Map.Entry<String, Long> entry : mEntries.entrySet()) {
+                out.writeByte(OP_PUT);
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+            out.flush();
+            fos.getFD().sync();
+        } finally {
+            out.close();
+        }
+        File journal = new File(mRootDirectory, JOURNAL_FILE);
+        if (!tmp.renameTo(journal)) {
+            throw new IOException("Could not rename " + tmp.getAbsolutePath());
+        }
+        mRedundantOpCount = 0;
+        mJournalWriter = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journal, true)));
+    }
+
+    /**
+     * Serializes an entry to the specified file and syncs it to disk.
+     *
+     * @return the number of bytes written.
+     * @throws IOException if the file could not be written.
+     */
+    private static long writeEntry(File file, String key, Entry entry) throws IOException {
+        FileOutputStream fos = new FileOutputStream(file);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+        try {
+            out.writeInt(ENTRY_MAGIC);
+            writeString(out, key);
+            writeString(out, entry.etag);
+            out.writeLong(entry.serverDate);
+            out.writeLong(entry.lastModified);
+            out.writeLong(entry.ttl);
+            out.writeLong(entry.softTtl);
+            if (entry.responseHeaders == null) {
+                out.writeInt(0);
+            } else {
+                out.writeInt(entry.responseHeaders.size());
+                for (Map.Entry<String, String> header : entry.responseHeaders.entrySet()) {
+                    writeString(out, header.getKey());
+                    writeString(out, header.getValue());
+                }
+            }
+            out.writeInt(entry.data.length);
+            out.write(entry.data);
+            out.flush();
+            fos.getFD().sync();
+            return out.size();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Deserializes the entry stored in the specified file. Its body is read straight into the entry's
+     * byte array, the only copy volley's {@link Entry} allows for.
+     *
+     * Lengths and counts read from the file are checked against its size before anything is allocated
+     * for them, so a corrupt file fails with an IOException rather than running out of memory.
+     *
+     * @return the entry read from disk, or null if the file holds another key.
+     * @throws IOException if the file is unreadable, truncated or corrupt.
+     */
+    private static Entry readEntry(File file, String key) throws IOException {
+        long fileLength = file.length();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != ENTRY_MAGIC) {
+                throw new IOException("Unexpected entry header");
+            }
+            if (!key.equals(readString(in, fileLength))) {
+                return null;
+            }
+            Entry entry = new Entry();
+            entry.etag = readString(in, fileLength);
+            entry.serverDate = in.readLong();
+            entry.lastModified = in.readLong();
+            entry.ttl = in.readLong();
+            entry.softTtl = in.readLong();
+            int headerCount = in.readInt();
+            // each header takes at least the two lengths of its name and value.
+            if (headerCount < 0 || headerCount > fileLength / 8) {
+                throw new IOException("Unexpected header count " + headerCount);
+            }
+            Map<String, String> headers = new HashMap<>(headerCount);
+            for (int i = 0; i < headerCount; i++) {
+                headers.put(readString(in, fileLength), readString(in, fileLength));
+            }
+            entry.responseHeaders = headers;
+            int length = in.readInt();
+            if (length < 0 || length > fileLength) {
+                throw new IOException("Unexpected body length " + length);
+            }
+            entry.data = new byte[length];
+            in.readFully(entry.data);
+            return entry;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in, long maxLength) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > maxLength) {
+            throw new IOException("Unexpected string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,223 @@
+package com.iftekhar.volleyplus.ext;
+
+import com.android.volley.Cache;
+import com.android.volley.Network;
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.ResponseDelivery;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link RequestQueue} for one class of traffic, e.g. API calls or images, with network dispatchers
+ * of its own, that can borrow the idle dispatchers of another queue. Queues of different classes can
+ * share a cache and a network, so a grid loading images no longer keeps API calls waiting for a free
+ * dispatcher.
+ * <p>
+ * Once a queue has as many requests in flight as it has dispatchers, new requests go to its lender if
+ * the lender has more idle dispatchers than it keeps reserved for its own traffic, and queue up at home
+ * otherwise. A borrowed dispatcher is given back as soon as its request finishes. Requests in flight
+ * include those in the cache stage, so a queue may look busier than it is while serving cache hits.
+ * </p>
+ * <p>
+ * The finished listeners of a queue are notified of its requests that ran on the lender too, and
+ * {@link #cancelAll(RequestFilter)} reaches them there. The lender's own listeners are notified of
+ * them as well, as for any other request it ran.
+ * </p>
+ */
+public class LendingRequestQueue extends RequestQueue {
+
+    /**
+     * Default number of dispatchers a queue never lends out.
+     */
+    public static final int DEFAULT_RESERVED_THREADS = 1;
+
+    /**
+     * Number of network dispatchers of the queue.
+     */
+    private final int mThreadPoolSize;
+
+    /**
+     * Number of idle dispatchers the queue keeps for its own requests rather than lending them.
+     */
+    private final int mReservedThreads;
+
+    /**
+     * Requests added to the queue, its own and those it runs for other queues, that have not finished.
+     */
+    private final AtomicInteger mInFlight = new AtomicInteger();
+
+    /**
+     * The queue whose idle dispatchers this queue borrows, or null.
+     */
+    private volatile LendingRequestQueue mLender;
+
+    /**
+     * Requests the queue runs for other queues, mapped to the queue each belongs to.
+     */
+    private final ConcurrentHashMap<Request<?>, LendingRequestQueue> mBorrowers = new ConcurrentHashMap<>();
+
+    /**
+     * Finished listeners added to the queue, to be notified of its requests that ran on the lender.
+     */
+    private final CopyOnWriteArrayList<RequestFinishedListener<?>> mFinishedListeners =
+            new CopyOnWriteArrayList<>();
+
+    /**
+     * Counts finished requests and hands those run for other queues back to their listeners.
+     */
+    private final RequestFinishedListener<Object> mInFlightListener = new RequestFinishedListener<Object>() {
+        @Override
+        public void onRequestFinished(Request<Object> request) {
+            mInFlight.decrementAndGet();
+            LendingRequestQueue borrower = mBorrowers.remove(request);
+            if (borrower != null) {
+                borrower.onBorrowedRequestFinished(request);
+            }
+        }
+    };
+
+    /**
+     * Constructs a LendingRequestQueue that keeps {@link #DEFAULT_RESERVED_THREADS} dispatchers for its
+     * own requests.
+     *
+     * @param cache          The cache to use, possibly shared with other queues.
+     * @param network        The network to perform requests with, possibly shared with other queues.
+     * @param threadPoolSize The number of network dispatchers.
+     */
+    public LendingRequestQueue(Cache cache, Network network, int threadPoolSize) {
+        this(cache, network, threadPoolSize, DEFAULT_RESERVED_THREADS);
+    }
+
+    /**
+     * Constructs a LendingRequestQueue.
+     *
+     * @param cache           The cache to use, possibly shared with other queues.
+     * @param network         The network to perform requests with, possibly shared with other queues.
+     * @param threadPoolSize  The number of network dispatchers.
+     * @param reservedThreads The number of idle dispatchers never lent to other queues.
+     */
+    public LendingRequestQueue(Cache cache, Network network, int threadPoolSize, int reservedThreads) {
+        super(cache, network, threadPoolSize);
+        mThreadPoolSize = threadPoolSize;
+        mReservedThreads = Math.min(reservedThreads, threadPoolSize);
+        super.addRequestFinishedListener(mInFlightListener);
+    }
+
+    /**
+     * Constructs a LendingRequestQueue.
+     *
+     * @param cache           The cache to use, possibly shared with other queues.
+     * @param network         The network to perform requests with, possibly shared with other queues.
+     * @param threadPoolSize  The number of network dispatchers.
+     * @param reservedThreads The number of idle dispatchers never lent to other queues.
+     * @param delivery        The delivery interface for responses.
+     */
+    public LendingRequestQueue(Cache cache, Network network, int threadPoolSize, int reservedThreads,
+                               ResponseDelivery delivery) {
+        super(cache, network, threadPoolSize, delivery);
+        mThreadPoolSize = threadPoolSize;
+        mReservedThreads = Math.min(reservedThreads, threadPoolSize);
+        super.addRequestFinishedListener(mInFlightListener);
+    }
+
+    /**
+     * Lets this queue run requests on the idle dispatchers of another queue while its own are busy.
+     *
+     * @param lender The queue to borrow from, or null to stop borrowing.
+     */
+    public void setLender(LendingRequestQueue lender) {
+        if (lender == this) {
+            throw new IllegalArgumentException("A queue can't borrow from itself.");
+        }
+        mLender = lender;
+    }
+
+    @Override
+    public <T> Request<T> add(Request<T> request) {
+        LendingRequestQueue lender = mLender;
+        if (lender != null && mInFlight.get() >= mThreadPoolSize && lender.lend(request, this)) {
+            return request;
+        }
+        mInFlight.incrementAndGet();
+        return super.add(request);
+    }
+
+    /**
+     * Runs a request of another queue if enough dispatchers are idle.
+     *
+     * @return true if the request was taken.
+     */
+    private boolean lend(Request<?> request, LendingRequestQueue borrower) {
+        int inFlight;
+        do {
+            inFlight = mInFlight.get();
+            if (inFlight >= mThreadPoolSize - mReservedThreads) {
+                return false;
+            }
+        } while (!mInFlight.compareAndSet(inFlight, inFlight + 1));
+        mBorrowers.put(request, borrower);
+        super.add(request);
+        return true;
+    }
+
+    /**
+     * Notifies the listeners of this queue of one of its requests that finished on the lender.
+     */
+    @SuppressWarnings("unchecked")
+    private void onBorrowedRequestFinished(Request<Object> request) {
+        for (RequestFinishedListener<?> listener : mFinishedListeners) {
+            ((RequestFinishedListener<Object>) listener).onRequestFinished(request);
+        }
+    }
+
+    @Override
+    public <T> void addRequestFinishedListener(RequestFinishedListener<T> listener) {
+        mFinishedListeners.add(listener);
+        super.addRequestFinishedListener(listener);
+    }
+
+    @Override
+    public <T> void removeRequestFinishedListener(RequestFinishedListener<T> listener) {
+        mFinishedListeners.remove(listener);
+        super.removeRequestFinishedListener(listener);
+    }
+
+    @Override
+    public void cancelAll(RequestFilter filter) {
+        super.cancelAll(filter);
+        LendingRequestQueue lender = mLender;
+        if (lender != null) {
+            lender.cancelBorrowed(this, filter);
+        }
+    }
+
+    /**
+     * Cancels the requests run for a queue that match a filter.
+     */
+    private void cancelBorrowed(LendingRequestQueue borrower, RequestFilter filter) {
+        for (Map.Entry<Request<?>, LendingRequestQueue> entry : mBorrowers.entrySet()) {
+            if (entry.getValue() == borrower && filter.apply(entry.getKey())) {
+                entry.getKey().cancel();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of network dispatchers of the queue.
+     */
+    public int getThreadPoolSize() {
+        return mThreadPoolSize;
+    }
+
+    /**
+     * Returns the number of requests added to the queue that have not finished, including those it
+     * runs for other queues.
+     */
+    public int getInFlightCount() {
+        return mInFlight.get();
+    }
+}
@@ -0,0 +1,191 @@
+package com.iftekhar.volleyplus.ext;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Request;
+import com.android.volley.toolbox.HurlStack;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * A {@link HurlStack} that reuses connections through the keep-alive pool of
+ * {@link HttpURLConnection} and limits the number of connections open to each host at the same time.
+ * <p>
+ * HttpURLConnection only returns a connection to its pool once the response body was read to the end
+ * and closed, and the pool only keeps as many idle connections per host as the {@code http.maxConnections}
+ * system property allows, 5 by default. This stack sets that property and the idle timeout from its
+ * configuration, so it must be created before the first connection is opened; the platform reads them
+ * once. A grid of thumbnails from one host then goes over a few warm connections instead of a new TCP
+ * and TLS handshake per image.
+ * </p>
+ * <p>
+ * A request waits on the network dispatcher thread while its host already has the maximum number of
+ * responses in flight. A connection counts as in flight until its response body is consumed, so the
+ * limit also bounds the idle connections the pool has to keep.
+ * </p>
+ * <p>
+ * From KitKat on HttpURLConnection is backed by OkHttp, which pools connections the same way but does
+ * not negotiate HTTP/2 for it. To multiplex requests over HTTP/2, pass an {@link
+ * com.android.volley.toolbox.HttpStack} built on an HTTP/2 client to
+ * {@link com.iftekhar.volleyplus.VolleyPlus#getInstance(android.content.Context,
+ * com.android.volley.toolbox.HttpStack)} instead.
+ * </p>
+ */
+public class PooledHurlStack extends HurlStack {
+
+    /**
+     * Default maximum number of connections to a single host.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
+
+    /**
+     * Default time an idle connection is kept open for reuse, in milliseconds.
+     */
+    public static final long DEFAULT_KEEP_ALIVE_MS = 5 * 60 * 1000;
+
+    /**
+     * Maximum number of connections to a single host.
+     */
+    private final int mMaxConnectionsPerHost;
+
+    /**
+     * Permits of the connections to each host, by scheme, host and port.
+     */
+    private final ConcurrentHashMap<String, Semaphore> mHostPermits = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a PooledHurlStack with {@link #DEFAULT_MAX_CONNECTIONS_PER_HOST} and
+     * {@link #DEFAULT_KEEP_ALIVE_MS}.
+     */
+    public PooledHurlStack() {
+        this(DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_KEEP_ALIVE_MS, null);
+    }
+
+    /**
+     * Constructs a PooledHurlStack.
+     *
+     * @param maxConnectionsPerHost The maximum number of connections to a single host.
+     * @param keepAliveMs           The time an idle connection is kept open for reuse, in milliseconds.
+     * @param sslSocketFactory      The SSL factory to use for HTTPS connections, or null for the default.
+     */
+    public PooledHurlStack(int maxConnectionsPerHost, long keepAliveMs, SSLSocketFactory sslSocketFactory) {
+        super(null, sslSocketFactory);
+        if (maxConnectionsPerHost <= 0) {
+            throw new IllegalArgumentException("maxConnectionsPerHost <= 0");
+        }
+        mMaxConnectionsPerHost = maxConnectionsPerHost;
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", String.valueOf(maxConnectionsPerHost));
+        System.setProperty("http.keepAliveDuration", String.valueOf(keepAliveMs));
+    }
+
+    @Override
+    public HttpResponse performRequest(Request<?> request, Map<String, String> additionalHeaders)
+            throws IOException, AuthFailureError {
+        Semaphore permits = permitsFor(new URL(request.getUrl()));
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for a connection");
+        }
+        HttpResponse response;
+        try {
+            response = super.performRequest(request, additionalHeaders);
+        } catch (IOException | AuthFailureError | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            permits.release();
+        } else {
+            response.setEntity(new PermitEntity(entity, permits));
+        }
+        return response;
+    }
+
+    /**
+     * Returns the permits of the connections to the host of a URL.
+     */
+    private Semaphore permitsFor(URL url) {
+        String host = url.getProtocol() + "://" + url.getHost() + ":" + url.getPort();
+        Semaphore permits = mHostPermits.get(host);
+        if (permits == null) {
+            Semaphore created = new Semaphore(mMaxConnectionsPerHost);
+            permits = mHostPermits.putIfAbsent(host, created);
+            if (permits == null) {
+                permits = created;
+            }
+        }
+        return permits;
+    }
+
+    /**
+     * Returns the maximum number of connections to a single host.
+     */
+    public int getMaxConnectionsPerHost() {
+        return mMaxConnectionsPerHost;
+    }
+
+    /**
+     * A response entity that gives back the permit of its connection once its content is consumed or
+     * its stream closed, whichever happens first.
+     */
+    private static final class PermitEntity extends HttpEntityWrapper {
+        private final Semaphore mPermits;
+        private final AtomicBoolean mReleased = new AtomicBoolean();
+
+        PermitEntity(HttpEntity entity, Semaphore permits) {
+            super(entity);
+            mPermits = permits;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            return new FilterInputStream(super.getContent()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        release();
+                    }
+                }
+            };
+        }
+
+        /**
+         * Deprecated in apache http, but it is how volley's BasicNetwork releases an entity.
+         */
+        @Override
+        @SuppressWarnings("deprecation")
+        public void consumeContent() throws IOException {
+            try {
+                super.consumeContent();
+            } finally {
+                release();
+            }
+        }
+
+        private void release() {
+            if (mReleased.compareAndSet(false, true)) {
+                mPermits.release();
+            }
+        }
+    }
+}
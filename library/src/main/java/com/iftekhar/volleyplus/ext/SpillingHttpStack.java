@@ -0,0 +1,288 @@
+package com.iftekhar.volleyplus.ext;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.VolleyLog;
+import com.android.volley.toolbox.HttpStack;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.BasicHttpEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * An {@link HttpStack} that writes large response bodies to files instead of letting
+ * {@link com.android.volley.toolbox.BasicNetwork} read them into a byte array, so a multi-megabyte
+ * hero image or JSON payload doesn't cause a heap spike of its size.
+ * <p>
+ * Only bodies of successful responses to requests implementing {@link FileBodyRequest} are written to
+ * files, once they are larger than the threshold. Bodies of unknown length are read into memory up to
+ * the threshold and written to a file from there on. The response then reaches the request with an empty
+ * body. The file is recorded for the request itself, never in the response, so a server can't point a
+ * request at a file of its choosing. The request finds it through {@link #getBodyFile(Request)}, reads it
+ * as a stream or file descriptor in {@link Request#parseNetworkResponse(NetworkResponse)} and deletes it
+ * afterwards through {@link #deleteBodyFile(Request)}.
+ * </p>
+ * <p>
+ * Volley's cache would store such a response without its body, so requests must not return a cache entry
+ * for it. Large bodies therefore skip the http cache; copying them into it would put their full size on
+ * the heap again.
+ * </p>
+ * <p>
+ * Files an earlier process left behind are deleted on a network thread, before the first body is written
+ * to a file. Only files this class names are deleted, so the directory may be shared.
+ * </p>
+ */
+public class SpillingHttpStack implements HttpStack {
+
+    /**
+     * A request that can parse its response from a file, see {@link #getBodyFile(NetworkResponse)}.
+     */
+    public interface FileBodyRequest {
+    }
+
+    /**
+     * Default size in bytes above which bodies are written to files.
+     */
+    public static final int DEFAULT_THRESHOLD_BYTES = 512 * 1024;
+
+    /**
+     * Size of the buffer bodies are copied with.
+     */
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * Prefix of the names of body files.
+     */
+    private static final String FILE_PREFIX = "volleyplus-body";
+
+    /**
+     * Suffix of the names of body files.
+     */
+    private static final String FILE_SUFFIX = ".tmp";
+
+    /**
+     * Files holding the bodies of requests, by request. Requests are weakly held, so a request that is
+     * dropped without parsing its response doesn't stay reachable.
+     */
+    private static final Map<Request<?>, File> sBodyFiles =
+            Collections.synchronizedMap(new WeakHashMap<Request<?>, File>());
+
+    /**
+     * The stack performing the requests.
+     */
+    private final HttpStack mStack;
+
+    /**
+     * The directory for body files.
+     */
+    private final File mDirectory;
+
+    /**
+     * Size in bytes above which bodies are written to files.
+     */
+    private final int mThresholdBytes;
+
+    /**
+     * Time this stack was constructed; body files older than that were left by an earlier process.
+     */
+    private final long mCreatedMillis = System.currentTimeMillis();
+
+    /**
+     * True once the files left by an earlier process were deleted. Guarded by this object.
+     */
+    private boolean mCleanedUp;
+
+    /**
+     * Constructs a SpillingHttpStack with {@link #DEFAULT_THRESHOLD_BYTES}.
+     *
+     * @param stack     The stack performing the requests.
+     * @param directory The directory for body files.
+     */
+    public SpillingHttpStack(HttpStack stack, File directory) {
+        this(stack, directory, DEFAULT_THRESHOLD_BYTES);
+    }
+
+    /**
+     * Constructs a SpillingHttpStack. It doesn't touch the file system until a body is written to a file.
+     *
+     * @param stack          The stack performing the requests.
+     * @param directory      The directory for body files.
+     * @param thresholdBytes The size in bytes above which bodies are written to files.
+     */
+    public SpillingHttpStack(HttpStack stack, File directory, int thresholdBytes) {
+        mStack = stack;
+        mDirectory = directory;
+        mThresholdBytes = thresholdBytes;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public HttpResponse performRequest(Request<?> request, Map<String, String> additionalHeaders)
+            throws IOException, AuthFailureError {
+        HttpResponse response = mStack.performRequest(request, additionalHeaders);
+        HttpEntity entity = response.getEntity();
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (!(request instanceof FileBodyRequest) || entity == null || statusCode < 200 || statusCode > 299) {
+            return response;
+        }
+        long length = entity.getContentLength();
+        if (length >= 0 && length <= mThresholdBytes) {
+            return response;
+        }
+        try {
+            InputStream in = entity.getContent();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            ByteArrayOutputStream head = null;
+            if (length < 0) {
+                // read up to the threshold into memory; the body may turn out small after all.
+                head = new ByteArrayOutputStream(BUFFER_SIZE);
+                int count;
+                while (head.size() <= mThresholdBytes && (count = in.read(buffer)) != -1) {
+                    head.write(buffer, 0, count);
+                }
+                if (head.size() <= mThresholdBytes) {
+                    response.setEntity(entityOf(head.toByteArray()));
+                    return response;
+                }
+            }
+            File file = writeToFile(head, in, buffer);
+            File previous = sBodyFiles.put(request, file);
+            if (previous != null) {
+                // a retry of the request, whose first response was never parsed.
+                delete(previous);
+            }
+            response.setEntity(entityOf(new byte[0]));
+            return response;
+        } finally {
+            // deprecated, but it is how volley's entities give back their connection.
+            entity.consumeContent();
+        }
+    }
+
+    /**
+     * Writes the bytes read so far and the rest of a stream to a new file in the directory.
+     */
+    private File writeToFile(ByteArrayOutputStream head, InputStream in, byte[] buffer) throws IOException {
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            throw new IOException("Unable to create " + mDirectory);
+        }
+        deleteLeftovers();
+        File file = File.createTempFile(FILE_PREFIX, FILE_SUFFIX, mDirectory);
+        FileOutputStream out = new FileOutputStream(file);
+        boolean written = false;
+        try {
+            if (head != null) {
+                head.writeTo(out);
+            }
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            written = true;
+        } finally {
+            out.close();
+            if (!written) {
+                delete(file);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Deletes the body files an earlier process left in the directory, once.
+     */
+    private synchronized void deleteLeftovers() {
+        if (mCleanedUp) {
+            return;
+        }
+        mCleanedUp = true;
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX) && file.lastModified() < mCreatedMillis) {
+                delete(file);
+            }
+        }
+    }
+
+    /**
+     * Deletes a file, logging if that fails.
+     */
+    private static void delete(File file) {
+        if (!file.delete()) {
+            VolleyLog.d("Unable to delete %s", file);
+        }
+    }
+
+    /**
+     * Returns an entity with the specified body.
+     */
+    private static HttpEntity entityOf(byte[] body) {
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent(new ByteArrayInputStream(body));
+        entity.setContentLength(body.length);
+        return entity;
+    }
+
+    /**
+     * Returns the file holding the body of the network response of a request, or null if the body is in
+     * the response itself.
+     *
+     * @param request The request.
+     */
+    public static File getBodyFile(Request<?> request) {
+        return sBodyFiles.get(request);
+    }
+
+    /**
+     * Opens a stream over the body of the response of a request, wherever it is.
+     *
+     * @param request  The request.
+     * @param response The response.
+     * @return a stream to be closed by the caller.
+     * @throws IOException if the file with the body can't be opened.
+     */
+    public static InputStream openBody(Request<?> request, NetworkResponse response) throws IOException {
+        File file = getBodyFile(request);
+        return file != null ? new FileInputStream(file) : new ByteArrayInputStream(response.data);
+    }
+
+    /**
+     * Returns the length of the body of the response of a request, wherever it is.
+     *
+     * @param request  The request.
+     * @param response The response.
+     */
+    public static long getBodyLength(Request<?> request, NetworkResponse response) {
+        File file = getBodyFile(request);
+        return file != null ? file.length() : response.data.length;
+    }
+
+    /**
+     * Deletes the file holding the body of the response of a request, if any. Called once the request
+     * parsed it.
+     *
+     * @param request The request.
+     */
+    public static void deleteBodyFile(Request<?> request) {
+        File file = sBodyFiles.remove(request);
+        if (file != null) {
+            delete(file);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.iftekhar.volleyplus.ext;
+
+import android.os.Process;
+
+import com.android.volley.Cache;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An implementation of {@link Cache} that keeps an {@link InMemoryCache} as the first tier in front
+ * of a persistent {@link JournaledDiskCache}, so cached responses survive process death.
+ * <p>
+ * Reads are served from memory first and fall back to disk, promoting disk hits into memory.
+ * Writes land in memory immediately and are written behind to disk on a single background thread,
+ * in the order they were made, so the volley cache and network dispatchers never wait on disk I/O
+ * or fsync. Until a write reaches disk it remains readable from a pending-writes map even if the
+ * memory tier has already evicted it.
+ * </p>
+ * <p>
+ * Entries whose key starts with {@link #DISK_ONLY_KEY_PREFIX} skip the memory tier altogether. Requests
+ * whose responses are kept in memory in another form, e.g. as decoded bitmaps, use such keys so that
+ * the same response doesn't take up heap twice.
+ * </p>
+ */
+public class TwoTierCache implements Cache {
+
+    /**
+     * Prefix of the keys of entries that are only cached on disk.
+     */
+    public static final String DISK_ONLY_KEY_PREFIX = "disk-only:";
+
+    /**
+     * The first, heap-based tier.
+     */
+    private final InMemoryCache mMemoryCache;
+
+    /**
+     * The second, persistent tier.
+     */
+    private final JournaledDiskCache mDiskCache;
+
+    /**
+     * Entries that were put but have not yet been written to the disk tier.
+     */
+    private final ConcurrentHashMap<String, Entry> mPendingWrites = new ConcurrentHashMap<>();
+
+    /**
+     * Single background thread that applies all disk tier mutations in order.
+     */
+    private final ExecutorService mDiskExecutor;
+
+    /**
+     * Constructs an instance of the TwoTierCache with default memory and disk budgets.
+     *
+     * @param rootDirectory The directory for the disk tier.
+     */
+    public TwoTierCache(File rootDirectory) {
+        this(new InMemoryCache(), new JournaledDiskCache(rootDirectory));
+    }
+
+    /**
+     * Constructs an instance of the TwoTierCache.
+     *
+     * @param memoryCache The memory tier.
+     * @param diskCache   The disk tier.
+     */
+    public TwoTierCache(InMemoryCache memoryCache, JournaledDiskCache diskCache) {
+        mMemoryCache = memoryCache;
+        mDiskCache = diskCache;
+        mDiskExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        r.run();
+                    }
+                }, "VolleyPlus-DiskWriter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Returns the memory tier.
+     */
+    public InMemoryCache getMemoryCache() {
+        return mMemoryCache;
+    }
+
+    /**
+     * Returns the entry of a key if it is held in memory, i.e. by the memory tier or as a pending write,
+     * without reading the disk tier. Unlike {@link #get(String)}, it is cheap enough for the main thread.
+     *
+     * @param key The cache key.
+     * @return the entry, or null if it is only on disk or not cached at all.
+     */
+    public Entry peek(String key) {
+        Entry entry = isDiskOnly(key) ? null : mMemoryCache.get(key);
+        return entry != null ? entry : mPendingWrites.get(key);
+    }
+
+    /**
+     * Returns the key to cache the response of a request on disk only.
+     *
+     * @param key The cache key of the request.
+     * @return the key with {@link #DISK_ONLY_KEY_PREFIX}.
+     */
+    public static String toDiskOnlyKey(String key) {
+        return DISK_ONLY_KEY_PREFIX + key;
+    }
+
+    /**
+     * Returns true if the entry of the key skips the memory tier.
+     */
+    private static boolean isDiskOnly(String key) {
+        return key.startsWith(DISK_ONLY_KEY_PREFIX);
+    }
+
+    @Override
+    public Entry get(String key) {
+        boolean diskOnly = isDiskOnly(key);
+        Entry entry = diskOnly ? null : mMemoryCache.get(key);
+        if (entry != null) {
+            return entry;
+        }
+        entry = mPendingWrites.get(key);
+        if (entry != null) {
+            return entry;
+        }
+        entry = mDiskCache.get(key);
+        if (entry != null && !diskOnly) {
+            // promote disk hits so the next read is served from memory.
+            mMemoryCache.put(key, entry);
+        }
+        return entry;
+    }
+
+    @Override
+    public void put(final String key, final Entry entry) {
+        if (!isDiskOnly(key)) {
+            mMemoryCache.put(key, entry);
+        }
+        mPendingWrites.put(key, entry);
+        mDiskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mDiskCache.put(key, entry);
+                // only clear the pending write if it was not superseded in the meantime.
+                mPendingWrites.remove(key, entry);
+            }
+        });
+    }
+
+    /**
+     * Initializes the memory tier and replays the disk tier's journal. Volley calls this on its
+     * cache dispatcher thread before serving any request.
+     */
+    @Override
+    public void initialize() {
+        mMemoryCache.initialize();
+        mDiskCache.initialize();
+    }
+
+    @Override
+    public void invalidate(String key, boolean fullExpire) {
+        Entry entry = get(key);
+        if (entry != null) {
+            entry.softTtl = 0;
+            if (fullExpire) {
+                entry.ttl = 0;
+            }
+            put(key, entry);
+        }
+    }
+
+    @Override
+    public void remove(final String key) {
+        mMemoryCache.remove(key);
+        mPendingWrites.remove(key);
+        mDiskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mDiskCache.remove(key);
+            }
+        });
+    }
+
+    @Override
+    public void clear() {
+        mMemoryCache.clear();
+        mPendingWrites.clear();
+        mDiskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mDiskCache.clear();
+            }
+        });
+    }
+}
@@ -0,0 +1,299 @@
+package com.iftekhar.volleyplus.toolbox;
+
+import android.graphics.Bitmap;
+import android.widget.ImageView.ScaleType;
+
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.android.volley.VolleyLog;
+import com.android.volley.toolbox.HttpHeaderParser;
+import com.iftekhar.volleyplus.DeferredDelivery;
+import com.iftekhar.volleyplus.Prioritizable;
+import com.iftekhar.volleyplus.ext.SpillingHttpStack;
+
+import java.io.File;
+import java.util.concurrent.Executor;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * A request for a bitmap from a URL whose decoding is handed off to a {@link BitmapDecodeStage}
+ * instead of running on the volley dispatcher thread that fetched it. The dispatcher is released as
+ * soon as the response is queued for decoding. The decoded bitmap, or a {@link ParseError}, is then
+ * delivered through a result executor rather than volley's own delivery, which only ever sees a
+ * placeholder response with a null result that is never handed to the listener.
+ * <p>
+ * With a {@link CompressedImageTier}, the response bytes are kept in the tier before decoding, and the
+ * request can later be served from the tier through {@link #decodeFromTier(CompressedImageTier.Image, Runnable)}
+ * without ever being added to a RequestQueue.
+ * </p>
+ * <p>
+ * A large image written to a file by a {@link SpillingHttpStack} is decoded from the file, and is kept
+ * neither in volley's cache nor in the tier.
+ * </p>
+ */
+public class AsyncDecodeImageRequest extends Request<Bitmap> implements Prioritizable, DeferredDelivery,
+        SpillingHttpStack.FileBodyRequest {
+
+    /**
+     * Socket timeout in milliseconds for image requests
+     */
+    private static final int IMAGE_TIMEOUT_MS = 1000;
+
+    /**
+     * Default number of retries for image requests
+     */
+    private static final int IMAGE_MAX_RETRIES = 2;
+
+    /**
+     * Default backoff multiplier for image requests
+     */
+    private static final float IMAGE_BACKOFF_MULT = 2f;
+
+    private final Response.Listener<Bitmap> mListener;
+    private final Bitmap.Config mDecodeConfig;
+    private final int mMaxWidth;
+    private final int mMaxHeight;
+    private final ScaleType mScaleType;
+
+    /**
+     * The decoder to decode the response with.
+     */
+    private final BitmapDecoder mDecoder;
+
+    /**
+     * The stage to run the decoder on.
+     */
+    private final BitmapDecodeStage mDecodeStage;
+
+    /**
+     * The executor to deliver the decoded bitmap on.
+     */
+    private final Executor mResultExecutor;
+
+    /**
+     * The priority to queue this request with. Loads from visible views outrank prefetches, which
+     * are lowered to {@link Priority#LOW}.
+     */
+    private Priority mPriority = Priority.NORMAL;
+
+    /**
+     * The key to cache the response under, or null for volley's default.
+     */
+    private String mCacheKey;
+
+    /**
+     * The tier to keep the response bytes in, or null.
+     */
+    private CompressedImageTier mCompressedTier;
+
+    /**
+     * Whether a response was queued for decoding and its result not yet delivered. Volley finishes the
+     * request as soon as the placeholder is delivered, before that.
+     */
+    private volatile boolean mDeliveryPending;
+
+    /**
+     * Creates a new image request, decoding to a maximum specified width and height on a decode stage.
+     * If both width and height are zero, the image will be decoded to its natural size.
+     *
+     * @param url            URL of the image
+     * @param listener       Listener to receive the decoded bitmap
+     * @param maxWidth       Maximum width to decode this bitmap to, or zero for none
+     * @param maxHeight      Maximum height to decode this bitmap to, or zero for none
+     * @param scaleType      The ImageViews ScaleType used to calculate the needed image size.
+     * @param decodeConfig   Format to decode the bitmap to
+     * @param decoder        The decoder to decode the response with
+     * @param decodeStage    The stage to run the decoder on
+     * @param resultExecutor The executor to deliver the decoded bitmap or error on
+     * @param errorListener  Error listener, or null to ignore errors
+     */
+    public AsyncDecodeImageRequest(String url, Response.Listener<Bitmap> listener, int maxWidth, int maxHeight,
+                                   ScaleType scaleType, Bitmap.Config decodeConfig, BitmapDecoder decoder,
+                                   BitmapDecodeStage decodeStage, Executor resultExecutor,
+                                   Response.ErrorListener errorListener) {
+        super(Method.GET, url, errorListener);
+        setRetryPolicy(new DefaultRetryPolicy(IMAGE_TIMEOUT_MS, IMAGE_MAX_RETRIES, IMAGE_BACKOFF_MULT));
+        mListener = listener;
+        mDecodeConfig = decodeConfig;
+        mMaxWidth = maxWidth;
+        mMaxHeight = maxHeight;
+        mScaleType = scaleType;
+        mDecoder = decoder;
+        mDecodeStage = decodeStage;
+        mResultExecutor = resultExecutor;
+    }
+
+    /**
+     * Sets the key to cache the response under in volley's cache.
+     *
+     * @param cacheKey The cache key, or null for volley's default.
+     */
+    public void setCacheKey(String cacheKey) {
+        mCacheKey = cacheKey;
+    }
+
+    /**
+     * Sets the tier to keep the compressed response bytes in, by URL.
+     *
+     * @param compressedTier The tier, or null.
+     */
+    public void setCompressedTier(CompressedImageTier compressedTier) {
+        mCompressedTier = compressedTier;
+    }
+
+    @Override
+    public String getCacheKey() {
+        return mCacheKey != null ? mCacheKey : super.getCacheKey();
+    }
+
+    @Override
+    public Priority getPriority() {
+        return mPriority;
+    }
+
+    @Override
+    public void setPriority(Priority priority) {
+        mPriority = priority;
+    }
+
+    @Override
+    public boolean isDeliveryPending() {
+        return mDeliveryPending;
+    }
+
+    /**
+     * Queues the response for decoding and returns a placeholder that lets volley cache the response
+     * and finish the request. The result of the placeholder is always null; it is only ever handed to
+     * {@link #deliverResponse(Bitmap)}, which drops it, and never to the listener. The decoded bitmap
+     * is delivered to the listener once decoded.
+     * <p>
+     * A response that is not modified since the cached one volley already served, e.g. when a
+     * soft-expired hit was revalidated, is not decoded again, since the listener already got its bitmap.
+     * </p>
+     */
+    @Override
+    protected Response<Bitmap> parseNetworkResponse(final NetworkResponse response) {
+        if (response.notModified && hasHadResponseDelivered()) {
+            SpillingHttpStack.deleteBodyFile(this);
+            return Response.success(null, HttpHeaderParser.parseCacheHeaders(response));
+        }
+        // checked before the decode stage can delete the file.
+        boolean inFile = SpillingHttpStack.getBodyFile(this) != null;
+        mDeliveryPending = true;
+        // blocks this dispatcher while the decode queue is full.
+        mDecodeStage.execute(new Runnable() {
+            @Override
+            public void run() {
+                decodeAndDeliver(response);
+            }
+        }, getPriority());
+        return Response.success(null, inFile ? null : HttpHeaderParser.parseCacheHeaders(response));
+    }
+
+    /**
+     * Serves the request from an image held by a {@link CompressedImageTier} instead of a response. The
+     * image is decoded on the decode stage and the result is posted to the result executor, just like a
+     * response. The request is not added to any RequestQueue.
+     *
+     * @param image      The pinned image, released once decoded.
+     * @param onFinished Run once the request delivered its result or was found canceled.
+     */
+    public void decodeFromTier(final CompressedImageTier.Image image, final Runnable onFinished) {
+        // the image is pinned in the tier anyway, and the caller may hold the loader's lock.
+        mDecodeStage.executeNonBlocking(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (isCanceled()) {
+                        return;
+                    }
+                    Bitmap bitmap = null;
+                    VolleyError error = null;
+                    try {
+                        bitmap = mDecoder.decode(image, mMaxWidth, mMaxHeight, mScaleType, mDecodeConfig);
+                        if (bitmap == null) {
+                            error = new ParseError();
+                            if (mCompressedTier != null) {
+                                // don't serve the broken image again.
+                                mCompressedTier.remove(getUrl());
+                            }
+                        }
+                    } catch (OutOfMemoryError e) {
+                        VolleyLog.e("Caught OOM for %d byte image, url=%s", image.getLength(), getUrl());
+                        error = new ParseError(e);
+                    }
+                    deliver(bitmap, error);
+                } finally {
+                    image.release();
+                    onFinished.run();
+                }
+            }
+        }, getPriority());
+    }
+
+    /**
+     * Decodes the response on the decode stage and posts the result to the result executor.
+     */
+    private void decodeAndDeliver(NetworkResponse response) {
+        File bodyFile = SpillingHttpStack.getBodyFile(this);
+        try {
+            if (isCanceled()) {
+                return;
+            }
+            if (mCompressedTier != null && bodyFile == null) {
+                mCompressedTier.put(getUrl(), response.data);
+            }
+            Bitmap bitmap = null;
+            VolleyError error = null;
+            try {
+                bitmap = bodyFile != null
+                        ? mDecoder.decode(bodyFile, mMaxWidth, mMaxHeight, mScaleType, mDecodeConfig)
+                        : mDecoder.decode(response.data, mMaxWidth, mMaxHeight, mScaleType, mDecodeConfig);
+                if (bitmap == null) {
+                    error = new ParseError(response);
+                }
+            } catch (OutOfMemoryError e) {
+                VolleyLog.e("Caught OOM for %d byte image, url=%s", SpillingHttpStack.getBodyLength(this, response), getUrl());
+                error = new ParseError(e);
+            }
+            deliver(bitmap, error);
+        } finally {
+            SpillingHttpStack.deleteBodyFile(this);
+        }
+    }
+
+    /**
+     * Posts a decoded bitmap or an error to the result executor.
+     */
+    private void deliver(final Bitmap bitmap, final VolleyError error) {
+        mResultExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mDeliveryPending = false;
+                if (isCanceled()) {
+                    return;
+                }
+                if (error != null) {
+                    deliverError(error);
+                } else {
+                    mListener.onResponse(bitmap);
+                }
+            }
+        });
+    }
+
+    /**
+     * Drops the null placeholder volley delivers from {@link #parseNetworkResponse(NetworkResponse)};
+     * the decoded bitmap is delivered from {@link #deliver(Bitmap, VolleyError)} instead.
+     */
+    @Override
+    protected void deliverResponse(Bitmap response) {
+    }
+}
@@ -0,0 +1,198 @@
+package com.iftekhar.volleyplus.toolbox;
+
+import android.os.Process;
+
+import com.android.volley.Request;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * A pipeline stage that decodes bitmaps on its own bounded pool of background threads, apart from
+ * volley's network dispatchers. Network I/O and decoding overlap this way: a slow decode doesn't hold
+ * up downloads and downloads don't wait for decodes. The number of threads bounds how many bitmaps are
+ * decoded at once, and with it the transient heap usage of decoding.
+ * <p>
+ * Waiting jobs are run highest priority first, so a visible image isn't decoded behind a backlog of
+ * prefetches. Since each waiting job holds a whole response, the queue is bounded too: a network
+ * dispatcher handing over a response while it is full waits for a slot, which in turn slows down
+ * downloads to the pace of decoding.
+ * </p>
+ */
+public class BitmapDecodeStage {
+
+    /**
+     * Default number of decode threads; one per spare core, up to 4.
+     */
+    public static final int DEFAULT_THREAD_COUNT =
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+    /**
+     * Default number of decode jobs that may wait for a thread, per thread.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY_PER_THREAD = 2;
+
+    /**
+     * Time in seconds an idle decode thread is kept alive.
+     */
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * A queued decode job, ordered by priority and then first-in first-out.
+     */
+    private final class DecodeJob implements Runnable, Comparable<DecodeJob> {
+        /**
+         * The job to run.
+         */
+        private final Runnable mJob;
+
+        /**
+         * The priority of the request the job decodes for.
+         */
+        private final Request.Priority mPriority;
+
+        /**
+         * The order in which the job was queued.
+         */
+        private final long mSequence = mNextSequence.getAndIncrement();
+
+        /**
+         * True if the job holds a slot of the bounded queue until it starts.
+         */
+        private final boolean mHoldsSlot;
+
+        DecodeJob(Runnable job, Request.Priority priority, boolean holdsSlot) {
+            mJob = job;
+            mPriority = priority;
+            mHoldsSlot = holdsSlot;
+        }
+
+        @Override
+        public void run() {
+            if (mHoldsSlot) {
+                mQueueSlots.release();
+            }
+            mJob.run();
+        }
+
+        @Override
+        public int compareTo(DecodeJob another) {
+            int byPriority = another.mPriority.ordinal() - mPriority.ordinal();
+            if (byPriority != 0) {
+                return byPriority;
+            }
+            return mSequence < another.mSequence ? -1 : (mSequence == another.mSequence ? 0 : 1);
+        }
+    }
+
+    /**
+     * The executor running decode jobs.
+     */
+    private final ThreadPoolExecutor mExecutor;
+
+    /**
+     * The free slots of the bounded queue.
+     */
+    private final Semaphore mQueueSlots;
+
+    /**
+     * The sequence number of the next queued job.
+     */
+    private final AtomicLong mNextSequence = new AtomicLong();
+
+    /**
+     * Creates a new BitmapDecodeStage with {@link #DEFAULT_THREAD_COUNT} threads.
+     */
+    public BitmapDecodeStage() {
+        this(DEFAULT_THREAD_COUNT);
+    }
+
+    /**
+     * Creates a new BitmapDecodeStage that lets {@link #DEFAULT_QUEUE_CAPACITY_PER_THREAD} jobs per
+     * thread wait.
+     *
+     * @param threadCount the maximum number of bitmaps to decode at once.
+     */
+    public BitmapDecodeStage(int threadCount) {
+        this(threadCount, threadCount * DEFAULT_QUEUE_CAPACITY_PER_THREAD);
+    }
+
+    /**
+     * Creates a new BitmapDecodeStage.
+     *
+     * @param threadCount   the maximum number of bitmaps to decode at once.
+     * @param queueCapacity the maximum number of jobs waiting for a thread before
+     *                      {@link #execute(Runnable, Request.Priority)} blocks.
+     */
+    public BitmapDecodeStage(int threadCount, int queueCapacity) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threadCount must be at least 1");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be at least 1");
+        }
+        mQueueSlots = new Semaphore(queueCapacity);
+        mExecutor = new ThreadPoolExecutor(threadCount, threadCount, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        r.run();
+                    }
+                }, "VolleyPlus-Decode-" + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues a decode job, blocking the calling thread while the queue is full.
+     *
+     * @param decodeJob the job to run on a decode thread.
+     * @param priority  the priority of the request the job decodes for.
+     */
+    public void execute(Runnable decodeJob, Request.Priority priority) {
+        mQueueSlots.acquireUninterruptibly();
+        try {
+            mExecutor.execute(new DecodeJob(decodeJob, priority, true));
+        } catch (RejectedExecutionException e) {
+            mQueueSlots.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Queues a decode job without waiting for a slot, even if the queue is full. Meant for jobs whose
+     * input is held in memory anyway, and for callers that must not block.
+     *
+     * @param decodeJob the job to run on a decode thread.
+     * @param priority  the priority of the request the job decodes for.
+     */
+    public void executeNonBlocking(Runnable decodeJob, Request.Priority priority) {
+        mExecutor.execute(new DecodeJob(decodeJob, priority, false));
+    }
+
+    /**
+     * Stops the decode threads once the queued jobs are done. No new jobs are accepted afterwards.
+     */
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+}
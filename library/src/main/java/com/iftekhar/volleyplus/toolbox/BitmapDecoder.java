@@ -0,0 +1,272 @@
+package com.iftekhar.volleyplus.toolbox;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.widget.ImageView.ScaleType;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * Decodes image data the way volley's {@link com.android.volley.toolbox.ImageRequest} does, sampling and
+ * scaling it down to a requested size. If constructed with a {@link BitmapPool}, it decodes into pooled
+ * bitmaps whenever the pool has a suitable one. This class holds no locks; it is up to the caller to
+ * bound how many decodes run at once.
+ */
+public class BitmapDecoder {
+
+    /**
+     * Encoded image data that can be decoded more than once.
+     */
+    private interface Source {
+        Bitmap decode(BitmapFactory.Options options);
+    }
+
+    /**
+     * The pool to take bitmaps to decode into from, or null.
+     */
+    private final BitmapPool mBitmapPool;
+
+    /**
+     * Creates a new BitmapDecoder.
+     *
+     * @param bitmapPool The pool to reuse bitmaps from, or null to always decode into new bitmaps.
+     */
+    public BitmapDecoder(BitmapPool bitmapPool) {
+        mBitmapPool = bitmapPool;
+    }
+
+    /**
+     * Scales one side of a rectangle to fit aspect ratio.
+     *
+     * @param maxPrimary      Maximum size of the primary dimension (i.e. width for
+     *                        max width), or zero to maintain aspect ratio with secondary
+     *                        dimension
+     * @param maxSecondary    Maximum size of the secondary dimension, or zero to
+     *                        maintain aspect ratio with primary dimension
+     * @param actualPrimary   Actual size of the primary dimension
+     * @param actualSecondary Actual size of the secondary dimension
+     * @param scaleType       The ScaleType used to calculate the needed image size.
+     */
+    static int getResizedDimension(int maxPrimary, int maxSecondary, int actualPrimary,
+                                   int actualSecondary, ScaleType scaleType) {
+        // If no dominant value at all, just return the actual.
+        if (maxPrimary == 0 && maxSecondary == 0) {
+            return actualPrimary;
+        }
+
+        // If ScaleType.FIT_XY fill the whole rectangle, ignore ratio.
+        if (scaleType == ScaleType.FIT_XY) {
+            if (maxPrimary == 0) {
+                return actualPrimary;
+            }
+            return maxPrimary;
+        }
+
+        // If primary is unspecified, scale primary to match secondary's scaling ratio.
+        if (maxPrimary == 0) {
+            double ratio = (double) maxSecondary / (double) actualSecondary;
+            return (int) (actualPrimary * ratio);
+        }
+
+        if (maxSecondary == 0) {
+            return maxPrimary;
+        }
+
+        double ratio = (double) actualSecondary / (double) actualPrimary;
+        int resized = maxPrimary;
+
+        // If ScaleType.CENTER_CROP fill the whole rectangle, preserve aspect ratio.
+        if (scaleType == ScaleType.CENTER_CROP) {
+            if ((resized * ratio) < maxSecondary) {
+                resized = (int) (maxSecondary / ratio);
+            }
+            return resized;
+        }
+
+        if ((resized * ratio) > maxSecondary) {
+            resized = (int) (maxSecondary / ratio);
+        }
+        return resized;
+    }
+
+    /**
+     * Returns the largest power-of-two divisor for use in downscaling a bitmap
+     * that will not result in the scaling past the desired dimensions.
+     *
+     * @param actualWidth   Actual width of the bitmap
+     * @param actualHeight  Actual height of the bitmap
+     * @param desiredWidth  Desired width of the bitmap
+     * @param desiredHeight Desired height of the bitmap
+     */
+    static int findBestSampleSize(int actualWidth, int actualHeight, int desiredWidth, int desiredHeight) {
+        double wr = (double) actualWidth / desiredWidth;
+        double hr = (double) actualHeight / desiredHeight;
+        double ratio = Math.min(wr, hr);
+        float n = 1.0f;
+        while ((n * 2) <= ratio) {
+            n *= 2;
+        }
+        return (int) n;
+    }
+
+    /**
+     * Decodes image data to a bitmap that fits the specified maximum size. If both width and height
+     * are zero, the image will be decoded to its natural size.
+     *
+     * @param data         The encoded image.
+     * @param maxWidth     Maximum width to decode this bitmap to, or zero for none
+     * @param maxHeight    Maximum height to decode this bitmap to, or zero for none
+     * @param scaleType    The ImageViews ScaleType used to calculate the needed image size.
+     * @param decodeConfig Format to decode the bitmap to
+     * @return the decoded bitmap, or null if the data could not be decoded.
+     */
+    public Bitmap decode(final byte[] data, int maxWidth, int maxHeight, ScaleType scaleType, Bitmap.Config decodeConfig) {
+        return decode(new Source() {
+            @Override
+            public Bitmap decode(BitmapFactory.Options options) {
+                return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+            }
+        }, maxWidth, maxHeight, scaleType, decodeConfig);
+    }
+
+    /**
+     * Decodes an image held by a {@link CompressedImageTier} to a bitmap that fits the specified maximum
+     * size, streaming its bytes from the tier.
+     *
+     * @param image        The pinned image. It is not released.
+     * @param maxWidth     Maximum width to decode this bitmap to, or zero for none
+     * @param maxHeight    Maximum height to decode this bitmap to, or zero for none
+     * @param scaleType    The ImageViews ScaleType used to calculate the needed image size.
+     * @param decodeConfig Format to decode the bitmap to
+     * @return the decoded bitmap, or null if the data could not be decoded.
+     */
+    public Bitmap decode(final CompressedImageTier.Image image, int maxWidth, int maxHeight, ScaleType scaleType,
+                         Bitmap.Config decodeConfig) {
+        return decode(new Source() {
+            @Override
+            public Bitmap decode(BitmapFactory.Options options) {
+                InputStream stream = image.openStream();
+                try {
+                    return BitmapFactory.decodeStream(stream, null, options);
+                } finally {
+                    try {
+                        stream.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }, maxWidth, maxHeight, scaleType, decodeConfig);
+    }
+
+    /**
+     * Decodes an image file to a bitmap that fits the specified maximum size, reading it through its
+     * file descriptor so that the encoded bytes never enter the Java heap.
+     *
+     * @param file         The encoded image.
+     * @param maxWidth     Maximum width to decode this bitmap to, or zero for none
+     * @param maxHeight    Maximum height to decode this bitmap to, or zero for none
+     * @param scaleType    The ImageViews ScaleType used to calculate the needed image size.
+     * @param decodeConfig Format to decode the bitmap to
+     * @return the decoded bitmap, or null if the file could not be read or decoded.
+     */
+    public Bitmap decode(final File file, int maxWidth, int maxHeight, ScaleType scaleType, Bitmap.Config decodeConfig) {
+        return decode(new Source() {
+            @Override
+            public Bitmap decode(BitmapFactory.Options options) {
+                FileInputStream stream = null;
+                try {
+                    stream = new FileInputStream(file);
+                    return BitmapFactory.decodeFileDescriptor(stream.getFD(), null, options);
+                } catch (IOException e) {
+                    return null;
+                } finally {
+                    if (stream != null) {
+                        try {
+                            stream.close();
+                        } catch (IOException ignored) {
+                        }
+                    }
+                }
+            }
+        }, maxWidth, maxHeight, scaleType, decodeConfig);
+    }
+
+    /**
+     * Decodes encoded image data to a bitmap that fits the specified maximum size.
+     */
+    private Bitmap decode(Source data, int maxWidth, int maxHeight, ScaleType scaleType, Bitmap.Config decodeConfig) {
+        BitmapFactory.Options decodeOptions = new BitmapFactory.Options();
+        decodeOptions.inPreferredConfig = decodeConfig;
+
+        // Decode bounds first; we need the decoded size to pick a bitmap from the pool.
+        decodeOptions.inJustDecodeBounds = true;
+        data.decode(decodeOptions);
+        int actualWidth = decodeOptions.outWidth;
+        int actualHeight = decodeOptions.outHeight;
+        decodeOptions.inJustDecodeBounds = false;
+
+        int desiredWidth = actualWidth;
+        int desiredHeight = actualHeight;
+        if (maxWidth != 0 || maxHeight != 0) {
+            desiredWidth = getResizedDimension(maxWidth, maxHeight, actualWidth, actualHeight, scaleType);
+            desiredHeight = getResizedDimension(maxHeight, maxWidth, actualHeight, actualWidth, scaleType);
+            decodeOptions.inSampleSize = findBestSampleSize(actualWidth, actualHeight, desiredWidth, desiredHeight);
+        }
+
+        Bitmap tempBitmap = decodeIntoPooledBitmap(data, decodeOptions, actualWidth, actualHeight);
+        Bitmap bitmap;
+        // If necessary, scale down to the maximal acceptable size.
+        if (tempBitmap != null && (tempBitmap.getWidth() > desiredWidth ||
+                tempBitmap.getHeight() > desiredHeight)) {
+            bitmap = Bitmap.createScaledBitmap(tempBitmap, desiredWidth, desiredHeight, true);
+            if (mBitmapPool != null) {
+                mBitmapPool.put(tempBitmap);
+            } else {
+                tempBitmap.recycle();
+            }
+        } else {
+            bitmap = tempBitmap;
+        }
+        return bitmap;
+    }
+
+    /**
+     * Decodes the image data, into a pooled bitmap if one fits.
+     */
+    private Bitmap decodeIntoPooledBitmap(Source data, BitmapFactory.Options decodeOptions, int actualWidth, int actualHeight) {
+        if (mBitmapPool == null || !BitmapPool.canReuseBitmaps() || actualWidth <= 0 || actualHeight <= 0) {
+            return data.decode(decodeOptions);
+        }
+        decodeOptions.inMutable = true;
+        int sampleSize = Math.max(1, decodeOptions.inSampleSize);
+        // Before KitKat, the decoder can only reuse a bitmap of the exact size without sampling.
+        if (sampleSize == 1 || Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            int width = (actualWidth + sampleSize - 1) / sampleSize;
+            int height = (actualHeight + sampleSize - 1) / sampleSize;
+            decodeOptions.inBitmap = mBitmapPool.get(width, height, decodeOptions.inPreferredConfig);
+        }
+        if (decodeOptions.inBitmap == null) {
+            return data.decode(decodeOptions);
+        }
+        try {
+            Bitmap bitmap = data.decode(decodeOptions);
+            if (bitmap == null) {
+                mBitmapPool.put(decodeOptions.inBitmap);
+            }
+            return bitmap;
+        } catch (IllegalArgumentException e) {
+            // The decoder rejected the pooled bitmap; give it back and decode into a new one.
+            mBitmapPool.put(decodeOptions.inBitmap);
+            decodeOptions.inBitmap = null;
+            return data.decode(decodeOptions);
+        }
+    }
+}
@@ -1,14 +1,23 @@
 package com.iftekhar.volleyplus.toolbox;
 
 import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
 import android.widget.ImageView;
 
 import com.android.volley.Request;
 import com.android.volley.RequestQueue;
 import com.android.volley.Response;
 import com.android.volley.toolbox.ImageRequest;
+import com.iftekhar.volleyplus.CacheKey;
+import com.iftekhar.volleyplus.DataContainer;
 import com.iftekhar.volleyplus.Loader;
 import com.iftekhar.volleyplus.MemoryCache;
+import com.iftekhar.volleyplus.ext.TwoTierCache;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * @author Iftekhar Ahmed
@@ -18,12 +27,87 @@ import com.iftekhar.volleyplus.MemoryCache;
  * A concrete implementation of the {@link Loader} class for bitmap data. It
  * uses standard volley {@link ImageRequest} for loading bitmaps. Same
  * bitmaps can be requested for loading from multiple resources. Cancellation
- * works per-request. This class is not thread-safe. All requests for loading
- * bitmaps MUST be called from the main thread otherwise an {@link IllegalStateException}
+ * works per-request. Unless constructed with a delivery executor, all requests for
+ * loading bitmaps MUST be called from the main thread otherwise an {@link IllegalStateException}
  * will be thrown.
+ * <p>
+ * An image is kept in memory in only one form, chosen by the loader's {@link CachePolicy}: either as a
+ * decoded bitmap in the loader's memory cache, with the response bytes cached on disk only, or as
+ * response bytes in volley's cache, decoded again on every hit.
+ * </p>
+ * <p>
+ * With decoded caching and a decode stage, a {@link CompressedImageTier} can be set as a second tier.
+ * It keeps the compressed bytes of loaded images, far smaller than their bitmaps, and a bitmap that left the
+ * memory cache is decoded again from there without going through the RequestQueue at all.
+ * </p>
  */
 public class BitmapLoader extends Loader<Bitmap> {
 
+    /**
+     * The form images are kept in memory in.
+     */
+    public enum CachePolicy {
+        /**
+         * Decoded bitmaps are kept in the loader's memory cache. The response bytes skip the memory tier
+         * of a {@link TwoTierCache} and are only cached on disk. Hits cost nothing, but every image takes
+         * up its full decoded size.
+         */
+        DECODED,
+
+        /**
+         * Only the response bytes are kept, in volley's cache, and the loader's memory cache is not used.
+         * Every load is decoded again from those bytes, so many more images fit in the same memory at the
+         * cost of a decode per hit.
+         */
+        COMPRESSED
+    }
+
+    /**
+     * A {@link MemoryCache} that is bypassed while the loader caches compressed images.
+     */
+    private static final class PolicyMemoryCache implements MemoryCache<Bitmap> {
+        /**
+         * The cache for decoded bitmaps.
+         */
+        private final MemoryCache<Bitmap> mCache;
+
+        /**
+         * The policy of the loader.
+         */
+        private volatile CachePolicy mPolicy = DEFAULT_CACHE_POLICY;
+
+        PolicyMemoryCache(MemoryCache<Bitmap> cache) {
+            mCache = cache;
+        }
+
+        @Override
+        public Bitmap get(CacheKey cacheKey) {
+            if (mPolicy == CachePolicy.COMPRESSED) {
+                // drop bitmaps cached before the policy changed.
+                mCache.remove(cacheKey);
+                return null;
+            }
+            return mCache.get(cacheKey);
+        }
+
+        @Override
+        public void put(CacheKey cacheKey, Bitmap bitmap) {
+            if (mPolicy == CachePolicy.DECODED) {
+                mCache.put(cacheKey, bitmap);
+            }
+        }
+
+        @Override
+        public void remove(CacheKey cacheKey) {
+            mCache.remove(cacheKey);
+        }
+
+        @Override
+        public void resize(int size) {
+            mCache.resize(size);
+        }
+    }
+
     /**
      * A static container class for data required to construct a bitmap request.
      */
@@ -54,6 +138,11 @@ public class BitmapLoader extends Loader<Bitmap> {
          */
         private ImageView.ScaleType mScaleType = DEFAULT_SCALE_TYPE;
 
+        /**
+         * priority to load with.
+         */
+        private Request.Priority mPriority = DEFAULT_PRIORITY;
+
         /**
          * Creates a new instance of RequestBuilder.
          *
@@ -98,6 +187,18 @@ public class BitmapLoader extends Loader<Bitmap> {
             return this;
         }
 
+        /**
+         * Pass in the priority for the request. It can be changed later through
+         * {@link Loader#setPriority(com.iftekhar.volleyplus.DataContainer, Request.Priority)}.
+         *
+         * @param priority The priority.
+         * @return the RequestBuilder object.
+         */
+        public RequestBuilder priority(Request.Priority priority) {
+            mPriority = priority;
+            return this;
+        }
+
         /**
          * load the bitmap with specified parameters.
          *
@@ -108,6 +209,29 @@ public class BitmapLoader extends Loader<Bitmap> {
         public void load(String url, OnLoadListener<Bitmap> listener) {
             mLoader.loadWithRequestData(url, listener, this);
         }
+
+        /**
+         * load the bitmaps asynchronously with specified parameters and hand them to a single callback.
+         *
+         * @param urls         The URLs for the bitmaps to load.
+         * @param bulkListener The listener to hand the bitmaps to.
+         * @return the containers of the URLs that missed the cache.
+         */
+        @Override
+        public List<DataContainer<Bitmap>> loadAll(Collection<String> urls, BulkListener<Bitmap> bulkListener) {
+            return mLoader.loadAllWithRequestData(urls, bulkListener, this);
+        }
+
+        /**
+         * prefetch the bitmaps with specified parameters into the memory cache.
+         *
+         * @param urls The URLs of the bitmaps to prefetch.
+         * @return the containers of the prefetches started.
+         */
+        @Override
+        public List<DataContainer<Bitmap>> prefetch(Collection<String> urls) {
+            return mLoader.prefetchWithRequestData(urls, this);
+        }
     }
 
     /**
@@ -131,9 +255,39 @@ public class BitmapLoader extends Loader<Bitmap> {
     public static final ImageView.ScaleType DEFAULT_SCALE_TYPE = ImageView.ScaleType.CENTER_INSIDE;
 
     /**
-     * object containing user-supplied data to construct a ImageRequest.
+     * default policy for keeping images in memory.
+     */
+    public static final CachePolicy DEFAULT_CACHE_POLICY = CachePolicy.DECODED;
+
+    /**
+     * pool of bitmaps to decode into, or null to always decode into new bitmaps.
+     */
+    private final BitmapPool mBitmapPool;
+
+    /**
+     * decoder used for decoding on the decode stage.
+     */
+    private final BitmapDecoder mDecoder;
+
+    /**
+     * the stage to decode bitmaps on, or null to decode them on the volley dispatcher threads.
+     */
+    private volatile BitmapDecodeStage mDecodeStage;
+
+    /**
+     * executor to deliver bitmaps decoded on the decode stage on.
      */
-    private RequestBuilder mRequestBuilder;
+    private final Executor mResultExecutor;
+
+    /**
+     * the memory cache of the loader, which applies the cache policy.
+     */
+    private final PolicyMemoryCache mPolicyCache;
+
+    /**
+     * the second tier holding compressed bytes of loaded images, or null.
+     */
+    private volatile CompressedImageTier mCompressedTier;
 
     /**
      * Creates a new BitmapLoader instance.
@@ -142,47 +296,214 @@ public class BitmapLoader extends Loader<Bitmap> {
      * @param memoryCache  An implementation of MemoryCache interface.
      */
     public BitmapLoader(RequestQueue requestQueue, MemoryCache<Bitmap> memoryCache) {
-        super(requestQueue, memoryCache);
+        this(requestQueue, memoryCache, null, null);
+    }
+
+    /**
+     * Creates a new BitmapLoader instance that decodes into bitmaps from a pool when possible. The memory
+     * cache should report bitmaps it removes to {@link BitmapPool#onRemovedFromCache(Bitmap)}.
+     *
+     * @param requestQueue The preferred instance of a volley RequestQueue.
+     * @param memoryCache  An implementation of MemoryCache interface.
+     * @param bitmapPool   The pool of reusable bitmaps.
+     */
+    public BitmapLoader(RequestQueue requestQueue, MemoryCache<Bitmap> memoryCache, BitmapPool bitmapPool) {
+        this(requestQueue, memoryCache, null, bitmapPool);
+    }
+
+    /**
+     * Creates a new BitmapLoader instance that accepts requests from any thread.
+     *
+     * @param requestQueue     The preferred instance of a volley RequestQueue.
+     * @param memoryCache      A thread-safe implementation of MemoryCache interface.
+     * @param deliveryExecutor The executor to deliver network responses on.
+     */
+    public BitmapLoader(RequestQueue requestQueue, MemoryCache<Bitmap> memoryCache, Executor deliveryExecutor) {
+        this(requestQueue, memoryCache, deliveryExecutor, null);
+    }
+
+    /**
+     * Creates a new BitmapLoader instance.
+     *
+     * @param requestQueue     The preferred instance of a volley RequestQueue.
+     * @param memoryCache      An implementation of MemoryCache interface.
+     * @param deliveryExecutor The executor to deliver network responses on, or null to deliver them
+     *                         on the main thread.
+     * @param bitmapPool       The pool of reusable bitmaps, or null.
+     */
+    public BitmapLoader(RequestQueue requestQueue, MemoryCache<Bitmap> memoryCache, Executor deliveryExecutor,
+                        BitmapPool bitmapPool) {
+        this(requestQueue, new PolicyMemoryCache(memoryCache), deliveryExecutor, bitmapPool);
+    }
+
+    /**
+     * Creates a new BitmapLoader instance on a memory cache that applies the cache policy.
+     */
+    private BitmapLoader(RequestQueue requestQueue, PolicyMemoryCache memoryCache, Executor deliveryExecutor,
+                         BitmapPool bitmapPool) {
+        super(requestQueue, memoryCache, deliveryExecutor);
+        mPolicyCache = memoryCache;
+        mBitmapPool = bitmapPool;
+        mDecoder = new BitmapDecoder(bitmapPool);
+        if (isConcurrent()) {
+            // a concurrent loader takes responses on any thread; hand them over right away.
+            mResultExecutor = new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    command.run();
+                }
+            };
+        } else {
+            final Handler handler = new Handler(Looper.getMainLooper());
+            mResultExecutor = new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    handler.post(command);
+                }
+            };
+        }
+    }
+
+    /**
+     * Sets the stage to decode bitmaps on, apart from the volley dispatcher threads. Without one, bitmaps are
+     * decoded on the dispatcher that fetched them, one at a time.
+     *
+     * @param decodeStage The decode stage, or null to decode on the dispatcher threads.
+     */
+    public void setDecodeStage(BitmapDecodeStage decodeStage) {
+        mDecodeStage = decodeStage;
     }
 
     /**
-     * Start loading requested bitmap with supplied RequestBuilder.
+     * Sets the form images are kept in memory in. Bitmaps already cached are dropped on their next
+     * lookup when switching to {@link CachePolicy#COMPRESSED}.
      *
-     * @param url            The URL to load bitmap from.
-     * @param onLoadListener An implementation of OnLoadListener to be called during the loading process.
-     * @param data           The supplied data to construct a {@link ImageRequest}.
+     * @param cachePolicy The cache policy.
+     */
+    public void setCachePolicy(CachePolicy cachePolicy) {
+        mPolicyCache.mPolicy = cachePolicy;
+    }
+
+    /**
+     * Returns the form images are kept in memory in.
      */
-    protected void loadWithRequestData(String url, OnLoadListener<Bitmap> onLoadListener, RequestBuilder data) {
-        mRequestBuilder = data;
-        super.load(url, onLoadListener);
+    public CachePolicy getCachePolicy() {
+        return mPolicyCache.mPolicy;
+    }
+
+    /**
+     * Sets the second tier to keep the compressed bytes of loaded images in, and to decode images from
+     * when their bitmaps left the memory cache. Only used with {@link CachePolicy#DECODED} and a decode
+     * stage. Images served from the tier are not checked for freshness against volley's cache, just like
+     * bitmaps served from the memory cache.
+     *
+     * @param compressedTier The tier, or null for none.
+     */
+    public void setCompressedTier(CompressedImageTier compressedTier) {
+        mCompressedTier = compressedTier;
+    }
+
+    /**
+     * Returns the second tier of compressed images, or null if it has none.
+     */
+    public CompressedImageTier getCompressedTier() {
+        return mCompressedTier;
+    }
+
+    /**
+     * Returns the pool this loader decodes into, or null if it has none.
+     */
+    public BitmapPool getBitmapPool() {
+        return mBitmapPool;
+    }
+
+    @Override
+    protected Request.Priority getPriority(String url) {
+        RequestBuilder requestData = getRequestData();
+        return requestData == null ? DEFAULT_PRIORITY : requestData.mPriority;
     }
 
     @Override
-    public void load(String url, OnLoadListener<Bitmap> onLoadListener) {
-        mRequestBuilder = null;
-        super.load(url, onLoadListener);
+    protected int sizeOf(CacheKey cacheKey, Bitmap data) {
+        return data.getRowBytes() * data.getHeight();
     }
 
     @Override
-    protected String getCacheKey(String url) {
-        if (mRequestBuilder == null) {
-            return new StringBuilder(url.length() + 12).append("#W").append(DEFAULT_MAX_WIDTH)
-                    .append("#H").append(DEFAULT_MAX_HEIGHT).append("#S").append(DEFAULT_SCALE_TYPE.ordinal()).append(url)
-                    .toString();
+    protected CacheKey getCacheKey(String url) {
+        RequestBuilder requestBuilder = getRequestData();
+        if (requestBuilder == null) {
+            return CacheKey.forDecode(url, DEFAULT_MAX_WIDTH, DEFAULT_MAX_HEIGHT,
+                    getDecodeVariant(DEFAULT_SCALE_TYPE, DEFAULT_BITMAP_CONFIG));
         }
-        return new StringBuilder(url.length() + 12).append("#W").append(mRequestBuilder.maxWidth)
-                .append("#H").append(mRequestBuilder.maxHeight).append("#S").append(mRequestBuilder.mScaleType.ordinal()).append(url)
-                .toString();
+        return CacheKey.forDecode(url, requestBuilder.maxWidth, requestBuilder.maxHeight,
+                getDecodeVariant(requestBuilder.mScaleType, requestBuilder.mConfig));
+    }
+
+    /**
+     * Packs the decode parameters other than the size into the variant of a {@link CacheKey}, so the
+     * same image decoded to different configs is cached apart.
+     *
+     * @param scaleType The scale type.
+     * @param config    The bitmap config, or null for the decoder's default.
+     */
+    private static int getDecodeVariant(ImageView.ScaleType scaleType, Bitmap.Config config) {
+        return scaleType.ordinal() << 8 | (config == null ? 0 : config.ordinal() + 1);
     }
 
     @Override
     protected Request<Bitmap> makeRequest(String url, Response.Listener<Bitmap> listener, Response.ErrorListener errorListener) {
-        if (mRequestBuilder == null) {
-            return new ImageRequest(url, listener, DEFAULT_MAX_WIDTH, DEFAULT_MAX_HEIGHT, DEFAULT_SCALE_TYPE
-                    , DEFAULT_BITMAP_CONFIG, errorListener);
+        RequestBuilder requestBuilder = getRequestData();
+        if (requestBuilder == null) {
+            requestBuilder = new RequestBuilder(this);
+        }
+        // decoded bitmaps are cached by the loader, so their bytes only need to be cached on disk.
+        final boolean diskOnly = mPolicyCache.mPolicy == CachePolicy.DECODED;
+        BitmapDecodeStage decodeStage = mDecodeStage;
+        if (decodeStage != null) {
+            AsyncDecodeImageRequest request = new AsyncDecodeImageRequest(url, listener, requestBuilder.maxWidth,
+                    requestBuilder.maxHeight, requestBuilder.mScaleType, requestBuilder.mConfig, mDecoder, decodeStage,
+                    mResultExecutor, errorListener);
+            if (diskOnly) {
+                request.setCacheKey(TwoTierCache.toDiskOnlyKey(request.getCacheKey()));
+                request.setCompressedTier(mCompressedTier);
+            }
+            return request;
+        }
+        if (mBitmapPool != null) {
+            PooledImageRequest request = new PooledImageRequest(url, listener, requestBuilder.maxWidth,
+                    requestBuilder.maxHeight, requestBuilder.mScaleType, requestBuilder.mConfig, mBitmapPool, errorListener);
+            if (diskOnly) {
+                request.setCacheKey(TwoTierCache.toDiskOnlyKey(request.getCacheKey()));
+            }
+            return request;
+        }
+        return new ImageRequest(url, listener, requestBuilder.maxWidth, requestBuilder.maxHeight, requestBuilder.mScaleType
+                , requestBuilder.mConfig, errorListener) {
+            @Override
+            public String getCacheKey() {
+                return diskOnly ? TwoTierCache.toDiskOnlyKey(super.getCacheKey()) : super.getCacheKey();
+            }
+        };
+    }
+
+    @Override
+    protected boolean dispatchLocally(final Request<Bitmap> request) {
+        CompressedImageTier compressedTier = mCompressedTier;
+        if (compressedTier == null || !(request instanceof AsyncDecodeImageRequest)
+                || mPolicyCache.mPolicy != CachePolicy.DECODED) {
+            return false;
+        }
+        CompressedImageTier.Image image = compressedTier.acquire(request.getUrl());
+        if (image == null) {
+            return false;
         }
-        return new ImageRequest(url, listener, mRequestBuilder.maxWidth, mRequestBuilder.maxHeight, mRequestBuilder.mScaleType
-                , mRequestBuilder.mConfig, errorListener);
+        ((AsyncDecodeImageRequest) request).decodeFromTier(image, new Runnable() {
+            @Override
+            public void run() {
+                finishLocalRequest(request);
+            }
+        });
+        return true;
     }
 
     /**
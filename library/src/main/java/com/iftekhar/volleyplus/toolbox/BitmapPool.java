@@ -0,0 +1,341 @@
+package com.iftekhar.volleyplus.toolbox;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * A size-bucketed pool of mutable bitmaps that can be decoded into again through
+ * {@link android.graphics.BitmapFactory.Options#inBitmap}, sparing the allocation (and the GC pause)
+ * of a new bitmap for every decode.
+ * <p>
+ * A bitmap only enters the pool once it is both out of the memory cache and not displayed anymore.
+ * Views report what they display through {@link #retain(Bitmap)} and {@link #release(Bitmap)}, and the
+ * memory cache reports removals through {@link #onRemovedFromCache(Bitmap)}. Bitmaps that were never
+ * retained are never pooled, since they may still be held by code the pool doesn't know of.
+ * </p>
+ * <p>
+ * From KitKat on, a pooled bitmap can be reused for any decode that fits into its allocation; before
+ * that, only for a decode of the exact same dimensions and config. When the pool outgrows its byte
+ * budget, the least recently pooled bitmaps are recycled. All methods are thread-safe.
+ * </p>
+ */
+public class BitmapPool {
+
+    /**
+     * A pooled bitmap is not handed out for a decode that needs less than 1/MAX_SIZE_MULTIPLE of its
+     * allocation, to avoid pinning large bitmaps for small images.
+     */
+    private static final int MAX_SIZE_MULTIPLE = 4;
+
+    /**
+     * Pooled bitmaps in order of when they entered the pool.
+     */
+    private final LinkedList<Bitmap> mBitmapsByLastUse = new LinkedList<>();
+
+    /**
+     * Pooled bitmaps bucketed by allocation size in bytes.
+     */
+    private final TreeMap<Integer, LinkedList<Bitmap>> mBitmapsBySize = new TreeMap<>();
+
+    /**
+     * Number of views displaying each tracked bitmap.
+     */
+    private final IdentityHashMap<Bitmap, Integer> mRetainCounts = new IdentityHashMap<>();
+
+    /**
+     * Bitmaps that left the memory cache while still displayed, or before they were ever displayed.
+     * Weakly held, since a bitmap that never gets displayed is never released either.
+     */
+    private final WeakHashMap<Bitmap, Boolean> mRemovedFromCache = new WeakHashMap<>();
+
+    /**
+     * Maximum total size of the pooled bitmaps in bytes.
+     */
+    private int mSizeLimit;
+
+    /**
+     * Current total size of the pooled bitmaps in bytes.
+     */
+    private int mCurrentSize = 0;
+
+    private int mHitCount;
+    private long mHitBytes;
+    private int mMissCount;
+    private int mPutCount;
+    private int mEvictionCount;
+
+    /**
+     * Constructs an instance of BitmapPool.
+     *
+     * @param sizeLimit the maximum total size of the pooled bitmaps in bytes.
+     */
+    public BitmapPool(int sizeLimit) {
+        mSizeLimit = sizeLimit;
+    }
+
+    /**
+     * Returns true if this platform can decode into an existing bitmap.
+     */
+    public static boolean canReuseBitmaps() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB;
+    }
+
+    /**
+     * Returns the number of bytes per pixel of a bitmap config.
+     */
+    private static int getBytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ARGB_8888 || config == null) {
+            return 4;
+        } else if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+        return 2;
+    }
+
+    /**
+     * Returns the number of bytes a bitmap can hold.
+     */
+    private static int getAllocationSize(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    /**
+     * Returns a pooled bitmap that a decode of the specified dimensions and config can reuse, or null
+     * if there is none. The returned bitmap is removed from the pool.
+     *
+     * @param width  The width of the decoded bitmap.
+     * @param height The height of the decoded bitmap.
+     * @param config The config of the decoded bitmap.
+     * @return a reusable bitmap, or null.
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        int size = width * height * getBytesPerPixel(config);
+        if (size > 0) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                Integer bucket = mBitmapsBySize.ceilingKey(size);
+                if (bucket != null && bucket <= size * MAX_SIZE_MULTIPLE) {
+                    mHitCount++;
+                    mHitBytes += bucket;
+                    return removeFromBucket(bucket, mBitmapsBySize.get(bucket).getFirst());
+                }
+            } else {
+                LinkedList<Bitmap> bitmaps = mBitmapsBySize.get(size);
+                if (bitmaps != null) {
+                    for (Bitmap bitmap : bitmaps) {
+                        if (bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config) {
+                            mHitCount++;
+                            mHitBytes += size;
+                            return removeFromBucket(size, bitmap);
+                        }
+                    }
+                }
+            }
+        }
+        mMissCount++;
+        return null;
+    }
+
+    /**
+     * Returns a bitmap to the pool. Bitmaps that are immutable, recycled or larger than the pool are
+     * recycled instead.
+     *
+     * @param bitmap the bitmap to return to the pool.
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        int size = getAllocationSize(bitmap);
+        if (!bitmap.isMutable() || !canReuseBitmaps() || size > mSizeLimit) {
+            bitmap.recycle();
+            return;
+        }
+        LinkedList<Bitmap> bitmaps = mBitmapsBySize.get(size);
+        if (bitmaps == null) {
+            bitmaps = new LinkedList<>();
+            mBitmapsBySize.put(size, bitmaps);
+        }
+        bitmaps.add(bitmap);
+        mBitmapsByLastUse.add(bitmap);
+        mCurrentSize += size;
+        mPutCount++;
+        trim();
+    }
+
+    /**
+     * Marks a bitmap as displayed by a view. It won't be pooled until every view released it.
+     *
+     * @param bitmap the displayed bitmap.
+     */
+    public synchronized void retain(Bitmap bitmap) {
+        Integer count = mRetainCounts.get(bitmap);
+        mRetainCounts.put(bitmap, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Marks a bitmap as no longer displayed by a view. If it is not displayed anymore and has already
+     * left the memory cache, it is pooled.
+     *
+     * @param bitmap the bitmap that was displayed.
+     */
+    public synchronized void release(Bitmap bitmap) {
+        Integer count = mRetainCounts.get(bitmap);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            mRetainCounts.put(bitmap, count - 1);
+        } else if (mRemovedFromCache.remove(bitmap) != null) {
+            mRetainCounts.remove(bitmap);
+            put(bitmap);
+        } else {
+            // keep tracking it while it is cached, so that it can be pooled when evicted.
+            mRetainCounts.put(bitmap, 0);
+        }
+    }
+
+    /**
+     * Called when a bitmap left the memory cache. It is pooled if it was displayed before and is
+     * not displayed anymore, or else once the views displaying it later released it.
+     *
+     * @param bitmap the bitmap removed from the cache.
+     */
+    public synchronized void onRemovedFromCache(Bitmap bitmap) {
+        Integer count = mRetainCounts.get(bitmap);
+        if (count == null) {
+            // not displayed yet; pool it once displayed and released.
+            mRemovedFromCache.put(bitmap, Boolean.TRUE);
+            return;
+        }
+        if (count == 0) {
+            mRetainCounts.remove(bitmap);
+            put(bitmap);
+        } else {
+            mRemovedFromCache.put(bitmap, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Called when the memory cache refused to admit a freshly decoded bitmap. The bitmap is still on
+     * its way to the views that requested it, so it is never pooled right away, only once the views
+     * displaying it released it.
+     *
+     * @param bitmap the bitmap the cache rejected.
+     */
+    public synchronized void onRejectedByCache(Bitmap bitmap) {
+        mRemovedFromCache.put(bitmap, Boolean.TRUE);
+    }
+
+    /**
+     * Recycles all pooled bitmaps.
+     */
+    public synchronized void clear() {
+        for (Bitmap bitmap : mBitmapsByLastUse) {
+            bitmap.recycle();
+        }
+        mBitmapsByLastUse.clear();
+        mBitmapsBySize.clear();
+        mCurrentSize = 0;
+    }
+
+    /**
+     * Changes the maximum total size of the pooled bitmaps, recycling the least recently pooled ones
+     * if it shrinks.
+     *
+     * @param sizeLimit the new maximum total size in bytes.
+     */
+    public synchronized void resize(int sizeLimit) {
+        mSizeLimit = sizeLimit;
+        trim();
+    }
+
+    /**
+     * Removes a pooled bitmap from its bucket and from the usage list.
+     */
+    private Bitmap removeFromBucket(int size, Bitmap bitmap) {
+        LinkedList<Bitmap> bitmaps = mBitmapsBySize.get(size);
+        bitmaps.remove(bitmap);
+        if (bitmaps.isEmpty()) {
+            mBitmapsBySize.remove(size);
+        }
+        mBitmapsByLastUse.remove(bitmap);
+        mCurrentSize -= size;
+        return bitmap;
+    }
+
+    /**
+     * Recycles the least recently pooled bitmaps until the pool fits its size limit.
+     */
+    private void trim() {
+        while (mCurrentSize > mSizeLimit) {
+            Bitmap bitmap = mBitmapsByLastUse.getFirst();
+            removeFromBucket(getAllocationSize(bitmap), bitmap);
+            bitmap.recycle();
+            mEvictionCount++;
+        }
+    }
+
+    /**
+     * Returns the current total size of the pooled bitmaps in bytes.
+     */
+    public synchronized int size() {
+        return mCurrentSize;
+    }
+
+    /**
+     * Returns the number of times {@link #get(int, int, Bitmap.Config)} returned a reusable bitmap.
+     */
+    public synchronized int hitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * Returns the total allocation size in bytes of the bitmaps {@link #get(int, int, Bitmap.Config)}
+     * returned for reuse.
+     */
+    public synchronized long hitBytes() {
+        return mHitBytes;
+    }
+
+    /**
+     * Returns the number of times {@link #get(int, int, Bitmap.Config)} returned null.
+     */
+    public synchronized int missCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Returns the number of bitmaps that entered the pool.
+     */
+    public synchronized int putCount() {
+        return mPutCount;
+    }
+
+    /**
+     * Returns the number of pooled bitmaps that were recycled to fit the size limit.
+     */
+    public synchronized int evictionCount() {
+        return mEvictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        int accesses = mHitCount + mMissCount;
+        int hitPercent = accesses != 0 ? (100 * mHitCount / accesses) : 0;
+        return String.format("BitmapPool[size=%d,maxSize=%d,hits=%d,misses=%d,hitRate=%d%%,puts=%d,evictions=%d]",
+                mCurrentSize, mSizeLimit, mHitCount, mMissCount, hitPercent, mPutCount, mEvictionCount);
+    }
+}
@@ -0,0 +1,440 @@
+package com.iftekhar.volleyplus.toolbox;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * A second memory tier for images behind a {@link BitmapLoader}'s memory cache, holding the compressed
+ * bytes of images by URL. When a decoded bitmap has left the memory cache, it is decoded again from this
+ * tier instead of being fetched from volley's cache or the network.
+ * <p>
+ * The bytes live in fixed-size blocks, plain byte arrays on the Java heap. An image takes as many blocks
+ * as its bytes need, and the least recently used images are evicted when the tier would outgrow its
+ * budget. Blocks are only allocated as images are cached and are reused after evictions, so an unused
+ * tier costs nothing and a full one never grows past its budget. The collector doesn't have to trace
+ * into the blocks, but they do count against the heap limit of the app.
+ * </p>
+ * <p>
+ * {@link #resize(int)} changes the budget, evicting images and dropping spare blocks if it shrinks, and
+ * {@link #clear()} drops all of them. Register the tier with a {@link MemoryBudget} to have it shrunk
+ * under memory pressure.
+ * </p>
+ * <p>
+ * An image is read through an {@link Image} handle, which pins its blocks until it is released so they
+ * can't be reused while a decode still reads them. All methods are thread-safe.
+ * </p>
+ */
+public class CompressedImageTier {
+
+    /**
+     * Size of a block of the slab in bytes.
+     */
+    public static final int BLOCK_SIZE = 8 * 1024;
+
+    /**
+     * An image larger than 1/MAX_ENTRY_FRACTION of the slab is not cached, so one image can't flush
+     * the whole tier.
+     */
+    private static final int MAX_ENTRY_FRACTION = 4;
+
+    /**
+     * The blocks and length of a cached image.
+     */
+    private static final class Entry {
+        /**
+         * The blocks holding the bytes, in order.
+         */
+        final byte[][] mBlocks;
+
+        /**
+         * Length of the bytes.
+         */
+        final int mLength;
+
+        /**
+         * Number of unreleased handles reading the blocks.
+         */
+        int mPins;
+
+        /**
+         * True once the entry left the tier; its blocks are freed when the last handle is released.
+         */
+        boolean mRemoved;
+
+        Entry(byte[][] blocks, int length) {
+            mBlocks = blocks;
+            mLength = length;
+        }
+    }
+
+    /**
+     * A pinned cached image. Its bytes stay readable until {@link #release()} is called, which must
+     * happen exactly once.
+     */
+    public final class Image {
+        /**
+         * The pinned entry.
+         */
+        private final Entry mEntry;
+
+        private Image(Entry entry) {
+            mEntry = entry;
+        }
+
+        /**
+         * Returns the length of the compressed bytes.
+         */
+        public int getLength() {
+            return mEntry.mLength;
+        }
+
+        /**
+         * Opens a new stream over the compressed bytes. It reads straight from the blocks.
+         */
+        public InputStream openStream() {
+            return new BlockInputStream(mEntry);
+        }
+
+        /**
+         * Unpins the image. Streams opened from it must not be read afterwards.
+         */
+        public void release() {
+            unpin(mEntry);
+        }
+    }
+
+    /**
+     * A stream over the blocks of an entry.
+     */
+    private static final class BlockInputStream extends InputStream {
+        private final Entry mEntry;
+        private int mPosition;
+        private int mMark;
+
+        BlockInputStream(Entry entry) {
+            mEntry = entry;
+        }
+
+        @Override
+        public int read() {
+            if (mPosition >= mEntry.mLength) {
+                return -1;
+            }
+            int value = mEntry.mBlocks[mPosition / BLOCK_SIZE][mPosition % BLOCK_SIZE] & 0xff;
+            mPosition++;
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) {
+            if (count == 0) {
+                return 0;
+            }
+            int remaining = mEntry.mLength - mPosition;
+            if (remaining <= 0) {
+                return -1;
+            }
+            // read at most up to the end of the current block.
+            int inBlock = BLOCK_SIZE - mPosition % BLOCK_SIZE;
+            int length = Math.min(count, Math.min(remaining, inBlock));
+            System.arraycopy(mEntry.mBlocks[mPosition / BLOCK_SIZE], mPosition % BLOCK_SIZE, buffer, offset, length);
+            mPosition += length;
+            return length;
+        }
+
+        @Override
+        public long skip(long count) {
+            int skipped = (int) Math.max(0, Math.min(count, mEntry.mLength - mPosition));
+            mPosition += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return mEntry.mLength - mPosition;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public void mark(int readLimit) {
+            mMark = mPosition;
+        }
+
+        @Override
+        public void reset() {
+            mPosition = mMark;
+        }
+    }
+
+    /**
+     * Maximum number of blocks, allocated or not.
+     */
+    private int mMaxBlocks;
+
+    /**
+     * Number of blocks allocated, in use or spare.
+     */
+    private int mAllocatedBlocks;
+
+    /**
+     * Allocated blocks not in use, used as a stack.
+     */
+    private final ArrayList<byte[]> mFreeBlocks = new ArrayList<>();
+
+    /**
+     * Cached images by URL, least recently used first.
+     */
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private int mHitCount;
+    private long mHitBytes;
+    private int mMissCount;
+    private int mPutCount;
+    private int mEvictionCount;
+
+    /**
+     * Constructs a CompressedImageTier. No memory is allocated until images are cached.
+     *
+     * @param sizeInBytes The budget of the tier in bytes, rounded down to whole blocks.
+     */
+    public CompressedImageTier(int sizeInBytes) {
+        mMaxBlocks = Math.max(1, sizeInBytes / BLOCK_SIZE);
+    }
+
+    /**
+     * Caches the compressed bytes of an image, replacing those cached for the same URL. Least recently
+     * used images are evicted to make room.
+     *
+     * @param url  The URL of the image.
+     * @param data The compressed bytes.
+     * @return true if the bytes were cached, false if they are too large or no room could be made.
+     */
+    public synchronized boolean put(String url, byte[] data) {
+        // drop the previous bytes even if the new ones can't be cached, they are outdated.
+        Entry previous = mEntries.remove(url);
+        if (previous != null) {
+            free(previous);
+        }
+        int blockCount = (data.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        if (data.length == 0 || blockCount > mMaxBlocks / MAX_ENTRY_FRACTION
+                || !makeRoom(blockCount)) {
+            return false;
+        }
+        byte[][] blocks = new byte[blockCount][];
+        for (int i = 0; i < blockCount; i++) {
+            blocks[i] = takeBlock();
+            System.arraycopy(data, i * BLOCK_SIZE, blocks[i], 0, Math.min(BLOCK_SIZE, data.length - i * BLOCK_SIZE));
+        }
+        mEntries.put(url, new Entry(blocks, data.length));
+        mPutCount++;
+        return true;
+    }
+
+    /**
+     * Looks up an image and pins it for reading.
+     *
+     * @param url The URL of the image.
+     * @return the pinned image, to be released after reading, or null if it is not cached.
+     */
+    public synchronized Image acquire(String url) {
+        Entry entry = mEntries.get(url);
+        if (entry == null) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        mHitBytes += entry.mLength;
+        entry.mPins++;
+        return new Image(entry);
+    }
+
+    /**
+     * Removes an image from the tier.
+     *
+     * @param url The URL of the image.
+     */
+    public synchronized void remove(String url) {
+        Entry entry = mEntries.remove(url);
+        if (entry != null) {
+            free(entry);
+        }
+    }
+
+    /**
+     * Removes all images from the tier and drops its blocks. Blocks of images still being read are
+     * dropped once released.
+     */
+    public synchronized void clear() {
+        for (Entry entry : mEntries.values()) {
+            free(entry);
+        }
+        mEntries.clear();
+        dropSpareBlocks(0);
+    }
+
+    /**
+     * Changes the budget of the tier. If it shrinks, least recently used images are evicted and spare
+     * blocks are dropped until the tier fits; blocks of images still being read are dropped once released.
+     *
+     * @param sizeInBytes The new budget in bytes, rounded down to whole blocks.
+     */
+    public synchronized void resize(int sizeInBytes) {
+        mMaxBlocks = Math.max(1, sizeInBytes / BLOCK_SIZE);
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (mAllocatedBlocks - mFreeBlocks.size() > mMaxBlocks && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.mPins == 0) {
+                iterator.remove();
+                free(entry);
+                mEvictionCount++;
+            }
+        }
+        dropSpareBlocks(mMaxBlocks);
+    }
+
+    /**
+     * Evicts least recently used unpinned images until the specified number of blocks can be taken
+     * without exceeding the budget.
+     *
+     * @return false if not enough blocks could be freed.
+     */
+    private boolean makeRoom(int blockCount) {
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (availableBlocks() < blockCount && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.mPins == 0) {
+                iterator.remove();
+                free(entry);
+                mEvictionCount++;
+            }
+        }
+        return availableBlocks() >= blockCount;
+    }
+
+    /**
+     * Returns the number of blocks that can be taken, spare or yet to be allocated.
+     */
+    private int availableBlocks() {
+        return mFreeBlocks.size() + Math.max(0, mMaxBlocks - mAllocatedBlocks);
+    }
+
+    /**
+     * Takes a spare block, or allocates a new one. The caller made room for it.
+     */
+    private byte[] takeBlock() {
+        if (!mFreeBlocks.isEmpty()) {
+            return mFreeBlocks.remove(mFreeBlocks.size() - 1);
+        }
+        mAllocatedBlocks++;
+        return new byte[BLOCK_SIZE];
+    }
+
+    /**
+     * Drops spare blocks until at most the specified number of blocks is allocated.
+     */
+    private void dropSpareBlocks(int maxBlocks) {
+        while (mAllocatedBlocks > maxBlocks && !mFreeBlocks.isEmpty()) {
+            mFreeBlocks.remove(mFreeBlocks.size() - 1);
+            mAllocatedBlocks--;
+        }
+    }
+
+    /**
+     * Returns the blocks of an entry that left the tier to the spare blocks, or defers that until its
+     * last handle is released. Blocks beyond the budget, e.g. after it shrank, are dropped instead.
+     */
+    private void free(Entry entry) {
+        entry.mRemoved = true;
+        if (entry.mPins > 0) {
+            return;
+        }
+        for (byte[] block : entry.mBlocks) {
+            mFreeBlocks.add(block);
+        }
+        dropSpareBlocks(mMaxBlocks);
+    }
+
+    /**
+     * Releases a handle of an entry, freeing its blocks if it already left the tier.
+     */
+    private synchronized void unpin(Entry entry) {
+        entry.mPins--;
+        if (entry.mPins == 0 && entry.mRemoved) {
+            free(entry);
+        }
+    }
+
+    /**
+     * Returns the number of bytes of the cached images, including the unused ends of their last blocks.
+     */
+    public synchronized int size() {
+        return (mAllocatedBlocks - mFreeBlocks.size()) * BLOCK_SIZE;
+    }
+
+    /**
+     * Returns the number of bytes allocated for blocks, in use or spare.
+     */
+    public synchronized int allocatedSize() {
+        return mAllocatedBlocks * BLOCK_SIZE;
+    }
+
+    /**
+     * Returns the budget of the tier in bytes.
+     */
+    public synchronized int maxSize() {
+        return mMaxBlocks * BLOCK_SIZE;
+    }
+
+    /**
+     * Returns the number of times {@link #acquire(String)} found its image.
+     */
+    public synchronized int hitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * Returns the total length of the images {@link #acquire(String)} found.
+     */
+    public synchronized long hitBytes() {
+        return mHitBytes;
+    }
+
+    /**
+     * Returns the number of times {@link #acquire(String)} did not find its image.
+     */
+    public synchronized int missCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Returns the number of images cached.
+     */
+    public synchronized int putCount() {
+        return mPutCount;
+    }
+
+    /**
+     * Returns the number of images evicted to make room.
+     */
+    public synchronized int evictionCount() {
+        return mEvictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        int accesses = mHitCount + mMissCount;
+        int hitPercent = accesses != 0 ? (100 * mHitCount / accesses) : 0;
+        return String.format("CompressedImageTier[maxSize=%d,size=%d,images=%d,hits=%d,misses=%d,hitRate=%d%%]",
+                maxSize(), size(), mEntries.size(), mHitCount, mMissCount, hitPercent);
+    }
+}
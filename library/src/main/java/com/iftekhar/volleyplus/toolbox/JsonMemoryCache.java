@@ -0,0 +1,178 @@
+package com.iftekhar.volleyplus.toolbox;
+
+import com.iftekhar.volleyplus.CacheKey;
+import com.iftekhar.volleyplus.MemoryCache;
+import com.iftekhar.volleyplus.SegmentedLruCache;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * An implementation of {@link MemoryCache} for JSON Objects. Entries are sized once, when they are
+ * cached, by the length in bytes of the response they were parsed from, so caching a response is O(1)
+ * and a hit neither parses nor re-accounts anything.
+ * <p>
+ * {@link JsonObjectLoader} records that length for each object it parses on the network thread with
+ * {@link #setSourceLength(JSONObject, int)}; the object itself is only cached by the
+ * {@link #put(CacheKey, JSONObject)} that follows on delivery, through any cache wrapping this one.
+ * Objects put without a recorded length are sized by walking the tree for the length of their
+ * serialized form, without serializing them.
+ * </p>
+ */
+public class JsonMemoryCache implements MemoryCache<JSONObject> {
+
+    /**
+     * A cache entry holding a parsed object and its size.
+     */
+    private static final class Entry {
+        /**
+         * The parsed object.
+         */
+        final JSONObject mParsed;
+
+        /**
+         * The size of this entry in bytes, fixed when the entry is created.
+         */
+        final int mSize;
+
+        Entry(JSONObject parsed, int size) {
+            mParsed = parsed;
+            mSize = Math.max(1, size);
+        }
+    }
+
+    /**
+     * The memory-based cache implementation.
+     */
+    private final SegmentedLruCache<CacheKey, Entry> mCache;
+
+    /**
+     * The lengths of the responses objects were parsed from, until the objects are cached. The objects
+     * are held weakly, so the length of an object whose request was canceled before delivery goes away
+     * with the object.
+     */
+    private final Map<JSONObject, Integer> mSourceLengths =
+            Collections.synchronizedMap(new WeakHashMap<JSONObject, Integer>());
+
+    /**
+     * Constructs an instance of JsonMemoryCache.
+     *
+     * @param maxSizeInBytes maximum size of the cache in bytes.
+     */
+    public JsonMemoryCache(int maxSizeInBytes) {
+        mCache = new SegmentedLruCache<CacheKey, Entry>(maxSizeInBytes) {
+            @Override
+            protected int sizeOf(CacheKey key, Entry entry) {
+                return entry.mSize;
+            }
+        };
+    }
+
+    /**
+     * Records the length of the response an object was parsed from, to size the object by once it is
+     * put. Nothing is cached until then.
+     *
+     * @param jsonObject   The object parsed from the response.
+     * @param sourceLength The length of the response body in bytes.
+     */
+    public void setSourceLength(JSONObject jsonObject, int sourceLength) {
+        mSourceLengths.put(jsonObject, sourceLength);
+    }
+
+    @Override
+    public JSONObject get(CacheKey cacheKey) {
+        Entry entry = mCache.get(cacheKey);
+        return entry == null ? null : entry.mParsed;
+    }
+
+    @Override
+    public void put(CacheKey cacheKey, JSONObject jsonObject) {
+        Integer sourceLength = mSourceLengths.remove(jsonObject);
+        Entry entry = mCache.get(cacheKey);
+        if (entry != null && entry.mParsed == jsonObject) {
+            return;
+        }
+        int size = sourceLength != null ? sourceLength : serializedLength(jsonObject);
+        mCache.put(cacheKey, new Entry(jsonObject, size));
+    }
+
+    /**
+     * Returns the size in bytes the object cached for the key is accounted with.
+     *
+     * @param cacheKey The key for data.
+     * @return the size, or 0 if nothing is cached for the key.
+     */
+    public int sizeOf(CacheKey cacheKey) {
+        return mCache.entrySize(cacheKey);
+    }
+
+    @Override
+    public void remove(CacheKey cacheKey) {
+        mCache.remove(cacheKey);
+    }
+
+    @Override
+    public void resize(int size) {
+        mCache.resize(size);
+    }
+
+    /**
+     * Returns the length in bytes of a JSON value serialized as UTF-8, not counting escapes.
+     *
+     * @param value A JSONObject, JSONArray, String, or any other value JSON serializes by its string form.
+     */
+    private static int serializedLength(Object value) {
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            // the braces, and a comma between each two members.
+            int length = 1 + Math.max(1, object.length());
+            Iterator<String> keys = object.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                // the quoted key and its colon.
+                length += utf8Length(key) + 3 + serializedLength(object.opt(key));
+            }
+            return length;
+        }
+        if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            int length = 1 + Math.max(1, array.length());
+            for (int i = 0; i < array.length(); i++) {
+                length += serializedLength(array.opt(i));
+            }
+            return length;
+        }
+        if (value instanceof String) {
+            return utf8Length((String) value) + 2;
+        }
+        return String.valueOf(value).length();
+    }
+
+    /**
+     * Returns the length in bytes of a string encoded as UTF-8.
+     */
+    private static int utf8Length(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800 || (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE)) {
+                // a surrogate pair takes four bytes.
+                length += 2;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -1,14 +1,23 @@
 package com.iftekhar.volleyplus.toolbox;
 
+import com.android.volley.NetworkResponse;
 import com.android.volley.Request;
 import com.android.volley.RequestQueue;
 import com.android.volley.Response;
 import com.android.volley.toolbox.JsonObjectRequest;
+import com.iftekhar.volleyplus.CacheKey;
+import com.iftekhar.volleyplus.DataContainer;
+import com.iftekhar.volleyplus.ExpiringMemoryCache;
 import com.iftekhar.volleyplus.Loader;
 import com.iftekhar.volleyplus.MemoryCache;
+import com.iftekhar.volleyplus.Prioritizable;
 
 import org.json.JSONObject;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+
 /**
  * @author Iftekhar Ahmed
  */
@@ -16,31 +25,22 @@ import org.json.JSONObject;
 /**
  * A concrete implementation of the {@link Loader} class for JSON Objects. It
  * uses standard volley {@link JsonObjectRequest}. Same json can be requested
- * for loading from multiple resources. Cancellation works per-request. This
- * class is not thread-safe. All requests for loading JSON Objects MUST be
- * called from the main thread otherwise an {@link IllegalStateException} will
- * be thrown.
+ * for loading from multiple resources. Cancellation works per-request. Unless
+ * constructed with a delivery executor, all requests for loading JSON Objects
+ * MUST be called from the main thread otherwise an {@link IllegalStateException}
+ * will be thrown.
  */
 public class JsonObjectLoader extends Loader<JSONObject> {
 
     /**
      * A static container class for data required to construct a JSON Object request.
      */
-    public static class RequestBuilder implements Builder<JSONObject> {
+    public static class RequestBuilder extends JsonRequestBuilder<JSONObject, RequestBuilder> {
         /**
          * holds reference to a JsonObjectLoader object required in the {@link #load(String, OnLoadListener)}
          * method when data for the request is supplied.
          */
         private JsonObjectLoader mLoader;
-        /**
-         * Optional JSONObject to pass for POST methods.
-         */
-        private JSONObject mRequestBody = DEFAULT_REQUEST_BODY;
-
-        /**
-         * Volley Request method.
-         */
-        private int mMethod = DEFAULT_REQUEST_METHOD;
 
         /**
          * Creates a new instance of RequestBuilder.
@@ -52,53 +52,110 @@ public class JsonObjectLoader extends Loader<JSONObject> {
         }
 
         /**
-         * Pass in an instance of {@link JSONObject} as request body. Null is allowed.
+         * load the JSON Object asynchronously with specified parameters.
          *
-         * @param jsonObject The request body.
-         * @return the RequestBuilder object.
+         * @param url      The URL for the JSON Object to load.
+         * @param listener An implementation of OnLoadListener to be called during the loading process.
          */
-        public RequestBuilder requestBody(JSONObject jsonObject) {
-            mRequestBody = jsonObject;
-            return this;
+        @Override
+        public void load(String url, OnLoadListener<JSONObject> listener) {
+            mLoader.loadWithRequestData(url, listener, this);
         }
 
         /**
-         * Pass in a supported volley request method.
+         * load the JSON Objects asynchronously with specified parameters and hand them to a single callback.
          *
-         * @param method One of the constants declared {@link com.android.volley.Request.Method}.
-         * @return the RequestBuilder object.
+         * @param urls         The URLs for the JSON Objects to load.
+         * @param bulkListener The listener to hand the JSON Objects to.
+         * @return the containers of the URLs that missed the cache.
          */
-        public RequestBuilder requestMethod(int method) {
-            mMethod = method;
-            return this;
+        @Override
+        public List<DataContainer<JSONObject>> loadAll(Collection<String> urls, BulkListener<JSONObject> bulkListener) {
+            return mLoader.loadAllWithRequestData(urls, bulkListener, this);
         }
 
         /**
-         * load the JSON Object asynchronously with specified parameters.
+         * prefetch the JSON Objects with specified parameters into the memory cache.
          *
-         * @param url      The URL for the JSON Object to load.
-         * @param listener An implementation of OnLoadListener to be called during the loading process.
+         * @param urls The URLs of the JSON Objects to prefetch.
+         * @return the containers of the prefetches started.
          */
         @Override
-        public void load(String url, OnLoadListener<JSONObject> listener) {
-            mLoader.loadWithRequestData(url, listener, this);
+        public List<DataContainer<JSONObject>> prefetch(Collection<String> urls) {
+            return mLoader.prefetchWithRequestData(urls, this);
+        }
+    }
+
+    /**
+     * A {@link JsonObjectRequest} that records the length of the response each object it parses was
+     * parsed from with a {@link JsonMemoryCache}, so the cache can size the object once it is delivered
+     * without serializing it.
+     * Its priority can be lowered for prefetches. It is keyed in volley's cache by the loader's cache
+     * key, so requests to the same URL with different methods or bodies are neither coalesced nor
+     * served each other's cached responses.
+     */
+    private static class RawJsonObjectRequest extends JsonObjectRequest implements Prioritizable {
+        /**
+         * The cache to record the lengths of responses with, or null.
+         */
+        private final JsonMemoryCache mCache;
+
+        /**
+         * The priority to queue this request with.
+         */
+        private Priority mPriority = Priority.NORMAL;
+
+        /**
+         * The loader cache key the response belongs to.
+         */
+        private final CacheKey mCacheKey;
+
+        public RawJsonObjectRequest(int method, String url, JSONObject jsonRequest, JsonMemoryCache cache, CacheKey cacheKey,
+                                    Response.Listener<JSONObject> listener, Response.ErrorListener errorListener) {
+            super(method, url, jsonRequest, listener, errorListener);
+            mCache = cache;
+            mCacheKey = cacheKey;
+        }
+
+        @Override
+        public String getCacheKey() {
+            return mCacheKey.toString();
+        }
+
+        @Override
+        public Priority getPriority() {
+            return mPriority;
+        }
+
+        @Override
+        public void setPriority(Priority priority) {
+            mPriority = priority;
+        }
+
+        @Override
+        protected Response<JSONObject> parseNetworkResponse(NetworkResponse response) {
+            Response<JSONObject> parsed = super.parseNetworkResponse(response);
+            if (mCache != null && parsed.isSuccess()) {
+                mCache.setSourceLength(parsed.result, response.data.length);
+            }
+            return parsed;
         }
     }
 
     /**
      * default request method to be used when no RequestBuilder is supplied.
      */
-    public static final int DEFAULT_REQUEST_METHOD = Request.Method.GET;
+    public static final int DEFAULT_REQUEST_METHOD = JsonRequestBuilder.DEFAULT_REQUEST_METHOD;
 
     /**
      * default request body to be used when no RequestBuilder is supplied.
      */
-    public static final JSONObject DEFAULT_REQUEST_BODY = null;
+    public static final JSONObject DEFAULT_REQUEST_BODY = JsonRequestBuilder.DEFAULT_REQUEST_BODY;
 
     /**
-     * object containing user-supplied data to construct a JsonObjectRequest.
+     * the memory cache, or the one it wraps, if it sizes objects by their responses, null otherwise.
      */
-    private RequestBuilder mRequestData;
+    private final JsonMemoryCache mParsedCache;
 
     /**
      * Constructs a new JsonObjectLoader instance.
@@ -108,43 +165,63 @@ public class JsonObjectLoader extends Loader<JSONObject> {
      */
     public JsonObjectLoader(RequestQueue requestQueue, MemoryCache<JSONObject> memoryCache) {
         super(requestQueue, memoryCache);
+        mParsedCache = getParsedCache(memoryCache);
     }
 
     /**
-     * Start loading requested JSON Object with supplied RequestBuilder.
+     * Constructs a new JsonObjectLoader instance that accepts requests from any thread.
      *
-     * @param url            The URL to load JSON Object from.
-     * @param onLoadListener An implementation of OnLoadListener to be called during the loading process.
-     * @param data           The supplied data to construct a {@link JsonObjectRequest}.
+     * @param requestQueue     The preferred instance of a volley RequestQueue.
+     * @param memoryCache      A thread-safe implementation of MemoryCache interface.
+     * @param deliveryExecutor The executor to deliver network responses on.
      */
-    protected void loadWithRequestData(String url, OnLoadListener<JSONObject> onLoadListener, RequestBuilder data) {
-        mRequestData = data;
-        super.load(url, onLoadListener);
+    public JsonObjectLoader(RequestQueue requestQueue, MemoryCache<JSONObject> memoryCache, Executor deliveryExecutor) {
+        super(requestQueue, memoryCache, deliveryExecutor);
+        mParsedCache = getParsedCache(memoryCache);
+    }
+
+    /**
+     * Finds the cache that sizes objects by the responses they were parsed from, also behind an
+     * {@link ExpiringMemoryCache}. Objects are still only cached on delivery, through the loader's cache.
+     *
+     * @param memoryCache The memory cache of the loader.
+     * @return the cache that sizes objects by their responses, or null.
+     */
+    private static JsonMemoryCache getParsedCache(MemoryCache<JSONObject> memoryCache) {
+        if (memoryCache instanceof ExpiringMemoryCache) {
+            memoryCache = ((ExpiringMemoryCache<JSONObject>) memoryCache).getCache();
+        }
+        return memoryCache instanceof JsonMemoryCache ? (JsonMemoryCache) memoryCache : null;
     }
 
     @Override
-    public void load(String url, OnLoadListener<JSONObject> onLoadListener) {
-        mRequestData = null;
-        super.load(url, onLoadListener);
+    protected Request.Priority getPriority(String url) {
+        RequestBuilder requestData = getRequestData();
+        return JsonRequestBuilder.getPriority(requestData);
     }
 
     @Override
-    protected String getCacheKey(String url) {
-        if (mRequestData == null) {
-            return new StringBuilder(url.length() + 12).append("#M").append(DEFAULT_REQUEST_METHOD)
-                    .append(0).append(url).toString();
-        }
-        return new StringBuilder(url.length() + 12).append("#M").append(mRequestData.mMethod)
-                .append(mRequestData.mRequestBody != null ? mRequestData.mRequestBody.toString().getBytes().length : 0)
-                .append(url).toString();
+    protected long getTimeToLive(String url) {
+        RequestBuilder requestData = getRequestData();
+        return JsonRequestBuilder.getTimeToLive(requestData, super.getTimeToLive(url));
+    }
+
+    @Override
+    protected int sizeOf(CacheKey cacheKey, JSONObject data) {
+        return mParsedCache != null ? mParsedCache.sizeOf(cacheKey) : super.sizeOf(cacheKey, data);
+    }
+
+    @Override
+    protected CacheKey getCacheKey(String url) {
+        RequestBuilder requestData = getRequestData();
+        return JsonRequestBuilder.getCacheKey(requestData, url);
     }
 
     @Override
     protected Request<JSONObject> makeRequest(String url, Response.Listener<JSONObject> listener, Response.ErrorListener errorListener) {
-        if (mRequestData == null) {
-            return new JsonObjectRequest(DEFAULT_REQUEST_METHOD, url, DEFAULT_REQUEST_BODY, listener, errorListener);
-        }
-        return new JsonObjectRequest(mRequestData.mMethod, url, mRequestData.mRequestBody, listener, errorListener);
+        RequestBuilder requestData = getRequestData();
+        return new RawJsonObjectRequest(JsonRequestBuilder.getMethod(requestData), url,
+                JsonRequestBuilder.getRequestBody(requestData), mParsedCache, getCacheKey(url), listener, errorListener);
     }
 
     /**
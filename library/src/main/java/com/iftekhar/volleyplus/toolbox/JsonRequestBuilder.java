@@ -0,0 +1,179 @@
+package com.iftekhar.volleyplus.toolbox;
+
+import com.android.volley.Request;
+import com.iftekhar.volleyplus.CacheKey;
+import com.iftekhar.volleyplus.ExpiringMemoryCache;
+import com.iftekhar.volleyplus.Loader;
+
+import org.json.JSONObject;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * Base class of the RequestBuilders of loaders that request JSON, holding what they all take: an
+ * optional JSON request body, the request method, the priority and the time to live. Subclasses only
+ * hand the load to their loader. The static helpers read these values back in the loader, also for loads
+ * started without a builder, and key the data by method, URL and body.
+ *
+ * @param <T> The data type of the loader.
+ * @param <B> The type of the builder itself, returned by its setters.
+ */
+public abstract class JsonRequestBuilder<T, B extends JsonRequestBuilder<T, B>> implements Loader.Builder<T> {
+
+    /**
+     * default request method to be used when no RequestBuilder is supplied.
+     */
+    public static final int DEFAULT_REQUEST_METHOD = Request.Method.GET;
+
+    /**
+     * default request body to be used when no RequestBuilder is supplied.
+     */
+    public static final JSONObject DEFAULT_REQUEST_BODY = null;
+
+    /**
+     * charset of request bodies, as volley's {@link com.android.volley.toolbox.JsonRequest} encodes them.
+     */
+    private static final String BODY_CHARSET = "utf-8";
+
+    /**
+     * Optional JSONObject to pass for POST methods.
+     */
+    private JSONObject mRequestBody = DEFAULT_REQUEST_BODY;
+
+    /**
+     * Volley Request method.
+     */
+    private int mMethod = DEFAULT_REQUEST_METHOD;
+
+    /**
+     * priority to load with.
+     */
+    private Request.Priority mPriority = Loader.DEFAULT_PRIORITY;
+
+    /**
+     * time to live in an {@link ExpiringMemoryCache}, or null for the loader's.
+     */
+    private Long mTimeToLiveMs;
+
+    /**
+     * Pass in an instance of {@link JSONObject} as request body. Null is allowed.
+     *
+     * @param jsonObject The request body.
+     * @return the RequestBuilder object.
+     */
+    public B requestBody(JSONObject jsonObject) {
+        mRequestBody = jsonObject;
+        return self();
+    }
+
+    /**
+     * Pass in a supported volley request method.
+     *
+     * @param method One of the constants declared {@link com.android.volley.Request.Method}.
+     * @return the RequestBuilder object.
+     */
+    public B requestMethod(int method) {
+        mMethod = method;
+        return self();
+    }
+
+    /**
+     * Pass in the priority for the request. It can be changed later through
+     * {@link Loader#setPriority(com.iftekhar.volleyplus.DataContainer, Request.Priority)}.
+     *
+     * @param priority The priority.
+     * @return the RequestBuilder object.
+     */
+    public B priority(Request.Priority priority) {
+        mPriority = priority;
+        return self();
+    }
+
+    /**
+     * Pass in the time to live of the loaded data, if the loader's memory cache is an
+     * {@link ExpiringMemoryCache}. Defaults to the loader's time to live.
+     *
+     * @param timeToLiveMs The time to live in milliseconds, or {@link ExpiringMemoryCache#NO_EXPIRY}.
+     * @return the RequestBuilder object.
+     */
+    public B timeToLive(long timeToLiveMs) {
+        mTimeToLiveMs = timeToLiveMs;
+        return self();
+    }
+
+    /**
+     * Returns this builder as its own type.
+     */
+    @SuppressWarnings("unchecked")
+    private B self() {
+        return (B) this;
+    }
+
+    /**
+     * Returns the request method of a load.
+     *
+     * @param requestData The builder of the load, or null.
+     */
+    static int getMethod(JsonRequestBuilder<?, ?> requestData) {
+        return requestData == null ? DEFAULT_REQUEST_METHOD : requestData.mMethod;
+    }
+
+    /**
+     * Returns the request body of a load, or null if there is none.
+     *
+     * @param requestData The builder of the load, or null.
+     */
+    static JSONObject getRequestBody(JsonRequestBuilder<?, ?> requestData) {
+        return requestData == null ? DEFAULT_REQUEST_BODY : requestData.mRequestBody;
+    }
+
+    /**
+     * Returns the request body of a load as volley sends it, or null if there is none.
+     *
+     * @param requestData The builder of the load, or null.
+     */
+    static byte[] getBodyBytes(JsonRequestBuilder<?, ?> requestData) {
+        JSONObject requestBody = getRequestBody(requestData);
+        if (requestBody == null) {
+            return null;
+        }
+        try {
+            return requestBody.toString().getBytes(BODY_CHARSET);
+        } catch (UnsupportedEncodingException e) {
+            return requestBody.toString().getBytes();
+        }
+    }
+
+    /**
+     * Returns the cache key of a load, by its method, URL and body.
+     *
+     * @param requestData The builder of the load, or null.
+     * @param url         The URL of the load.
+     */
+    static CacheKey getCacheKey(JsonRequestBuilder<?, ?> requestData, String url) {
+        return CacheKey.forRequest(getMethod(requestData), url, getBodyBytes(requestData));
+    }
+
+    /**
+     * Returns the priority of a load.
+     *
+     * @param requestData The builder of the load, or null.
+     */
+    static Request.Priority getPriority(JsonRequestBuilder<?, ?> requestData) {
+        return requestData == null ? Loader.DEFAULT_PRIORITY : requestData.mPriority;
+    }
+
+    /**
+     * Returns the time to live of a load.
+     *
+     * @param requestData  The builder of the load, or null.
+     * @param defaultValue The loader's time to live, for loads that don't set one.
+     */
+    static long getTimeToLive(JsonRequestBuilder<?, ?> requestData, long defaultValue) {
+        return requestData == null || requestData.mTimeToLiveMs == null ? defaultValue : requestData.mTimeToLiveMs;
+    }
+}
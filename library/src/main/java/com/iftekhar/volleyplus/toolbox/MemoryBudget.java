@@ -0,0 +1,376 @@
+package com.iftekhar.volleyplus.toolbox;
+
+import android.content.ComponentCallbacks2;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.iftekhar.volleyplus.Loader;
+import com.iftekhar.volleyplus.ext.InMemoryCache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * A single memory budget in bytes shared by several caches, e.g. the memory caches of {@link Loader}s,
+ * the memory tier of the http cache, a {@link BitmapPool} and a {@link CompressedImageTier}, instead of
+ * each cache sizing itself in isolation.
+ * <p>
+ * The budget is periodically rebalanced between the registered caches by the bytes they recently served:
+ * a part of it is split evenly so that no cache starves, the rest goes to each cache in proportion to the
+ * total size of its hits, with older hits decaying at every rebalance. Weighting hits by their size keeps
+ * a cache of many small entries from crowding out one whose every hit holds a large bitmap. A cache that
+ * serves more therefore gets more room, and a cache nobody reads from gives it back.
+ * </p>
+ * <p>
+ * {@link #onTrimMemory(int)} and {@link #onLowMemory()} shrink the whole budget at once, by the
+ * severity of the memory pressure, and every cache evicts down to its reduced share. The budget grows
+ * back in steps over the following rebalances once the pressure is gone. Calls are forwarded from a
+ * {@link ComponentCallbacks2}, see {@link com.iftekhar.volleyplus.VolleyPlus}.
+ * </p>
+ * <p>
+ * Periodic rebalancing stops once a rebalance finds no new hits and the budget fully recovered, and
+ * starts again on {@link #resume()}, on memory pressure or when a cache is registered. All methods are
+ * thread-safe.
+ * </p>
+ */
+public class MemoryBudget {
+
+    /**
+     * A cache whose size is managed by a MemoryBudget.
+     */
+    public interface Participant {
+        /**
+         * Returns the total size in bytes of the entries the cache served so far.
+         */
+        long getHitBytes();
+
+        /**
+         * Changes the maximum size of the cache, evicting entries if it shrinks.
+         *
+         * @param maxSizeInBytes The new maximum size in bytes.
+         */
+        void resize(int maxSizeInBytes);
+    }
+
+    /**
+     * Default interval between two rebalances, in milliseconds.
+     */
+    public static final long DEFAULT_REBALANCE_INTERVAL_MS = 30 * 1000;
+
+    /**
+     * Part of the budget split evenly between the caches, regardless of their hits.
+     */
+    private static final double EVEN_SHARE = 0.25;
+
+    /**
+     * Weight of the previous hit bytes at every rebalance.
+     */
+    private static final double HIT_DECAY = 0.5;
+
+    /**
+     * Part of the budget regained at every rebalance without memory pressure.
+     */
+    private static final double RECOVERY_STEP = 0.25;
+
+    /**
+     * A registered cache and its hit history.
+     */
+    private static class Slot {
+        private final Participant mParticipant;
+
+        /**
+         * Total hit bytes at the last rebalance.
+         */
+        private long mLastHitBytes;
+
+        /**
+         * Decayed sum of the hit bytes between rebalances.
+         */
+        private double mScore;
+
+        Slot(Participant participant) {
+            mParticipant = participant;
+            mLastHitBytes = participant.getHitBytes();
+        }
+    }
+
+    /**
+     * The full budget in bytes.
+     */
+    private final int mBudgetBytes;
+
+    /**
+     * Interval between two rebalances, in milliseconds.
+     */
+    private final long mRebalanceIntervalMs;
+
+    /**
+     * The registered caches.
+     */
+    private final List<Slot> mSlots = new ArrayList<>();
+
+    /**
+     * Fraction of the budget currently handed out, lowered under memory pressure.
+     */
+    private double mPressureFactor = 1;
+
+    /**
+     * True if memory pressure was reported since the last periodic rebalance.
+     */
+    private boolean mTrimmedSinceRebalance;
+
+    /**
+     * True while the periodic rebalancing is scheduled.
+     */
+    private boolean mStarted;
+
+    /**
+     * Handler to the main thread that runs the periodic rebalancing.
+     */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Regains budget if there was no memory pressure lately, rebalances and runs again after the interval,
+     * unless nothing changed.
+     */
+    private final Runnable mRebalanceRunnable = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (MemoryBudget.this) {
+                if (!mTrimmedSinceRebalance) {
+                    mPressureFactor = Math.min(1, mPressureFactor + RECOVERY_STEP);
+                }
+                mTrimmedSinceRebalance = false;
+                boolean hits = rebalance();
+                if (!hits && mPressureFactor == 1) {
+                    // idle; resume() or the next memory pressure or registration starts it again.
+                    mStarted = false;
+                    return;
+                }
+            }
+            mHandler.postDelayed(this, mRebalanceIntervalMs);
+        }
+    };
+
+    /**
+     * Constructs a MemoryBudget that rebalances every {@link #DEFAULT_REBALANCE_INTERVAL_MS}.
+     *
+     * @param budgetBytes The budget in bytes shared by all registered caches.
+     */
+    public MemoryBudget(int budgetBytes) {
+        this(budgetBytes, DEFAULT_REBALANCE_INTERVAL_MS);
+    }
+
+    /**
+     * Constructs a MemoryBudget.
+     *
+     * @param budgetBytes         The budget in bytes shared by all registered caches.
+     * @param rebalanceIntervalMs The interval between two rebalances, in milliseconds.
+     */
+    public MemoryBudget(int budgetBytes, long rebalanceIntervalMs) {
+        mBudgetBytes = budgetBytes;
+        mRebalanceIntervalMs = rebalanceIntervalMs;
+    }
+
+    /**
+     * Registers the memory cache of a {@link Loader}, which must be sized in bytes. Hits are the
+     * loads the loader served from its cache, sized by {@link Loader#sizeOf}.
+     *
+     * @param loader The loader.
+     */
+    public void register(final Loader<?> loader) {
+        register(new Participant() {
+            @Override
+            public long getHitBytes() {
+                return loader.getStats().getCacheHitBytes();
+            }
+
+            @Override
+            public void resize(int maxSizeInBytes) {
+                loader.resizeCache(maxSizeInBytes);
+            }
+        });
+    }
+
+    /**
+     * Registers an {@link InMemoryCache}, e.g. the memory tier of a
+     * {@link com.iftekhar.volleyplus.ext.TwoTierCache}.
+     *
+     * @param cache The cache.
+     */
+    public void register(final InMemoryCache cache) {
+        register(new Participant() {
+            @Override
+            public long getHitBytes() {
+                return cache.getHitBytes();
+            }
+
+            @Override
+            public void resize(int maxSizeInBytes) {
+                cache.resize(maxSizeInBytes);
+            }
+        });
+    }
+
+    /**
+     * Registers a {@link BitmapPool}. Hits are the pooled bitmaps reused for a decode.
+     *
+     * @param bitmapPool The pool.
+     */
+    public void register(final BitmapPool bitmapPool) {
+        register(new Participant() {
+            @Override
+            public long getHitBytes() {
+                return bitmapPool.hitBytes();
+            }
+
+            @Override
+            public void resize(int maxSizeInBytes) {
+                bitmapPool.resize(maxSizeInBytes);
+            }
+        });
+    }
+
+    /**
+     * Registers a {@link CompressedImageTier}. Hits are the images decoded again from the tier.
+     *
+     * @param compressedTier The tier.
+     */
+    public void register(final CompressedImageTier compressedTier) {
+        register(new Participant() {
+            @Override
+            public long getHitBytes() {
+                return compressedTier.hitBytes();
+            }
+
+            @Override
+            public void resize(int maxSizeInBytes) {
+                compressedTier.resize(maxSizeInBytes);
+            }
+        });
+    }
+
+    /**
+     * Registers a cache and rebalances the budget, so the new cache gets its share right away.
+     *
+     * @param participant The cache.
+     */
+    public synchronized void register(Participant participant) {
+        mSlots.add(new Slot(participant));
+        rebalance();
+        start();
+    }
+
+    /**
+     * Starts the periodic rebalancing again if it stopped while idle. Call it when the caches are about to
+     * be used again, e.g. when an activity resumes.
+     */
+    public synchronized void resume() {
+        start();
+    }
+
+    /**
+     * Schedules the periodic rebalancing unless it is scheduled already.
+     */
+    private void start() {
+        if (!mStarted) {
+            mStarted = true;
+            mHandler.postDelayed(mRebalanceRunnable, mRebalanceIntervalMs);
+        }
+    }
+
+    /**
+     * Returns the full budget in bytes.
+     */
+    public int getBudget() {
+        return mBudgetBytes;
+    }
+
+    /**
+     * Returns the part of the budget in bytes currently handed out to the caches.
+     */
+    public synchronized int getAvailableBudget() {
+        return (int) (mBudgetBytes * mPressureFactor);
+    }
+
+    /**
+     * Shrinks the budget by the severity of the memory pressure and trims the caches accordingly.
+     * Forward calls of {@link ComponentCallbacks2#onTrimMemory(int)} here.
+     *
+     * @param level The trim level.
+     */
+    public synchronized void onTrimMemory(int level) {
+        double factor;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+            factor = 0;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            factor = 0.25;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            // in the background or hidden, the caches are not read for a while.
+            factor = 0.5;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            factor = 0.25;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            factor = 0.5;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            factor = 0.75;
+        } else {
+            return;
+        }
+        trim(factor);
+    }
+
+    /**
+     * Empties the caches. Forward calls of {@link android.content.ComponentCallbacks#onLowMemory()} here.
+     */
+    public synchronized void onLowMemory() {
+        trim(0);
+    }
+
+    /**
+     * Lowers the part of the budget handed out to at most the specified fraction and rebalances.
+     */
+    private void trim(double factor) {
+        mTrimmedSinceRebalance = true;
+        if (factor < mPressureFactor) {
+            mPressureFactor = factor;
+            rebalance();
+        }
+        // to regain the budget once the pressure is gone.
+        start();
+    }
+
+    /**
+     * Splits the available budget between the caches by the size of their recent hits and resizes them.
+     *
+     * @return true if any cache had hits since the last rebalance.
+     */
+    public synchronized boolean rebalance() {
+        int count = mSlots.size();
+        if (count == 0) {
+            return false;
+        }
+        double totalScore = 0;
+        boolean hits = false;
+        for (Slot slot : mSlots) {
+            long hitBytes = slot.mParticipant.getHitBytes();
+            long newHitBytes = Math.max(0, hitBytes - slot.mLastHitBytes);
+            hits |= newHitBytes > 0;
+            slot.mScore = slot.mScore * HIT_DECAY + newHitBytes;
+            slot.mLastHitBytes = hitBytes;
+            totalScore += slot.mScore;
+        }
+        double available = mBudgetBytes * mPressureFactor;
+        for (Slot slot : mSlots) {
+            double share = totalScore == 0 ? available / count
+                    : available * (EVEN_SHARE / count + (1 - EVEN_SHARE) * slot.mScore / totalScore);
+            // caches can't be sized to zero.
+            slot.mParticipant.resize(Math.max(1, (int) share));
+        }
+        return hits;
+    }
+}
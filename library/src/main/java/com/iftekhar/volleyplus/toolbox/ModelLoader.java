@@ -0,0 +1,247 @@
+package com.iftekhar.volleyplus.toolbox;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.toolbox.HttpHeaderParser;
+import com.android.volley.toolbox.JsonRequest;
+import com.iftekhar.volleyplus.CacheKey;
+import com.iftekhar.volleyplus.DataContainer;
+import com.iftekhar.volleyplus.Loader;
+import com.iftekhar.volleyplus.MemoryCache;
+import com.iftekhar.volleyplus.Prioritizable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * A concrete implementation of the {@link Loader} class for any model type parsed out of a JSON response.
+ * The pluggable {@link ModelParser} runs on the volley dispatcher thread right after the response is read,
+ * and the parsed model is what gets cached in the {@link MemoryCache}. A cache hit therefore hands back a
+ * ready-to-bind model with no parsing on the main thread, unlike re-parsing a cached {@link JSONObject}
+ * on every delivery.
+ * <p>
+ * Same models can be requested for loading from multiple resources. Cancellation works per-request.
+ * Unless constructed with a delivery executor, all requests for loading models MUST be called from the
+ * main thread otherwise an {@link IllegalStateException} will be thrown.
+ * </p>
+ *
+ * @param <M> The model type
+ */
+public class ModelLoader<M> extends Loader<M> {
+
+    /**
+     * Turns a JSON response into a model.
+     *
+     * @param <M> The model type
+     */
+    public interface ModelParser<M> {
+        /**
+         * Parses the model out of a response. Called on a volley dispatcher thread, so it may take its time
+         * but must not touch any views.
+         *
+         * @param response The response.
+         * @return the model, never null.
+         * @throws JSONException if the response is malformed. It fails the request with a ParseError.
+         */
+        M parse(JSONObject response) throws JSONException;
+    }
+
+    /**
+     * A static container class for data required to construct a model request.
+     *
+     * @param <M> The model type
+     */
+    public static class RequestBuilder<M> extends JsonRequestBuilder<M, RequestBuilder<M>> {
+        /**
+         * holds reference to a ModelLoader object required in the {@link #load(String, OnLoadListener)}
+         * method when data for the request is supplied.
+         */
+        private ModelLoader<M> mLoader;
+
+        /**
+         * Creates a new instance of RequestBuilder.
+         *
+         * @param loader reference to a ModelLoader object.
+         */
+        public RequestBuilder(ModelLoader<M> loader) {
+            mLoader = loader;
+        }
+
+        /**
+         * load the model asynchronously with specified parameters.
+         *
+         * @param url      The URL of the JSON to load the model from.
+         * @param listener An implementation of OnLoadListener to be called during the loading process.
+         */
+        @Override
+        public void load(String url, OnLoadListener<M> listener) {
+            mLoader.loadWithRequestData(url, listener, this);
+        }
+
+        /**
+         * load the models asynchronously with specified parameters and hand them to a single callback.
+         *
+         * @param urls         The URLs of the JSON to load the models from.
+         * @param bulkListener The listener to hand the models to.
+         * @return the containers of the URLs that missed the cache.
+         */
+        @Override
+        public List<DataContainer<M>> loadAll(Collection<String> urls, BulkListener<M> bulkListener) {
+            return mLoader.loadAllWithRequestData(urls, bulkListener, this);
+        }
+
+        /**
+         * prefetch the models with specified parameters into the memory cache.
+         *
+         * @param urls The URLs of the JSON to prefetch models from.
+         * @return the containers of the prefetches started.
+         */
+        @Override
+        public List<DataContainer<M>> prefetch(Collection<String> urls) {
+            return mLoader.prefetchWithRequestData(urls, this);
+        }
+    }
+
+    /**
+     * A {@link JsonRequest} that parses its response into a model with the loader's {@link ModelParser}.
+     * It is keyed in volley's cache by the loader's cache key.
+     *
+     * @param <M> The model type
+     */
+    private static class ModelRequest<M> extends JsonRequest<M> implements Prioritizable {
+        /**
+         * The parser to turn the response into a model with.
+         */
+        private final ModelParser<M> mParser;
+
+        /**
+         * The loader cache key the response belongs to.
+         */
+        private final CacheKey mCacheKey;
+
+        /**
+         * The priority to queue this request with.
+         */
+        private Priority mPriority = Priority.NORMAL;
+
+        public ModelRequest(int method, String url, JSONObject jsonRequest, ModelParser<M> parser, CacheKey cacheKey,
+                            Response.Listener<M> listener, Response.ErrorListener errorListener) {
+            super(method, url, jsonRequest == null ? null : jsonRequest.toString(), listener, errorListener);
+            mParser = parser;
+            mCacheKey = cacheKey;
+        }
+
+        @Override
+        public String getCacheKey() {
+            return mCacheKey.toString();
+        }
+
+        @Override
+        public Priority getPriority() {
+            return mPriority;
+        }
+
+        @Override
+        public void setPriority(Priority priority) {
+            mPriority = priority;
+        }
+
+        @Override
+        protected Response<M> parseNetworkResponse(NetworkResponse response) {
+            try {
+                String json = new String(response.data, HttpHeaderParser.parseCharset(response.headers, PROTOCOL_CHARSET));
+                return Response.success(mParser.parse(new JSONObject(json)), HttpHeaderParser.parseCacheHeaders(response));
+            } catch (UnsupportedEncodingException | JSONException e) {
+                return Response.error(new ParseError(e));
+            }
+        }
+    }
+
+    /**
+     * default request method to be used when no RequestBuilder is supplied.
+     */
+    public static final int DEFAULT_REQUEST_METHOD = JsonRequestBuilder.DEFAULT_REQUEST_METHOD;
+
+    /**
+     * default request body to be used when no RequestBuilder is supplied.
+     */
+    public static final JSONObject DEFAULT_REQUEST_BODY = JsonRequestBuilder.DEFAULT_REQUEST_BODY;
+
+    /**
+     * parser for responses.
+     */
+    private final ModelParser<M> mParser;
+
+    /**
+     * Constructs a new ModelLoader instance.
+     *
+     * @param requestQueue The preferred instance of a volley RequestQueue.
+     * @param memoryCache  An implementation of MemoryCache interface for parsed models.
+     * @param parser       The parser to turn responses into models with.
+     */
+    public ModelLoader(RequestQueue requestQueue, MemoryCache<M> memoryCache, ModelParser<M> parser) {
+        super(requestQueue, memoryCache);
+        mParser = parser;
+    }
+
+    /**
+     * Constructs a new ModelLoader instance that accepts requests from any thread.
+     *
+     * @param requestQueue     The preferred instance of a volley RequestQueue.
+     * @param memoryCache      A thread-safe implementation of MemoryCache interface for parsed models.
+     * @param deliveryExecutor The executor to deliver network responses on.
+     * @param parser           The parser to turn responses into models with.
+     */
+    public ModelLoader(RequestQueue requestQueue, MemoryCache<M> memoryCache, Executor deliveryExecutor,
+                       ModelParser<M> parser) {
+        super(requestQueue, memoryCache, deliveryExecutor);
+        mParser = parser;
+    }
+
+    @Override
+    protected Request.Priority getPriority(String url) {
+        RequestBuilder<M> requestData = getRequestData();
+        return JsonRequestBuilder.getPriority(requestData);
+    }
+
+    @Override
+    protected long getTimeToLive(String url) {
+        RequestBuilder<M> requestData = getRequestData();
+        return JsonRequestBuilder.getTimeToLive(requestData, super.getTimeToLive(url));
+    }
+
+    @Override
+    protected CacheKey getCacheKey(String url) {
+        RequestBuilder<M> requestData = getRequestData();
+        return JsonRequestBuilder.getCacheKey(requestData, url);
+    }
+
+    @Override
+    protected Request<M> makeRequest(String url, Response.Listener<M> listener, Response.ErrorListener errorListener) {
+        RequestBuilder<M> requestData = getRequestData();
+        return new ModelRequest<>(JsonRequestBuilder.getMethod(requestData), url,
+                JsonRequestBuilder.getRequestBody(requestData), mParser, getCacheKey(url), listener, errorListener);
+    }
+
+    /**
+     * Starts the loading process by returning a new instance of RequestBuilder.
+     *
+     * @return an instance of RequestBuilder.
+     */
+    @Override
+    public RequestBuilder<M> newRequest() {
+        return new RequestBuilder<>(this);
+    }
+}
@@ -0,0 +1,141 @@
+package com.iftekhar.volleyplus.toolbox;
+
+import android.graphics.Bitmap;
+import android.widget.ImageView.ScaleType;
+
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.VolleyLog;
+import com.android.volley.toolbox.HttpHeaderParser;
+import com.iftekhar.volleyplus.Prioritizable;
+import com.android.volley.toolbox.ImageRequest;
+import com.iftekhar.volleyplus.ext.SpillingHttpStack;
+
+import java.io.File;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * A request for decoding a bitmap from a URL that behaves like volley's {@link ImageRequest}, but
+ * decodes into bitmaps taken from a {@link BitmapPool} whenever the pool has a suitable one. Decoded
+ * bitmaps are mutable so they can be pooled themselves later on. A large image written to a file by a
+ * {@link SpillingHttpStack} is decoded from the file and not kept in volley's cache.
+ */
+public class PooledImageRequest extends Request<Bitmap> implements Prioritizable, SpillingHttpStack.FileBodyRequest {
+
+    /**
+     * Socket timeout in milliseconds for image requests
+     */
+    private static final int IMAGE_TIMEOUT_MS = 1000;
+
+    /**
+     * Default number of retries for image requests
+     */
+    private static final int IMAGE_MAX_RETRIES = 2;
+
+    /**
+     * Default backoff multiplier for image requests
+     */
+    private static final float IMAGE_BACKOFF_MULT = 2f;
+
+    private final Response.Listener<Bitmap> mListener;
+    private final Bitmap.Config mDecodeConfig;
+    private final int mMaxWidth;
+    private final int mMaxHeight;
+    private final ScaleType mScaleType;
+
+    /**
+     * The decoder taking bitmaps to decode into from the pool.
+     */
+    private final BitmapDecoder mDecoder;
+
+    /**
+     * The priority to queue this request with. Loads from visible views outrank prefetches, which
+     * are lowered to {@link Priority#LOW}.
+     */
+    private Priority mPriority = Priority.NORMAL;
+
+    /**
+     * The key to cache the response under, or null for volley's default.
+     */
+    private String mCacheKey;
+
+    /**
+     * Creates a new pooled image request, decoding to a maximum specified width and height. If both
+     * width and height are zero, the image will be decoded to its natural size.
+     *
+     * @param url           URL of the image
+     * @param listener      Listener to receive the decoded bitmap
+     * @param maxWidth      Maximum width to decode this bitmap to, or zero for none
+     * @param maxHeight     Maximum height to decode this bitmap to, or zero for none
+     * @param scaleType     The ImageViews ScaleType used to calculate the needed image size.
+     * @param decodeConfig  Format to decode the bitmap to
+     * @param bitmapPool    The pool to reuse bitmaps from
+     * @param errorListener Error listener, or null to ignore errors
+     */
+    public PooledImageRequest(String url, Response.Listener<Bitmap> listener, int maxWidth, int maxHeight,
+                              ScaleType scaleType, Bitmap.Config decodeConfig, BitmapPool bitmapPool,
+                              Response.ErrorListener errorListener) {
+        super(Method.GET, url, errorListener);
+        setRetryPolicy(new DefaultRetryPolicy(IMAGE_TIMEOUT_MS, IMAGE_MAX_RETRIES, IMAGE_BACKOFF_MULT));
+        mListener = listener;
+        mDecodeConfig = decodeConfig;
+        mMaxWidth = maxWidth;
+        mMaxHeight = maxHeight;
+        mScaleType = scaleType;
+        mDecoder = new BitmapDecoder(bitmapPool);
+    }
+
+    /**
+     * Sets the key to cache the response under in volley's cache.
+     *
+     * @param cacheKey The cache key, or null for volley's default.
+     */
+    public void setCacheKey(String cacheKey) {
+        mCacheKey = cacheKey;
+    }
+
+    @Override
+    public String getCacheKey() {
+        return mCacheKey != null ? mCacheKey : super.getCacheKey();
+    }
+
+    @Override
+    public Priority getPriority() {
+        return mPriority;
+    }
+
+    @Override
+    public void setPriority(Priority priority) {
+        mPriority = priority;
+    }
+
+    @Override
+    protected Response<Bitmap> parseNetworkResponse(NetworkResponse response) {
+        File bodyFile = SpillingHttpStack.getBodyFile(this);
+        try {
+            Bitmap bitmap = bodyFile != null
+                    ? mDecoder.decode(bodyFile, mMaxWidth, mMaxHeight, mScaleType, mDecodeConfig)
+                    : mDecoder.decode(response.data, mMaxWidth, mMaxHeight, mScaleType, mDecodeConfig);
+            if (bitmap == null) {
+                return Response.error(new ParseError(response));
+            }
+            return Response.success(bitmap, bodyFile == null ? HttpHeaderParser.parseCacheHeaders(response) : null);
+        } catch (OutOfMemoryError e) {
+            VolleyLog.e("Caught OOM for %d byte image, url=%s", SpillingHttpStack.getBodyLength(this, response), getUrl());
+            return Response.error(new ParseError(e));
+        } finally {
+            SpillingHttpStack.deleteBodyFile(this);
+        }
+    }
+
+    @Override
+    protected void deliverResponse(Bitmap response) {
+        mListener.onResponse(response);
+    }
+}
@@ -0,0 +1,183 @@
+package com.iftekhar.volleyplus.toolbox;
+
+import android.graphics.Bitmap;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseArray;
+
+import com.iftekhar.volleyplus.DataContainer;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * A {@link RecyclerView.OnScrollListener} that prefetches the images of the next rows in the scroll
+ * direction with a {@link BitmapLoader}, so that they are already cached when their
+ * {@link WebImageView}s are bound. It works with a {@link LinearLayoutManager} or a
+ * {@link GridLayoutManager}; other layout managers are ignored.
+ * <p>
+ * Prefetches only hit the cache on bind if they are requested with the same size and scale type as
+ * the view loads them with, so the {@link PrefetchProvider} is asked to set those up on each request.
+ * </p>
+ * <p>
+ * Prefetches of rows that are neither visible nor in the range anymore, e.g. because the scroll
+ * direction changed, are canceled unless a view already loads the same image.
+ * </p>
+ */
+public class RecyclerViewPrefetcher extends RecyclerView.OnScrollListener {
+
+    /**
+     * Supplies the image of an adapter position to prefetch.
+     */
+    public interface PrefetchProvider {
+        /**
+         * Returns the URL of the image shown at the specified adapter position.
+         *
+         * @param position The adapter position.
+         * @return the URL, or null if there is nothing to prefetch.
+         */
+        String getPrefetchUrl(int position);
+
+        /**
+         * Sets up the request for the image at the specified adapter position the same way its
+         * {@link WebImageView} would, e.g. its size and scale type.
+         *
+         * @param position The adapter position.
+         * @param builder  The request to set up.
+         */
+        void onPrepareRequest(int position, BitmapLoader.RequestBuilder builder);
+    }
+
+    /**
+     * default number of rows to prefetch ahead of the visible ones.
+     */
+    public static final int DEFAULT_ROWS_AHEAD = 3;
+
+    /**
+     * the loader to prefetch with.
+     */
+    private final BitmapLoader mLoader;
+
+    /**
+     * the provider of the images to prefetch.
+     */
+    private final PrefetchProvider mProvider;
+
+    /**
+     * number of rows to prefetch ahead of the visible ones.
+     */
+    private final int mRowsAhead;
+
+    /**
+     * first adapter position of the last prefetched range.
+     */
+    private int mLastStart = -1;
+
+    /**
+     * adapter position after the last prefetched range.
+     */
+    private int mLastEnd = -1;
+
+    /**
+     * containers of the prefetches started for the last prefetched range, by adapter position.
+     */
+    private final SparseArray<DataContainer<Bitmap>> mPrefetches = new SparseArray<>();
+
+    /**
+     * Creates a new RecyclerViewPrefetcher prefetching {@link #DEFAULT_ROWS_AHEAD} rows.
+     *
+     * @param loader   The loader to prefetch with.
+     * @param provider The provider of the images to prefetch.
+     */
+    public RecyclerViewPrefetcher(BitmapLoader loader, PrefetchProvider provider) {
+        this(loader, provider, DEFAULT_ROWS_AHEAD);
+    }
+
+    /**
+     * Creates a new RecyclerViewPrefetcher.
+     *
+     * @param loader    The loader to prefetch with.
+     * @param provider  The provider of the images to prefetch.
+     * @param rowsAhead The number of rows to prefetch ahead of the visible ones.
+     */
+    public RecyclerViewPrefetcher(BitmapLoader loader, PrefetchProvider provider, int rowsAhead) {
+        mLoader = loader;
+        mProvider = provider;
+        mRowsAhead = rowsAhead;
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        if (!(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) {
+            return;
+        }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int delta = layoutManager.getOrientation() == LinearLayoutManager.VERTICAL ? dy : dx;
+        if (delta == 0) {
+            return;
+        }
+        int spanCount = layoutManager instanceof GridLayoutManager ? ((GridLayoutManager) layoutManager).getSpanCount() : 1;
+        int count = mRowsAhead * spanCount;
+
+        int start;
+        int end;
+        if (delta > 0) {
+            start = layoutManager.findLastVisibleItemPosition() + 1;
+            end = Math.min(start + count, layoutManager.getItemCount());
+        } else {
+            end = layoutManager.findFirstVisibleItemPosition();
+            start = Math.max(end - count, 0);
+        }
+        if (start < 0 || start >= end) {
+            return;
+        }
+
+        // rows that are neither visible nor in the range are not about to be shown anymore.
+        int keepStart = Math.min(start, layoutManager.findFirstVisibleItemPosition());
+        int keepEnd = Math.max(end, layoutManager.findLastVisibleItemPosition() + 1);
+        for (int i = mPrefetches.size() - 1; i >= 0; i--) {
+            int position = mPrefetches.keyAt(i);
+            if (position < keepStart || position >= keepEnd) {
+                mLoader.cancel(mPrefetches.valueAt(i));
+                mPrefetches.removeAt(i);
+            }
+        }
+
+        // only prefetch the positions that were not part of the last range.
+        for (int position = start; position < end; position++) {
+            if (position >= mLastStart && position < mLastEnd) {
+                continue;
+            }
+            String url = mProvider.getPrefetchUrl(position);
+            if (url == null) {
+                continue;
+            }
+            BitmapLoader.RequestBuilder builder = mLoader.newRequest();
+            mProvider.onPrepareRequest(position, builder);
+            List<DataContainer<Bitmap>> started = builder.prefetch(Collections.singletonList(url));
+            if (!started.isEmpty()) {
+                mPrefetches.put(position, started.get(0));
+            }
+        }
+        mLastStart = start;
+        mLastEnd = end;
+    }
+
+    /**
+     * Cancels the prefetches in flight and forgets the last prefetched range, e.g. after the adapter's
+     * data changed.
+     */
+    public void reset() {
+        for (int i = 0; i < mPrefetches.size(); i++) {
+            mLoader.cancel(mPrefetches.valueAt(i));
+        }
+        mPrefetches.clear();
+        mLastStart = -1;
+        mLastEnd = -1;
+    }
+}
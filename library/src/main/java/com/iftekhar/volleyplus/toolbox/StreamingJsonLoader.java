@@ -0,0 +1,505 @@
+package com.iftekhar.volleyplus.toolbox;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.util.JsonReader;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.HttpHeaderParser;
+import com.iftekhar.volleyplus.CacheKey;
+import com.iftekhar.volleyplus.DataContainer;
+import com.iftekhar.volleyplus.Loader;
+import com.iftekhar.volleyplus.MemoryCache;
+import com.iftekhar.volleyplus.Prioritizable;
+import com.iftekhar.volleyplus.ext.SpillingHttpStack;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * @author Iftekhar Ahmed
+ */
+
+/**
+ * A concrete implementation of the {@link Loader} class for lists of typed items read from an array inside
+ * a JSON response. Instead of building the whole {@link JSONObject} tree, the response is streamed with a
+ * {@link JsonReader} on the volley dispatcher thread, one array element at a time, and each element is
+ * turned into items by an {@link ItemParser}. Items are delivered in chunks to {@link OnItemsListener}s as
+ * they are read; every listener still receives the complete list in
+ * {@link OnLoadListener#onSuccess(com.iftekhar.volleyplus.DataContainer, boolean)}, which is what gets cached.
+ * <p>
+ * Same lists can be requested for loading from multiple resources and cancellation works per-request, as
+ * with any other {@link Loader}. A request whose callers all canceled stops parsing. Before Honeycomb, where
+ * {@link JsonReader} is not available, the response is parsed into a tree first and then chunked the same way.
+ * </p>
+ *
+ * @param <I> The item type
+ */
+public class StreamingJsonLoader<I> extends Loader<List<I>> {
+
+    /**
+     * Turns one element of the streamed array into items.
+     *
+     * @param <I> The item type
+     */
+    public interface ItemParser<I> {
+        /**
+         * Parses one element of the streamed array. Called on a volley dispatcher thread.
+         *
+         * @param element The element, as a small JSONObject of its own.
+         * @return the items read from the element, possibly none.
+         * @throws JSONException if the element is malformed. It fails the whole request.
+         */
+        List<I> parseItems(JSONObject element) throws JSONException;
+    }
+
+    /**
+     * An {@link OnLoadListener} that also receives the items in chunks while the response is being read.
+     *
+     * @param <I> The item type
+     */
+    public interface OnItemsListener<I> extends OnProgressListener<List<I>, List<I>> {
+    }
+
+    /**
+     * A static container class for data required to construct a streaming JSON request.
+     *
+     * @param <I> The item type
+     */
+    public static class RequestBuilder<I> extends JsonRequestBuilder<List<I>, RequestBuilder<I>> {
+        /**
+         * holds reference to a StreamingJsonLoader object required in the {@link #load(String, OnLoadListener)}
+         * method when data for the request is supplied.
+         */
+        private StreamingJsonLoader<I> mLoader;
+
+        /**
+         * Creates a new instance of RequestBuilder.
+         *
+         * @param loader reference to a StreamingJsonLoader object.
+         */
+        public RequestBuilder(StreamingJsonLoader<I> loader) {
+            mLoader = loader;
+        }
+
+        /**
+         * load the items asynchronously with specified parameters. Pass an {@link OnItemsListener} to receive
+         * them in chunks as they are read.
+         *
+         * @param url      The URL of the JSON to load items from.
+         * @param listener An implementation of OnLoadListener to be called during the loading process.
+         */
+        @Override
+        public void load(String url, OnLoadListener<List<I>> listener) {
+            mLoader.loadWithRequestData(url, listener, this);
+        }
+
+        /**
+         * load the item lists asynchronously with specified parameters and hand them to a single callback.
+         *
+         * @param urls         The URLs for the item lists to load.
+         * @param bulkListener The listener to hand the item lists to.
+         * @return the containers of the URLs that missed the cache.
+         */
+        @Override
+        public List<DataContainer<List<I>>> loadAll(Collection<String> urls, BulkListener<List<I>> bulkListener) {
+            return mLoader.loadAllWithRequestData(urls, bulkListener, this);
+        }
+
+        /**
+         * prefetch the items with specified parameters into the memory cache.
+         *
+         * @param urls The URLs of the JSON to prefetch items from.
+         * @return the containers of the prefetches started.
+         */
+        @Override
+        public List<DataContainer<List<I>>> prefetch(Collection<String> urls) {
+            return mLoader.prefetchWithRequestData(urls, this);
+        }
+    }
+
+    /**
+     * A request that streams the items out of a JSON response and hands them to the loader in chunks.
+     *
+     * @param <I> The item type
+     */
+    private static class StreamingJsonRequest<I> extends Request<List<I>> implements Prioritizable,
+            SpillingHttpStack.FileBodyRequest {
+        /**
+         * Content type of request bodies.
+         */
+        private static final String PROTOCOL_CONTENT_TYPE = String.format("application/json; charset=%s", PROTOCOL_CHARSET);
+
+        /**
+         * The loader to parse for and to hand chunks to.
+         */
+        private final StreamingJsonLoader<I> mLoader;
+
+        /**
+         * The loader cache key the response belongs to.
+         */
+        private final CacheKey mCacheKey;
+
+        /**
+         * The request body, or null.
+         */
+        private final byte[] mBody;
+
+        /**
+         * The listener to deliver the complete list to.
+         */
+        private final Response.Listener<List<I>> mListener;
+
+        /**
+         * The priority to queue this request with.
+         */
+        private Priority mPriority = Priority.NORMAL;
+
+        public StreamingJsonRequest(int method, String url, byte[] body, StreamingJsonLoader<I> loader, CacheKey cacheKey,
+                                    Response.Listener<List<I>> listener, Response.ErrorListener errorListener) {
+            super(method, url, errorListener);
+            mBody = body;
+            mLoader = loader;
+            mCacheKey = cacheKey;
+            mListener = listener;
+        }
+
+        @Override
+        public String getCacheKey() {
+            return mCacheKey.toString();
+        }
+
+        @Override
+        public Priority getPriority() {
+            return mPriority;
+        }
+
+        @Override
+        public void setPriority(Priority priority) {
+            mPriority = priority;
+        }
+
+        @Override
+        public String getBodyContentType() {
+            return PROTOCOL_CONTENT_TYPE;
+        }
+
+        @Override
+        public byte[] getBody() {
+            return mBody;
+        }
+
+        @Override
+        protected Response<List<I>> parseNetworkResponse(NetworkResponse response) {
+            String charset = HttpHeaderParser.parseCharset(response.headers, PROTOCOL_CHARSET);
+            boolean inFile = SpillingHttpStack.getBodyFile(this) != null;
+            try {
+                List<I> items = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+                        ? mLoader.streamItems(this, SpillingHttpStack.openBody(this, response), charset)
+                        : mLoader.parseItems(this, inFile ? readFully(this, response) : response.data, charset);
+                if (items == null) {
+                    return Response.error(new VolleyError("Request was canceled while parsing."));
+                }
+                // a body left in a file is deleted below, volley's cache can't keep it.
+                return Response.success(items, inFile ? null : HttpHeaderParser.parseCacheHeaders(response));
+            } catch (IOException | JSONException | IllegalStateException | NumberFormatException e) {
+                return Response.error(new ParseError(e));
+            } finally {
+                SpillingHttpStack.deleteBodyFile(this);
+            }
+        }
+
+        @Override
+        protected void deliverResponse(List<I> response) {
+            mListener.onResponse(response);
+        }
+
+        /**
+         * Reads a body that was written to a file into memory, for parsing without {@link JsonReader}.
+         */
+        private static byte[] readFully(Request<?> request, NetworkResponse response) throws IOException {
+            InputStream in = SpillingHttpStack.openBody(request, response);
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream((int) SpillingHttpStack.getBodyLength(request, response));
+                byte[] buffer = new byte[8 * 1024];
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, count);
+                }
+                return out.toByteArray();
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * default request method to be used when no RequestBuilder is supplied.
+     */
+    public static final int DEFAULT_REQUEST_METHOD = JsonRequestBuilder.DEFAULT_REQUEST_METHOD;
+
+    /**
+     * default request body to be used when no RequestBuilder is supplied.
+     */
+    public static final JSONObject DEFAULT_REQUEST_BODY = JsonRequestBuilder.DEFAULT_REQUEST_BODY;
+
+    /**
+     * default number of items delivered per chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 20;
+
+    /**
+     * charset of request bodies, as {@link JsonRequestBuilder} encodes them, and default charset of responses.
+     */
+    private static final String PROTOCOL_CHARSET = "utf-8";
+
+    /**
+     * parser for the elements of the streamed array.
+     */
+    private final ItemParser<I> mItemParser;
+
+    /**
+     * names of the nested objects leading to the streamed array, from the root object. Empty if the root
+     * itself is the array.
+     */
+    private final String[] mPath;
+
+    /**
+     * number of items delivered per chunk.
+     */
+    private volatile int mChunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * Constructs a new StreamingJsonLoader instance.
+     *
+     * @param requestQueue The preferred instance of a volley RequestQueue.
+     * @param memoryCache  An implementation of MemoryCache interface for the complete lists.
+     * @param itemParser   The parser for the elements of the streamed array.
+     * @param path         The names of the nested objects leading to the array, e.g. "metadata", "results".
+     */
+    public StreamingJsonLoader(RequestQueue requestQueue, MemoryCache<List<I>> memoryCache, ItemParser<I> itemParser,
+                               String... path) {
+        this(requestQueue, memoryCache, null, itemParser, path);
+    }
+
+    /**
+     * Constructs a new StreamingJsonLoader instance. If a delivery executor is supplied, the loader accepts
+     * requests from any thread, and chunks and lists are delivered on that executor.
+     *
+     * @param requestQueue     The preferred instance of a volley RequestQueue.
+     * @param memoryCache      An implementation of MemoryCache interface for the complete lists.
+     * @param deliveryExecutor The executor to deliver on, or null to deliver on the main thread.
+     * @param itemParser       The parser for the elements of the streamed array.
+     * @param path             The names of the nested objects leading to the array, e.g. "metadata", "results".
+     */
+    public StreamingJsonLoader(RequestQueue requestQueue, MemoryCache<List<I>> memoryCache, Executor deliveryExecutor,
+                               ItemParser<I> itemParser, String... path) {
+        super(requestQueue, memoryCache, deliveryExecutor);
+        mItemParser = itemParser;
+        mPath = path;
+    }
+
+    /**
+     * Sets the number of items delivered per chunk to {@link OnItemsListener}s.
+     *
+     * @param chunkSize The chunk size, at least one.
+     */
+    public void setChunkSize(int chunkSize) {
+        mChunkSize = Math.max(1, chunkSize);
+    }
+
+    @Override
+    protected Request.Priority getPriority(String url) {
+        RequestBuilder<I> requestData = getRequestData();
+        return JsonRequestBuilder.getPriority(requestData);
+    }
+
+    @Override
+    protected long getTimeToLive(String url) {
+        RequestBuilder<I> requestData = getRequestData();
+        return JsonRequestBuilder.getTimeToLive(requestData, super.getTimeToLive(url));
+    }
+
+    @Override
+    protected CacheKey getCacheKey(String url) {
+        RequestBuilder<I> requestData = getRequestData();
+        return JsonRequestBuilder.getCacheKey(requestData, url);
+    }
+
+    @Override
+    protected Request<List<I>> makeRequest(String url, Response.Listener<List<I>> listener, Response.ErrorListener errorListener) {
+        RequestBuilder<I> requestData = getRequestData();
+        int method = JsonRequestBuilder.getMethod(requestData);
+        byte[] body = JsonRequestBuilder.getBodyBytes(requestData);
+        return new StreamingJsonRequest<>(method, url, body, this, CacheKey.forRequest(method, url, body), listener,
+                errorListener);
+    }
+
+    /**
+     * Starts the loading process by returning a new instance of RequestBuilder.
+     *
+     * @return an instance of RequestBuilder.
+     */
+    @Override
+    public RequestBuilder<I> newRequest() {
+        return new RequestBuilder<>(this);
+    }
+
+    /**
+     * Streams the items out of a response with a {@link JsonReader}, delivering them in chunks.
+     *
+     * @return the complete list of items, or null if the request was canceled meanwhile.
+     */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private List<I> streamItems(StreamingJsonRequest<I> request, InputStream body, String charset) throws IOException, JSONException {
+        JsonReader reader = new JsonReader(new InputStreamReader(body, charset));
+        try {
+            for (String name : mPath) {
+                reader.beginObject();
+                boolean found = false;
+                while (!found && reader.hasNext()) {
+                    if (name.equals(reader.nextName())) {
+                        found = true;
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                if (!found) {
+                    throw new JSONException("No value for " + name);
+                }
+            }
+            List<I> items = new ArrayList<>();
+            int chunkStart = 0;
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (request.isCanceled()) {
+                    return null;
+                }
+                Object element = readValue(reader);
+                if (!(element instanceof JSONObject)) {
+                    throw new JSONException("Array element is not an object: " + element);
+                }
+                items.addAll(mItemParser.parseItems((JSONObject) element));
+                chunkStart = deliverChunkIfNecessary(request, items, chunkStart, false);
+            }
+            deliverChunkIfNecessary(request, items, chunkStart, true);
+            return items;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Parses the items out of a response tree, delivering them in chunks. Used where {@link JsonReader}
+     * is not available.
+     *
+     * @return the complete list of items, or null if the request was canceled meanwhile.
+     */
+    private List<I> parseItems(StreamingJsonRequest<I> request, byte[] data, String charset) throws IOException, JSONException {
+        String json = new String(data, charset);
+        JSONArray array;
+        if (mPath.length == 0) {
+            array = new JSONArray(json);
+        } else {
+            JSONObject object = new JSONObject(json);
+            for (int i = 0; i < mPath.length - 1; i++) {
+                object = object.getJSONObject(mPath[i]);
+            }
+            array = object.getJSONArray(mPath[mPath.length - 1]);
+        }
+        List<I> items = new ArrayList<>();
+        int chunkStart = 0;
+        for (int i = 0; i < array.length(); i++) {
+            if (request.isCanceled()) {
+                return null;
+            }
+            items.addAll(mItemParser.parseItems(array.getJSONObject(i)));
+            chunkStart = deliverChunkIfNecessary(request, items, chunkStart, false);
+        }
+        deliverChunkIfNecessary(request, items, chunkStart, true);
+        return items;
+    }
+
+    /**
+     * Delivers the items read since the last chunk if there are enough of them, or any at all on the last call.
+     *
+     * @return the start of the next chunk.
+     */
+    private int deliverChunkIfNecessary(StreamingJsonRequest<I> request, List<I> items, int chunkStart, boolean last) {
+        int size = items.size();
+        if (size - chunkStart >= mChunkSize || (last && size > chunkStart)) {
+            deliverProgress(request.mCacheKey, new ArrayList<>(items.subList(chunkStart, size)));
+            return size;
+        }
+        return chunkStart;
+    }
+
+    /**
+     * Reads the next value into the same types {@link JSONObject} holds.
+     */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static Object readValue(JsonReader reader) throws IOException, JSONException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                JSONObject object = new JSONObject();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    object.put(reader.nextName(), readValue(reader));
+                }
+                reader.endObject();
+                return object;
+            case BEGIN_ARRAY:
+                JSONArray array = new JSONArray();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    array.put(readValue(reader));
+                }
+                reader.endArray();
+                return array;
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            case NUMBER:
+                return parseNumber(reader.nextString());
+            case STRING:
+                return reader.nextString();
+            default:
+                throw new JSONException("Unexpected token " + reader.peek());
+        }
+    }
+
+    /**
+     * Parses a JSON number into the narrowest of Integer, Long and Double that holds it.
+     */
+    private static Object parseNumber(String number) {
+        if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+            try {
+                long value = Long.parseLong(number);
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    return (int) value;
+                }
+                return value;
+            } catch (NumberFormatException e) {
+                // too large for a long; fall through to double.
+            }
+        }
+        return Double.valueOf(number);
+    }
+}
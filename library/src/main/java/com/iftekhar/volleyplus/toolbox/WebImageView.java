@@ -2,11 +2,15 @@ package com.iftekhar.volleyplus.toolbox;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Rect;
 import android.text.TextUtils;
 import android.util.AttributeSet;
+import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.ImageView;
 
+import com.android.volley.Request;
 import com.android.volley.VolleyError;
 import com.iftekhar.volleyplus.DataContainer;
 import com.iftekhar.volleyplus.VolleyPlus;
@@ -23,6 +27,8 @@ import com.iftekhar.volleyplus.Loader;
  * allows to cancel bitmap requests any time and handles cancellation of old
  * request internally when a new request is issued. It also defers loading bitmap
  * during layout pass, thus preventing unnecessary call to {@link #requestLayout()}.
+ * While its bitmap is loading, the request is raised in priority as long as the view is visible
+ * on screen and lowered when it is scrolled away or hidden.
  */
 public class WebImageView extends ImageView {
 
@@ -31,6 +37,16 @@ public class WebImageView extends ImageView {
      */
     private int mPlaceholderResId = 0;
 
+    /**
+     * priority of the pending request while the view is visible on screen.
+     */
+    private static final Request.Priority VISIBLE_PRIORITY = Request.Priority.HIGH;
+
+    /**
+     * priority of the pending request while the view is off screen or hidden.
+     */
+    private static final Request.Priority HIDDEN_PRIORITY = Request.Priority.LOW;
+
     /**
      * resource Id for drawable to set on error.
      */
@@ -61,6 +77,27 @@ public class WebImageView extends ImageView {
      */
     private DataContainer<Bitmap> mBitmapContainer;
 
+    /**
+     * the loaded bitmap currently displayed, retained in the loader's bitmap pool.
+     */
+    private Bitmap mDisplayedBitmap;
+
+    /**
+     * reusable rect for the visibility checks.
+     */
+    private final Rect mVisibleRect = new Rect();
+
+    /**
+     * re-evaluates the priority of the pending request whenever something in the window scrolls.
+     */
+    private final ViewTreeObserver.OnScrollChangedListener mScrollChangedListener =
+            new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            updatePriority();
+        }
+    };
+
     public WebImageView(Context context) {
         super(context);
     }
@@ -80,8 +117,64 @@ public class WebImageView extends ImageView {
     private void setPlaceholderOrNull() {
         if (mPlaceholderResId != 0) {
             setImageResource(mPlaceholderResId);
+            releaseDisplayedBitmap();
         } else {
-            setImageBitmap(null);
+            setLoadedBitmap(null);
+        }
+    }
+
+    /**
+     * Displays a bitmap delivered by the loader. The bitmap is retained in the loader's pool for as
+     * long as it is displayed, so that it is not decoded into while on screen.
+     *
+     * @param bitmap The bitmap to display, or null to clear the view.
+     */
+    private void setLoadedBitmap(Bitmap bitmap) {
+        if (bitmap == mDisplayedBitmap) {
+            setImageBitmap(bitmap);
+            return;
+        }
+        BitmapPool pool = mBitmapLoader != null ? mBitmapLoader.getBitmapPool() : null;
+        if (pool != null && bitmap != null) {
+            pool.retain(bitmap);
+        }
+        setImageBitmap(bitmap);
+        releaseDisplayedBitmap();
+        mDisplayedBitmap = bitmap;
+    }
+
+    /**
+     * Releases the displayed bitmap after the view stopped drawing it.
+     */
+    private void releaseDisplayedBitmap() {
+        if (mDisplayedBitmap != null) {
+            BitmapPool pool = mBitmapLoader != null ? mBitmapLoader.getBitmapPool() : null;
+            if (pool != null) {
+                pool.release(mDisplayedBitmap);
+            }
+            mDisplayedBitmap = null;
+        }
+    }
+
+    /**
+     * Returns the priority the view's image should be loaded with, depending on whether any part of
+     * the view is visible on screen.
+     */
+    private Request.Priority getVisiblePriority() {
+        return isShown() && getGlobalVisibleRect(mVisibleRect) ? VISIBLE_PRIORITY : HIDDEN_PRIORITY;
+    }
+
+    /**
+     * Updates the priority of the pending request, if any, to the view's current visibility.
+     */
+    private void updatePriority() {
+        DataContainer<Bitmap> container = mBitmapContainer;
+        if (mBitmapLoader == null || container == null || container.get() != null) {
+            return;
+        }
+        Request.Priority priority = getVisiblePriority();
+        if (container.getPriority() != priority) {
+            mBitmapLoader.setPriority(container, priority);
         }
     }
 
@@ -137,7 +230,7 @@ public class WebImageView extends ImageView {
 
         // The pre-existing content of this view didn't match the current URL. Load the new image
         // from the network.
-        mBitmapLoader.newRequest().size(maxWidth, maxHeight).scaleType(scaleType).load(mUrl
+        mBitmapLoader.newRequest().size(maxWidth, maxHeight).scaleType(scaleType).priority(getVisiblePriority()).load(mUrl
                 , new Loader.OnLoadListener<Bitmap>() {
             @Override
             public void onErrorResponse(VolleyError volleyError) {
@@ -174,7 +267,7 @@ public class WebImageView extends ImageView {
 
                 final Bitmap bitmap = bitmapContainer.get();
                 if (bitmap != null) {
-                    setImageBitmap(bitmap);
+                    setLoadedBitmap(bitmap);
                 } else {
                     setPlaceholderOrNull();
                 }
@@ -258,13 +351,32 @@ public class WebImageView extends ImageView {
         loadImageIfNecessary(true);
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        getViewTreeObserver().addOnScrollChangedListener(mScrollChangedListener);
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updatePriority();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updatePriority();
+    }
+
     @Override
     protected void onDetachedFromWindow() {
+        getViewTreeObserver().removeOnScrollChangedListener(mScrollChangedListener);
         if (mBitmapLoader != null && mBitmapContainer != null) {
             // If the view was bound to an image request, cancel it and clear
             // out the image from the view.
             mBitmapLoader.cancel(mBitmapContainer);
-            setImageBitmap(null);
+            setLoadedBitmap(null);
             // also clear out the container so we can reload the image if necessary.
             mBitmapContainer = null;
         }